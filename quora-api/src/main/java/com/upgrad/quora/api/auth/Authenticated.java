@@ -0,0 +1,29 @@
+package com.upgrad.quora.api.auth;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an endpoint that requires a signed in user.
+ * The {@link AuthenticationInterceptor} resolves the "authorization" header once before the handler runs and raises
+ * the errors named here, the session is then available to the handler as the {@link AuthenticationInterceptor#USER_SESSION}
+ * request attribute.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Authenticated {
+
+    /**
+     * @return error raised when the access token is unknown
+     */
+    GenericErrorCode invalidToken() default GenericErrorCode.ATHR_001_COMMON;
+
+    /**
+     * @return error raised when the user has signed out or the access token has expired
+     */
+    GenericErrorCode signedOut();
+}
@@ -0,0 +1,42 @@
+package com.upgrad.quora.api.auth;
+
+import com.upgrad.quora.service.business.UserSession;
+import com.upgrad.quora.service.business.UserSessionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Authenticates requests to endpoints annotated with {@link Authenticated}.
+ * The access token is looked up once per request, failures surface as AuthorizationFailedException through the
+ * RestExceptionHandler with the error codes of the endpoint. The async dispatch of a request that continues
+ * asynchronously keeps the session resolved by the first dispatch, as its response may already be partly written.
+ */
+@Component
+public class AuthenticationInterceptor extends HandlerInterceptorAdapter {
+
+    public static final String AUTHORIZATION_HEADER = "authorization";
+    public static final String USER_SESSION = "userSession";
+
+    @Autowired
+    private UserSessionService userSessionService;
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod) || request.getAttribute(USER_SESSION) != null) {
+            return true;
+        }
+        final Authenticated authenticated = ((HandlerMethod) handler).getMethodAnnotation(Authenticated.class);
+        if (authenticated == null) {
+            return true;
+        }
+        final UserSession userSession = userSessionService.authenticate(request.getHeader(AUTHORIZATION_HEADER),
+                authenticated.invalidToken(), authenticated.signedOut());
+        request.setAttribute(USER_SESSION, userSession);
+        return true;
+    }
+}
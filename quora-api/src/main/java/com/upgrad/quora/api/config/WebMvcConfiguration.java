@@ -0,0 +1,71 @@
+package com.upgrad.quora.api.config;
+
+import com.upgrad.quora.api.auth.AuthenticationInterceptor;
+import com.upgrad.quora.api.limit.ConcurrencyLimitInterceptor;
+import com.upgrad.quora.api.limit.RateLimitInterceptor;
+import com.upgrad.quora.api.stream.StreamTimeoutInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * This Configuration registers the interceptors of the REST endpoints and the executor that writes streamed responses.
+ */
+@Configuration
+public class WebMvcConfiguration implements WebMvcConfigurer {
+
+    @Autowired
+    private ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    @Autowired
+    private AuthenticationInterceptor authenticationInterceptor;
+
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    @Autowired
+    private StreamTimeoutInterceptor streamTimeoutInterceptor;
+
+    @Value("${export.stream.threads:4}")
+    private int streamThreads;
+
+    @Value("${export.stream.queue-capacity:4}")
+    private int streamQueueCapacity;
+
+    @Value("${async.default-timeout-ms:30000}")
+    private long defaultTimeout;
+
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(concurrencyLimitInterceptor);
+        registry.addInterceptor(authenticationInterceptor);
+        registry.addInterceptor(rateLimitInterceptor);
+        registry.addInterceptor(streamTimeoutInterceptor);
+    }
+
+    @Override
+    public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcAsyncExecutor());
+        configurer.setDefaultTimeout(defaultTimeout);
+        configurer.registerCallableInterceptors(streamTimeoutInterceptor);
+    }
+
+    /**
+     * Fixed pool for streamed responses, each one holds a database connection until the last row is written.
+     * Streams that do not fit into the queue are rejected, the RestExceptionHandler answers them with 503.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(streamThreads);
+        executor.setMaxPoolSize(streamThreads);
+        executor.setQueueCapacity(streamQueueCapacity);
+        executor.setThreadNamePrefix("stream-");
+        return executor;
+    }
+}
@@ -1,37 +1,156 @@
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.api.auth.Authenticated;
+import com.upgrad.quora.api.auth.AuthenticationInterceptor;
+import com.upgrad.quora.api.limit.ConcurrencyLimited;
+import com.upgrad.quora.api.stream.QuestionExportStreamer;
+import com.upgrad.quora.api.model.AnswerExportResponse;
+import com.upgrad.quora.api.model.ImportResponse;
+import com.upgrad.quora.api.model.OutboxOffsetResponse;
+import com.upgrad.quora.api.model.QuestionExportResponse;
 import com.upgrad.quora.api.model.UserDeleteResponse;
 import com.upgrad.quora.service.business.AdminBusinessService;
+import com.upgrad.quora.service.business.BulkImportService;
+import com.upgrad.quora.service.business.ImportSummary;
+import com.upgrad.quora.service.business.UserSession;
 import com.upgrad.quora.service.common.Constants;
+import com.upgrad.quora.service.common.GenericErrorCode;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidImportException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.projection.AnswerExport;
+import com.upgrad.quora.service.projection.OutboxOffset;
+import com.upgrad.quora.service.projection.QuestionExport;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/admin")
 public class AdminController {
 
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired
     private AdminBusinessService adminBusinessService;
 
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private QuestionExportStreamer questionExportStreamer;
+
     /** To delete an user
-     * @param authorization
+     * @param userSession
      * @param uuid
      * @return
      * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
+    @Authenticated(invalidToken = GenericErrorCode.ATHR_001_ADMIN, signedOut = GenericErrorCode.ATHR_002_ADMIN)
     @RequestMapping(method = RequestMethod.DELETE, value = "/user/{userId}")
-    public ResponseEntity<UserDeleteResponse> deleteUser(@RequestHeader("authorization") final String authorization,
+    public ResponseEntity<UserDeleteResponse> deleteUser(@RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession,
                                                          @PathVariable("userId") final String uuid) throws AuthorizationFailedException, UserNotFoundException {
-        adminBusinessService.deleteUser(uuid, authorization);
+        adminBusinessService.deleteUser(uuid, userSession);
         UserDeleteResponse userResponse = new UserDeleteResponse().id(uuid).status(Constants.DELETE_USER_MESSAGE);
         return new ResponseEntity<UserDeleteResponse>(userResponse, HttpStatus.OK);
     }
 
+    /** To import users, questions and answers, one record per line of the request body
+     * @param userSession
+     * @param contentType - text/csv or application/x-ndjson, the charset defaults to UTF-8
+     * @param request
+     * @return number of rows imported
+     * @throws AuthorizationFailedException
+     * @throws InvalidImportException
+     * @throws IOException
+     */
+    @Authenticated(invalidToken = GenericErrorCode.ATHR_001_ADMIN, signedOut = GenericErrorCode.ATHR_002_ADMIN)
+    @RequestMapping(method = RequestMethod.POST, value = "/import", consumes = {APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE}, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<ImportResponse> importRecords(@RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession,
+                                                        @RequestHeader(HttpHeaders.CONTENT_TYPE) final MediaType contentType,
+                                                        final HttpServletRequest request) throws AuthorizationFailedException, InvalidImportException, IOException {
+        final BulkImportService.Format format = MediaType.valueOf(TEXT_CSV_VALUE).includes(contentType) ? BulkImportService.Format.CSV : BulkImportService.Format.NDJSON;
+        final Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        final ImportSummary summary = bulkImportService.importRecords(new InputStreamReader(request.getInputStream(), charset), format, userSession);
+        ImportResponse importResponse = new ImportResponse().users(summary.getUsers()).questions(summary.getQuestions())
+                .answers(summary.getAnswers()).durationMs(summary.getDurationMillis()).rowsPerSecond(summary.getRowsPerSecond());
+        return new ResponseEntity<ImportResponse>(importResponse, HttpStatus.OK);
+    }
 
-}
+    /** To export every question with its answers, in question id order
+     * @param userSession
+     * @param format - NDJSON, one question per line, or CSV, one row per answer
+     * @param acceptEncoding - the body is gzip compressed if it contains gzip
+     * @return ResponseEntity with a body written while the questions are read from the database, its content type is
+     * set here rather than declared on the mapping so that errors can still be rendered as JSON
+     * @throws AuthorizationFailedException
+     */
+    @ConcurrencyLimited("stream")
+    @Authenticated(invalidToken = GenericErrorCode.ATHR_001_ADMIN, signedOut = GenericErrorCode.ATHR_002_ADMIN)
+    @RequestMapping(method = RequestMethod.GET, value = "/export")
+    public ResponseEntity<StreamingResponseBody> exportQuestionsWithAnswers(@RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession,
+                                                                            @RequestParam(value = "format", defaultValue = "NDJSON") final BulkImportService.Format format,
+                                                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding) throws AuthorizationFailedException {
+        adminBusinessService.authorizeExport(userSession);
+        final boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        final Consumer<Consumer<QuestionExportResponse>> source =
+                sink -> adminBusinessService.exportQuestionsWithAnswers(question -> sink.accept(toQuestionExportResponse(question)));
+        final HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        final StreamingResponseBody body;
+        if (format == BulkImportService.Format.CSV) {
+            headers.setContentType(MediaType.valueOf(TEXT_CSV_VALUE + ";charset=UTF-8"));
+            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"questions.csv\"");
+            body = questionExportStreamer.csv(source, gzip);
+        } else {
+            headers.setContentType(MediaType.valueOf(APPLICATION_NDJSON_VALUE + ";charset=UTF-8"));
+            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"questions.ndjson\"");
+            body = questionExportStreamer.ndjson(source, gzip);
+        }
+        return new ResponseEntity<StreamingResponseBody>(body, headers, HttpStatus.OK);
+    }
 
+    /** To read how far every subscriber of the change feed has got
+     * @param userSession
+     * @return offsets by subscriber name
+     * @throws AuthorizationFailedException
+     */
+    @Authenticated(invalidToken = GenericErrorCode.ATHR_001_ADMIN, signedOut = GenericErrorCode.ATHR_002_ADMIN)
+    @RequestMapping(method = RequestMethod.GET, value = "/outbox/offsets", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<OutboxOffsetResponse>> getOutboxOffsets(@RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession) throws AuthorizationFailedException {
+        final List<OutboxOffsetResponse> offsets = new ArrayList<OutboxOffsetResponse>();
+        for (OutboxOffset offset : adminBusinessService.getOutboxOffsets(userSession)) {
+            offsets.add(new OutboxOffsetResponse().subscriber(offset.getSubscriber()).lastId(offset.getLastId())
+                    .pending(offset.getPending()).updatedAt(offset.getUpdatedAt().toOffsetDateTime().toString()));
+        }
+        return new ResponseEntity<List<OutboxOffsetResponse>>(offsets, HttpStatus.OK);
+    }
+
+    private QuestionExportResponse toQuestionExportResponse(final QuestionExport question) {
+        final List<AnswerExportResponse> answers = new ArrayList<AnswerExportResponse>(question.getAnswers().size());
+        for (AnswerExport answer : question.getAnswers()) {
+            answers.add(new AnswerExportResponse().id(answer.getUuid()).answer(answer.getAnswer())
+                    .date(answer.getDate().toOffsetDateTime().toString()).userId(answer.getUserUuid()));
+        }
+        return new QuestionExportResponse().id(question.getUuid()).content(question.getContent())
+                .date(question.getDate().toOffsetDateTime().toString()).userId(question.getUserUuid()).answers(answers);
+    }
+}
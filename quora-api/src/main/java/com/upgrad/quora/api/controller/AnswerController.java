@@ -1,24 +1,37 @@
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.api.auth.Authenticated;
+import com.upgrad.quora.api.auth.AuthenticationInterceptor;
+import com.upgrad.quora.api.limit.ConcurrencyLimited;
+import com.upgrad.quora.api.limit.RateLimited;
 import com.upgrad.quora.api.model.*;
+import com.upgrad.quora.api.stream.JsonArrayStreamer;
 import com.upgrad.quora.service.business.AnswerBusinessService;
+import com.upgrad.quora.service.business.UserSession;
 import com.upgrad.quora.service.common.Constants;
+import com.upgrad.quora.service.common.GenericErrorCode;
 import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBatchRequestException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.projection.AnswerSummary;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -31,20 +44,26 @@ public class AnswerController {
     @Autowired
     private ModelMapper modelMapper;
 
+    @Autowired
+    private JsonArrayStreamer jsonArrayStreamer;
+
     /**
      * Create answer for a question
      *
      * @param answerRequest
      * @param questionId
-     * @param authorization
+     * @param userSession
      * @return questionId for which answer is created
      * @throws InvalidQuestionException
      * @throws UserNotFoundException
      */
+    @ConcurrencyLimited("write")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_002_CREATE_ANS)
+    @RateLimited("answer-write")
     @RequestMapping(method = RequestMethod.POST, path = "/question/{questionId}/answer/create", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<AnswerResponse> createAnswer(final AnswerRequest answerRequest, @PathVariable("questionId") final String questionId, @RequestHeader("authorization") final String authorization) throws InvalidQuestionException, AuthorizationFailedException {
+    public ResponseEntity<AnswerResponse> createAnswer(final AnswerRequest answerRequest, @PathVariable("questionId") final String questionId, @RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession) throws InvalidQuestionException {
         final AnswerEntity answerEntity = convertToAnswerEntity(answerRequest);
-        AnswerEntity createdAnswerEntity = answerBusinessService.createAnswer(answerEntity, authorization, questionId);
+        AnswerEntity createdAnswerEntity = answerBusinessService.createAnswer(answerEntity, userSession, questionId);
         AnswerResponse answerResponse = new AnswerResponse().id(createdAnswerEntity.getUuid()).status(Constants.CREATE_ANS_MESSAGE);
         return new ResponseEntity<AnswerResponse>(answerResponse, HttpStatus.CREATED);
     }
@@ -54,14 +73,17 @@ public class AnswerController {
      *
      * @param answerEditRequest
      * @param answerId
-     * @param authorization
+     * @param userSession
      * @return answerId of the Answer edited
      * @throws AuthorizationFailedException
      * @throws AnswerNotFoundException
      */
+    @ConcurrencyLimited("write")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_002_EDIT_ANS)
+    @RateLimited("answer-write")
     @RequestMapping(method = RequestMethod.PUT, path = "/answer/edit/{answerId}", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<AnswerEditResponse> editAnswerContent(final AnswerEditRequest answerEditRequest, @PathVariable("answerId") final String answerId, @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, AnswerNotFoundException {
-        AnswerEntity updateAnswerEntity = answerBusinessService.editAnswer(authorization, answerId, answerEditRequest.getContent());
+    public ResponseEntity<AnswerEditResponse> editAnswerContent(final AnswerEditRequest answerEditRequest, @PathVariable("answerId") final String answerId, @RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession) throws AuthorizationFailedException, AnswerNotFoundException {
+        AnswerEntity updateAnswerEntity = answerBusinessService.editAnswer(userSession, answerId, answerEditRequest.getContent());
         AnswerEditResponse answerEditResponse = new AnswerEditResponse().id(updateAnswerEntity.getUuid()).status(Constants.EDIT_ANS_MESSAGE);
         return new ResponseEntity<AnswerEditResponse>(answerEditResponse, HttpStatus.OK);
     }
@@ -70,14 +92,17 @@ public class AnswerController {
      * Delete an answer
      *
      * @param answerId
-     * @param authorization
+     * @param userSession
      * @return Response Entity for deleted answer
      * @throws AuthorizationFailedException
      * @throws AnswerNotFoundException
      */
+    @ConcurrencyLimited("write")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_002_DEL_ANS)
+    @RateLimited("answer-write")
     @RequestMapping(method = RequestMethod.DELETE, path = "/answer/delete/{answerId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<AnswerDeleteResponse> deleteAnswer(@PathVariable("answerId") final String answerId, @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, AnswerNotFoundException {
-        AnswerEntity answerEntity = answerBusinessService.deleteAnswer(answerId, authorization);
+    public ResponseEntity<AnswerDeleteResponse> deleteAnswer(@PathVariable("answerId") final String answerId, @RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession) throws AuthorizationFailedException, AnswerNotFoundException {
+        AnswerEntity answerEntity = answerBusinessService.deleteAnswer(answerId, userSession);
         AnswerDeleteResponse answerDeleteResponse = new AnswerDeleteResponse().id(answerEntity.getUuid()).status(Constants.DELETE_ANS_MESSAGE);
         return new  ResponseEntity<AnswerDeleteResponse>(answerDeleteResponse, HttpStatus.OK);
     }
@@ -86,25 +111,70 @@ public class AnswerController {
      * Fetch all answers for a question
      *
      * @param questionId
-     * @param authorization
      * @return Response entity for all answers
-     * @throws AuthorizationFailedException
      * @throws InvalidQuestionException
      */
+    @ConcurrencyLimited("read")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_002_GET_ANS)
     @RequestMapping(method = RequestMethod.GET, path = "/answer/all/{questionId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<AnswerDetailsResponse>> getAllAnswersToQuestion(@PathVariable("questionId") String questionId, @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, InvalidQuestionException {
-        List<AnswerEntity> answerEntityList = answerBusinessService.getAllAnswersToQuestion(questionId, authorization);
+    public ResponseEntity<List<AnswerDetailsResponse>> getAllAnswersToQuestion(@PathVariable("questionId") String questionId) throws InvalidQuestionException {
+        List<AnswerSummary> answerSummaryList = answerBusinessService.getAllAnswersToQuestion(questionId);
         List<AnswerDetailsResponse> answerDetailsResponsesList = new ArrayList<AnswerDetailsResponse>();
-        Iterator<AnswerEntity> iterator = answerEntityList.iterator();
+        Iterator<AnswerSummary> iterator = answerSummaryList.iterator();
 
         while(iterator.hasNext()) {
-            AnswerEntity answerEntity = iterator.next();
-            AnswerDetailsResponse answerDetailsResponse = new AnswerDetailsResponse().id(answerEntity.getUuid()).questionContent(answerEntity.getQuestion().getContent()).answerContent(answerEntity.getAnswer());
-            answerDetailsResponsesList.add(answerDetailsResponse);
+            answerDetailsResponsesList.add(toAnswerDetailsResponse(iterator.next()));
         }
         return new ResponseEntity<List<AnswerDetailsResponse>>(answerDetailsResponsesList, HttpStatus.OK);
     }
 
+    /**
+     * Fetch all answers for several questions, authenticated once and loaded with one query for the questions and one for the answers
+     *
+     * @param questionIds - question uuids, comma separated or repeated
+     * @return one entry per requested question in the order requested, with an error code for questions that do not exist
+     * @throws InvalidBatchRequestException
+     */
+    @ConcurrencyLimited("read")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_002_GET_ANS)
+    @RequestMapping(method = RequestMethod.GET, path = "/answer/all", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<QuestionAnswersResponse>> getAllAnswersToQuestions(@RequestParam("questionIds") final List<String> questionIds) throws InvalidBatchRequestException {
+        final Map<String, List<AnswerSummary>> answersByQuestion = answerBusinessService.getAllAnswersToQuestions(questionIds);
+        final List<QuestionAnswersResponse> questionAnswersResponses = new ArrayList<QuestionAnswersResponse>();
+        for (String questionId : new LinkedHashSet<String>(questionIds)) {
+            final List<AnswerSummary> answers = answersByQuestion.get(questionId);
+            if (answers == null) {
+                questionAnswersResponses.add(new QuestionAnswersResponse().questionId(questionId)
+                        .code(GenericErrorCode.INVALID_QUES_001_GET_ANS.getCode()).message(GenericErrorCode.INVALID_QUES_001_GET_ANS.getDefaultMessage()));
+                continue;
+            }
+            final List<AnswerDetailsResponse> answerDetailsResponses = new ArrayList<AnswerDetailsResponse>(answers.size());
+            for (AnswerSummary answer : answers) {
+                answerDetailsResponses.add(toAnswerDetailsResponse(answer));
+            }
+            questionAnswersResponses.add(new QuestionAnswersResponse().questionId(questionId).answers(answerDetailsResponses));
+        }
+        return new ResponseEntity<List<QuestionAnswersResponse>>(questionAnswersResponses, HttpStatus.OK);
+    }
+
+    /**
+     * Fetch all answers for a question, streamed as one JSON array for export clients.
+     * Only a few streams run at a time, as each one holds a database connection and a stream thread
+     *
+     * @param questionId
+     * @return Response entity with a body written while the answers are read from the database
+     * @throws InvalidQuestionException
+     */
+    @ConcurrencyLimited("stream")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_002_GET_ANS)
+    @RequestMapping(method = RequestMethod.GET, path = "/answer/all/{questionId}", params = "stream=true", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllAnswersToQuestion(@PathVariable("questionId") String questionId) throws InvalidQuestionException {
+        final QuestionEntity question = answerBusinessService.getQuestionToAnswer(questionId);
+        final StreamingResponseBody body = jsonArrayStreamer.<AnswerDetailsResponse>stream(
+                sink -> answerBusinessService.streamAllAnswersToQuestion(question, answerSummary -> sink.accept(toAnswerDetailsResponse(answerSummary))));
+        return new ResponseEntity<StreamingResponseBody>(body, HttpStatus.OK);
+    }
+
     /**
      * Private method to create and answer entity
      *
@@ -118,4 +188,14 @@ public class AnswerController {
         answerEntity.setDate(ZonedDateTime.now());
         return answerEntity;
     }
+
+    /**
+     * Private method to create an answer details response
+     *
+     * @param answerSummary
+     * @return Answer details response
+     */
+    private AnswerDetailsResponse toAnswerDetailsResponse(final AnswerSummary answerSummary) {
+        return new AnswerDetailsResponse().id(answerSummary.getUuid()).questionContent(answerSummary.getQuestionContent()).answerContent(answerSummary.getAnswer());
+    }
 }
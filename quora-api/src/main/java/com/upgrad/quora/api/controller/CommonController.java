@@ -1,9 +1,11 @@
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.api.auth.Authenticated;
+import com.upgrad.quora.api.limit.ConcurrencyLimited;
 import com.upgrad.quora.api.model.UserDetailsResponse;
 import com.upgrad.quora.service.business.CommonBusinessService;
+import com.upgrad.quora.service.common.GenericErrorCode;
 import com.upgrad.quora.service.entity.UserEntity;
-import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,16 +24,15 @@ public class CommonController {
 
     /** To fetch the requested user details
      * @param userUuid
-     * @param authorization
      * @return
-     * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
+    @ConcurrencyLimited("read")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_002_COMMON)
     @RequestMapping(method = RequestMethod.GET, path = "/userprofile/{userId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<UserDetailsResponse> getUser(@PathVariable("userId") final String userUuid,
-                                                       @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, UserNotFoundException {
+    public ResponseEntity<UserDetailsResponse> getUser(@PathVariable("userId") final String userUuid) throws UserNotFoundException {
 
-        final UserEntity userEntity = commonBusinessService.getUser(userUuid, authorization);
+        final UserEntity userEntity = commonBusinessService.getUser(userUuid);
         UserDetailsResponse userDetailsResponse = convertToDto(userEntity);
         return new ResponseEntity<UserDetailsResponse>(userDetailsResponse, HttpStatus.OK);
     }
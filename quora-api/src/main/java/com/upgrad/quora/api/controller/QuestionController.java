@@ -1,24 +1,43 @@
 
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.api.auth.Authenticated;
+import com.upgrad.quora.api.auth.AuthenticationInterceptor;
+import com.upgrad.quora.api.limit.ConcurrencyLimited;
+import com.upgrad.quora.api.limit.RateLimited;
 import com.upgrad.quora.api.model.*;
+import com.upgrad.quora.api.stream.JsonArrayStreamer;
 import com.upgrad.quora.service.business.QuestionService;
+import com.upgrad.quora.service.business.UserSession;
 import com.upgrad.quora.service.common.Constants;
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.Page;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.projection.AnswerExport;
+import com.upgrad.quora.service.projection.QuestionDetail;
+import com.upgrad.quora.service.projection.QuestionSummary;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
@@ -29,59 +48,109 @@ import java.util.UUID;
 @Controller
 @RequestMapping("/question")
 public class QuestionController {
+    public static final String NEXT_CURSOR_HEADER = "next-cursor";
+
     @Autowired
     private QuestionService questionService;
 
     @Autowired
     private ModelMapper modelMapper;
+
+    @Autowired
+    private JsonArrayStreamer jsonArrayStreamer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
     /*
     * Create a new question
     * @param questionRequest - questionRequest object containing content
-    * @param authorization - authorization header for authentication and authorization
-    * @throws AuthorizedFailedException - throws when the user does not exist or not signed in
+    * @param userSession - session of the signed in user
     * @returns ResponseEntity
     */
+    @ConcurrencyLimited("write")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_QSN_USR_001_COMMON)
+    @RateLimited("question-write")
     @RequestMapping(method = RequestMethod.POST,path = "/create",produces = MediaType.APPLICATION_JSON_UTF8_VALUE,consumes = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionResponse> createQuestion(final QuestionRequest questionRequest,@RequestHeader("authorization") final String authorization) throws AuthorizationFailedException {
+    public ResponseEntity<QuestionResponse> createQuestion(final QuestionRequest questionRequest,@RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession) {
         final QuestionEntity questionEntity = convertToQuestionEntity(questionRequest);
-        final QuestionEntity createdQuestionEntity = questionService.createQuestion(questionEntity,authorization);
+        final QuestionEntity createdQuestionEntity = questionService.createQuestion(questionEntity,userSession);
         final QuestionResponse questionResponse = new QuestionResponse().id(createdQuestionEntity.getUuid()).status(Constants.CREATE_QUESTION_MESSAGE);
         return new ResponseEntity<QuestionResponse>(questionResponse, HttpStatus.CREATED);
     }
     /*
-    * Get all the questions posted by the users
-    * @param authorization - authorization header for authentication and authorization
-    * @returns ResponseEntity
+    * Get the questions posted by the users, newest first, one page at a time
+    * @param cursor - next-cursor header of the previous page, absent for the first page
+    * @param limit - maximum number of questions in the page
+    * @returns ResponseEntity with the next-cursor header when more questions follow
     */
+    @ConcurrencyLimited("read")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_QSN_USR_002_COMMON)
     @RequestMapping(method = RequestMethod.GET,path = "/all",produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<QuestionDetailsResponse>> getQuestions(@RequestHeader("authorization") final String authorization) throws AuthorizationFailedException{
-        final List<QuestionEntity> questionEntityList = questionService.getAllQuestions(authorization);
-        List<QuestionDetailsResponse> questionDetailsResponsesList = getQuestionDetailsResponseList(questionEntityList);
-        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponsesList,HttpStatus.OK);
+    public ResponseEntity<List<QuestionDetailsResponse>> getQuestions(@RequestParam(value = "cursor", required = false) final String cursor,
+                                                                      @RequestParam(value = "limit", required = false) final Integer limit) throws InvalidPageRequestException {
+        final Page<QuestionSummary> questionPage = questionService.getAllQuestions(cursor, limit);
+        List<QuestionDetailsResponse> questionDetailsResponsesList = getQuestionDetailsResponseList(questionPage.getItems());
+        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponsesList, pageHeaders(questionPage), HttpStatus.OK);
+    }
+    /*
+    * Get every question posted by the users, newest first, streamed as one JSON array for export clients.
+    * Only a few streams run at a time, as each one holds a database connection and a stream thread
+    * @returns ResponseEntity with a body written while the questions are read from the database
+    */
+    @ConcurrencyLimited("stream")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_QSN_USR_002_COMMON)
+    @RequestMapping(method = RequestMethod.GET,path = "/all",params = "stream=true",produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamQuestions() {
+        final StreamingResponseBody body = jsonArrayStreamer.<QuestionDetailsResponse>stream(
+                sink -> questionService.streamAllQuestions(questionSummary -> sink.accept(toQuestionDetailsResponse(questionSummary))));
+        return new ResponseEntity<StreamingResponseBody>(body, HttpStatus.OK);
+    }
+    /*
+    * used to fetch a question with its author and first answers in one response, read with two SQL statements.
+    * The ETag is a digest of the response, so a request that sends it back in If-None-Match gets 304 without a body
+    * while nothing in the response has changed.
+    * @param questionId - question uuid
+    * @returns ResponseEntity with an ETag and a Cache-Control that makes clients revalidate before reusing the response
+    */
+    @ConcurrencyLimited("read")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_QSN_USR_006_COMMON)
+    @RequestMapping(method = RequestMethod.GET,path = "/{questionId}",produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<QuestionDetailResponse> getQuestion(@PathVariable("questionId") final String questionId) throws InvalidQuestionException, JsonProcessingException {
+        final QuestionDetailResponse questionDetailResponse = toQuestionDetailResponse(questionService.getQuestionDetail(questionId));
+        final String etag = DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(questionDetailResponse));
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate()).body(questionDetailResponse);
     }
     /*
-    * used to fetch all the questions by a specific
+    * used to fetch the questions posted by a specific user, newest first, one page at a time
     * @param userId - the user uuid to fetch the questions posted by the user
-    * @param authorization - authorization header for authentication and authorization
-    * @returns ResponseEntity
+    * @param cursor - next-cursor header of the previous page, absent for the first page
+    * @param limit - maximum number of questions in the page
+    * @returns ResponseEntity with the next-cursor header when more questions follow
     *
     */
+    @ConcurrencyLimited("read")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_QSN_USR_003_COMMON)
     @RequestMapping(method = RequestMethod.GET,path = "/all/{userId}",produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<QuestionDetailsResponse>> getQuestionsByUser(@PathVariable("userId") final String userId,@RequestHeader("authorization") final String authorization ) throws AuthorizationFailedException, UserNotFoundException {
-        final List<QuestionEntity> questionEntityList = questionService.getQuestionsByUser(userId, authorization);
-        List<QuestionDetailsResponse> questionDetailsResponsesList = getQuestionDetailsResponseList(questionEntityList);
-        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponsesList,HttpStatus.OK);
+    public ResponseEntity<List<QuestionDetailsResponse>> getQuestionsByUser(@PathVariable("userId") final String userId,
+                                                                            @RequestParam(value = "cursor", required = false) final String cursor,
+                                                                            @RequestParam(value = "limit", required = false) final Integer limit) throws UserNotFoundException, InvalidPageRequestException {
+        final Page<QuestionSummary> questionPage = questionService.getQuestionsByUser(userId, cursor, limit);
+        List<QuestionDetailsResponse> questionDetailsResponsesList = getQuestionDetailsResponseList(questionPage.getItems());
+        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponsesList, pageHeaders(questionPage), HttpStatus.OK);
     }
     /*
     * used to delete a question based on question id
     * @param questionId - question uuid
-    * @param authorization - authorization header for authentication and authorization
+    * @param userSession - session of the signed in user
     * @returns ResponseEntity
     *
      */
+    @ConcurrencyLimited("write")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_QSN_USR_004_COMMON)
+    @RateLimited("question-write")
     @RequestMapping(method = RequestMethod.DELETE,path = "/delete/{questionId}",produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionDeleteResponse> deleteQuestionById(@PathVariable("questionId") final String questionId,@RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, InvalidQuestionException {
-        QuestionEntity questionEntity = questionService.deleteQuestionById(questionId,authorization);
+    public ResponseEntity<QuestionDeleteResponse> deleteQuestionById(@PathVariable("questionId") final String questionId,@RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession) throws AuthorizationFailedException, InvalidQuestionException {
+        QuestionEntity questionEntity = questionService.deleteQuestionById(questionId,userSession);
         QuestionDeleteResponse deleteResponse = new QuestionDeleteResponse().id(questionEntity.getUuid()).status(Constants.DELETE_QUESTION_MESSAGE);
         return new ResponseEntity<QuestionDeleteResponse>(deleteResponse,HttpStatus.OK);
     }
@@ -89,14 +158,17 @@ public class QuestionController {
      * used to edit a question based on question id
      * @param questionEditRequest - request containing the content
      * @param questionId - question uuid
-     * @param authorization - authorization header for authentication and authorization
+     * @param userSession - session of the signed in user
      * @returns ResponseEntity
      *
      */
+    @ConcurrencyLimited("write")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_QSN_USR_005_COMMON)
+    @RateLimited("question-write")
     @RequestMapping(method = RequestMethod.PUT,path = "/edit/{questionId}",produces = MediaType.APPLICATION_JSON_UTF8_VALUE,consumes = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionEditResponse> editQuestionById(final QuestionEditRequest questionEditRequest,@PathVariable("questionId") final String questionId,@RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, InvalidQuestionException{
+    public ResponseEntity<QuestionEditResponse> editQuestionById(final QuestionEditRequest questionEditRequest,@PathVariable("questionId") final String questionId,@RequestAttribute(AuthenticationInterceptor.USER_SESSION) final UserSession userSession) throws AuthorizationFailedException, InvalidQuestionException{
         QuestionEntity questionEntity = convertToQuestionEntity(questionEditRequest);
-        QuestionEntity cretedQuestionEntity=questionService.editQuestion(questionEntity,questionId,authorization);
+        QuestionEntity cretedQuestionEntity=questionService.editQuestion(questionEntity,questionId,userSession);
         QuestionEditResponse questionEditResponse = new QuestionEditResponse().id(cretedQuestionEntity.getUuid()).status(Constants.EDIT_QUESTION_MESSAGE);
         return new ResponseEntity<QuestionEditResponse>(questionEditResponse,HttpStatus.OK);
     }
@@ -126,18 +198,54 @@ public class QuestionController {
         return questionEntity;
     }
     /*
-    * converts questionEntityList to questionDetailsResponse list
-    * @param List<QuestionEntity>
+    * @param page
+    * @returns headers carrying the cursor of the next page, if there is one
+    */
+    private HttpHeaders pageHeaders(final Page<?> page){
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null) {
+            headers.add(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return headers;
+    }
+    /*
+    * converts questionSummaryList to questionDetailsResponse list
+    * @param List<QuestionSummary>
     * @returns List<QuestionDetailsResponse>
     */
-    private List<QuestionDetailsResponse> getQuestionDetailsResponseList(List<QuestionEntity> questionEntityList){
+    private List<QuestionDetailsResponse> getQuestionDetailsResponseList(List<QuestionSummary> questionSummaryList){
         List<QuestionDetailsResponse> questionDetailsResponsesList = new ArrayList<QuestionDetailsResponse>();
-        Iterator<QuestionEntity> iterator =questionEntityList.listIterator();
+        Iterator<QuestionSummary> iterator =questionSummaryList.listIterator();
         while(iterator.hasNext()){
-            QuestionEntity questionEntity = iterator.next();
-            QuestionDetailsResponse questionDetailsResponse = new QuestionDetailsResponse().id(questionEntity.getUuid()).content(questionEntity.getContent());
-            questionDetailsResponsesList.add(questionDetailsResponse);
+            questionDetailsResponsesList.add(toQuestionDetailsResponse(iterator.next()));
         }
         return questionDetailsResponsesList;
     }
-}
\ No newline at end of file
+    /*
+    * converts Question Detail to Question Detail Response
+    * @param questionDetail
+    * @returns QuestionDetailResponse
+    */
+    private QuestionDetailResponse toQuestionDetailResponse(final QuestionDetail questionDetail){
+        final List<QuestionAnswerResponse> answers = new ArrayList<QuestionAnswerResponse>(questionDetail.getAnswers().size());
+        for (AnswerExport answer : questionDetail.getAnswers()) {
+            answers.add(new QuestionAnswerResponse().id(answer.getUuid()).answer(answer.getAnswer())
+                    .date(answer.getDate().toOffsetDateTime().toString()).userId(answer.getUserUuid()));
+        }
+        final QuestionAuthorResponse author = new QuestionAuthorResponse().id(questionDetail.getUserUuid()).userName(questionDetail.getUserName())
+                .firstName(questionDetail.getFirstName()).lastName(questionDetail.getLastName());
+        return new QuestionDetailResponse().id(questionDetail.getUuid()).content(questionDetail.getContent())
+                .date(questionDetail.getDate().toOffsetDateTime().toString()).author(author).answers(answers)
+                .moreAnswers(questionDetail.hasMoreAnswers());
+    }
+    /*
+    * converts Question Summary to Question Details Response
+    * @param questionSummary
+    * @returns QuestionDetailsResponse
+    */
+    private QuestionDetailsResponse toQuestionDetailsResponse(final QuestionSummary questionSummary){
+        return new QuestionDetailsResponse().id(questionSummary.getUuid()).content(questionSummary.getContent())
+                .answerCount(questionSummary.getAnswerCount())
+                .lastAnswerAt(questionSummary.getLastAnswerAt() == null ? null : questionSummary.getLastAnswerAt().toOffsetDateTime().toString());
+    }
+}
@@ -0,0 +1,49 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.api.auth.Authenticated;
+import com.upgrad.quora.api.limit.ConcurrencyLimited;
+import com.upgrad.quora.api.model.SearchResultResponse;
+import com.upgrad.quora.service.business.SearchResult;
+import com.upgrad.quora.service.business.SearchService;
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
+import com.upgrad.quora.service.exception.InvalidSearchException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/")
+public class SearchController {
+
+    @Autowired
+    private SearchService searchService;
+
+    /**
+     * Search the content of questions and answers
+     *
+     * @param query - words to search for, words in double quotes have to appear as a phrase
+     * @param limit - maximum number of results, null for the default
+     * @return matching questions and answers, best match first
+     * @throws InvalidSearchException
+     * @throws InvalidPageRequestException
+     */
+    @ConcurrencyLimited("read")
+    @Authenticated(signedOut = GenericErrorCode.ATHR_002_SEARCH)
+    @RequestMapping(method = RequestMethod.GET, path = "/search", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<SearchResultResponse>> search(@RequestParam("q") final String query,
+                                                             @RequestParam(value = "limit", required = false) final Integer limit) throws InvalidSearchException, InvalidPageRequestException {
+        final List<SearchResult> results = searchService.search(query, limit);
+        final List<SearchResultResponse> searchResultResponses = new ArrayList<SearchResultResponse>(results.size());
+        for (SearchResult result : results) {
+            searchResultResponses.add(new SearchResultResponse().type(SearchResultResponse.TypeEnum.valueOf(result.getType().name()))
+                    .id(result.getUuid()).questionId(result.getQuestionUuid()).content(result.getContent()).score(result.getScore()));
+        }
+        return new ResponseEntity<List<SearchResultResponse>>(searchResultResponses, HttpStatus.OK);
+    }
+}
@@ -1,16 +1,15 @@
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.api.limit.ConcurrencyLimited;
 import com.upgrad.quora.api.model.SigninResponse;
 import com.upgrad.quora.api.model.SignoutResponse;
 import com.upgrad.quora.api.model.SignupUserRequest;
 import com.upgrad.quora.api.model.SignupUserResponse;
 import com.upgrad.quora.service.business.UserBussinessService;
 import com.upgrad.quora.service.common.Constants;
-import com.upgrad.quora.service.entity.UserAuthTokenEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthenticationFailedException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
-import com.upgrad.quora.service.exception.SignUpRestrictedException;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -24,9 +23,11 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/user")
+@ConcurrencyLimited("auth")
 public class UserController {
 
     @Autowired
@@ -37,37 +38,36 @@ public class UserController {
     @Value("${user.default.role}")
     private String defaultRole;
 
-    /** To create an user based on sign-up request details
+    /** To create an user based on sign-up request details, the request thread is released while the password is
+     * hashed and the user is inserted
      * @param signupUserRequest
      * @return
-     * @throws SignUpRestrictedException
      */
     @RequestMapping(method = RequestMethod.POST, path = "/signup", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<SignupUserResponse> userSignup(final SignupUserRequest signupUserRequest) throws SignUpRestrictedException {
-        final UserEntity userEntity = convertToUserEntity(signupUserRequest);
-        final UserEntity createdUserEntity = userBussinessService.signup(userEntity);
-        SignupUserResponse userResponse = new SignupUserResponse().id(createdUserEntity.getUuid()).status(Constants.USER_REGISTRATION_MESSAGE);
-        return new ResponseEntity<SignupUserResponse>(userResponse, HttpStatus.CREATED);
+    public CompletableFuture<ResponseEntity<SignupUserResponse>> userSignup(final SignupUserRequest signupUserRequest) {
+        return userBussinessService.signup(convertToUserEntity(signupUserRequest)).thenApply(createdUserEntity -> {
+            SignupUserResponse userResponse = new SignupUserResponse().id(createdUserEntity.getUuid()).status(Constants.USER_REGISTRATION_MESSAGE);
+            return new ResponseEntity<SignupUserResponse>(userResponse, HttpStatus.CREATED);
+        });
     }
 
 
-    /** To sign-in an user based on authentication
+    /** To sign-in an user based on authentication, the request thread is released while the password is checked and
+     * the session is created
      * @param authorization
      * @return
      * @throws AuthenticationFailedException
      */
     @RequestMapping(method = RequestMethod.POST, path = "/signin", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<SigninResponse> signin(@RequestHeader("authorization") final String authorization) throws AuthenticationFailedException {
+    public CompletableFuture<ResponseEntity<SigninResponse>> signin(@RequestHeader("authorization") final String authorization) throws AuthenticationFailedException {
 
+        return userBussinessService.authenticate(authorization).thenApply(userAuthToken -> {
+            SigninResponse signinResponse = new SigninResponse().id(userAuthToken.getUuid()).message(Constants.LOGIN_MESSAGE);
 
-        UserAuthTokenEntity userAuthToken = userBussinessService.authenticate(authorization);
-
-        SigninResponse signinResponse = new SigninResponse().id(userAuthToken.getUuid()).message(Constants.LOGIN_MESSAGE);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("access_token", userAuthToken.getAccessToken());
-        return new ResponseEntity<SigninResponse>(signinResponse, headers, HttpStatus.OK);
-
+            HttpHeaders headers = new HttpHeaders();
+            headers.add("access_token", userAuthToken.getAccessToken());
+            return new ResponseEntity<SigninResponse>(signinResponse, headers, HttpStatus.OK);
+        });
     }
 
     /** To logout a signed in user
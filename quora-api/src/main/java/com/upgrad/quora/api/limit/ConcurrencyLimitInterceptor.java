@@ -0,0 +1,67 @@
+package com.upgrad.quora.api.limit;
+
+import com.upgrad.quora.service.business.AdaptiveConcurrencyLimiter;
+import com.upgrad.quora.service.business.ConcurrencyLimits;
+import com.upgrad.quora.service.exception.ServiceBusyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static com.upgrad.quora.service.common.GenericErrorCode.GEN_002;
+
+/**
+ * Holds a slot of the concurrency limit of endpoints annotated with {@link ConcurrencyLimited} for the whole request.
+ * Requests beyond the limit surface as ServiceBusyException (503) through the RestExceptionHandler. The slot of a
+ * request that continues asynchronously is kept over the async dispatch and given back when that dispatch completes.
+ */
+@Component
+public class ConcurrencyLimitInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String LIMITER = ConcurrencyLimitInterceptor.class.getName() + ".limiter";
+    private static final String STARTED_AT = ConcurrencyLimitInterceptor.class.getName() + ".startedAt";
+
+    private final Logger log = LoggerFactory.getLogger(ConcurrencyLimitInterceptor.class);
+
+    @Autowired
+    private ConcurrencyLimits concurrencyLimits;
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod) || request.getAttribute(LIMITER) != null) {
+            return true;
+        }
+        final HandlerMethod handlerMethod = (HandlerMethod) handler;
+        ConcurrencyLimited concurrencyLimited = handlerMethod.getMethodAnnotation(ConcurrencyLimited.class);
+        if (concurrencyLimited == null) {
+            concurrencyLimited = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), ConcurrencyLimited.class);
+        }
+        if (concurrencyLimited == null) {
+            return true;
+        }
+        final AdaptiveConcurrencyLimiter limiter = concurrencyLimits.getLimiter(concurrencyLimited.value());
+        final long startedAt = limiter.tryAcquire();
+        if (startedAt < 0) {
+            log.info("Shedding a request to {}, {} requests of {} in flight", request.getRequestURI(), limiter.getInFlight(), concurrencyLimited.value());
+            throw new ServiceBusyException(GEN_002.getCode(), GEN_002.getDefaultMessage());
+        }
+        request.setAttribute(LIMITER, limiter);
+        request.setAttribute(STARTED_AT, startedAt);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, final Object handler, final Exception ex) {
+        final AdaptiveConcurrencyLimiter limiter = (AdaptiveConcurrencyLimiter) request.getAttribute(LIMITER);
+        if (limiter != null) {
+            request.removeAttribute(LIMITER);
+            limiter.release((Long) request.getAttribute(STARTED_AT));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.upgrad.quora.api.limit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the endpoints whose requests in flight are limited by an adaptive concurrency limit, on a method or on every
+ * endpoint of a controller. Endpoints of the same group share the limit, which is taken by the
+ * {@link ConcurrencyLimitInterceptor} before the request is authenticated, so requests beyond it are shed without
+ * touching the database.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConcurrencyLimited {
+
+    /**
+     * @return endpoint group, the name of its settings under concurrency-limit.groups
+     */
+    String value();
+}
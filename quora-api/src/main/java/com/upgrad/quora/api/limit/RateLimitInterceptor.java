@@ -0,0 +1,37 @@
+package com.upgrad.quora.api.limit;
+
+import com.upgrad.quora.api.auth.AuthenticationInterceptor;
+import com.upgrad.quora.service.business.RateLimits;
+import com.upgrad.quora.service.business.UserSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Applies the rate limit of endpoints annotated with {@link RateLimited} to the signed in user, before the handler
+ * opens a transaction. Requests beyond the limit surface as RateLimitExceededException through the RestExceptionHandler.
+ */
+@Component
+public class RateLimitInterceptor extends HandlerInterceptorAdapter {
+
+    @Autowired
+    private RateLimits rateLimits;
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        final RateLimited rateLimited = ((HandlerMethod) handler).getMethodAnnotation(RateLimited.class);
+        final UserSession userSession = (UserSession) request.getAttribute(AuthenticationInterceptor.USER_SESSION);
+        if (rateLimited == null || userSession == null) {
+            return true;
+        }
+        rateLimits.acquire(rateLimited.value(), userSession.getUserUuid());
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package com.upgrad.quora.api.limit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an endpoint whose requests count against a per-user rate limit.
+ * Endpoints of the same group share the limit, which is taken by the {@link RateLimitInterceptor} after the user has
+ * been authenticated, so the endpoint has to be {@link com.upgrad.quora.api.auth.Authenticated} as well.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    /**
+     * @return endpoint group, the name of its settings under rate-limit.groups
+     */
+    String value();
+}
@@ -0,0 +1,54 @@
+package com.upgrad.quora.api.stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes a JSON array to the response one element at a time with Jackson's streaming generator.
+ * Elements are serialized as soon as the source hands them over, so neither the source rows nor the response
+ * models of the whole listing are ever held in memory together.
+ */
+@Component
+public class JsonArrayStreamer {
+
+    private final Logger log = LoggerFactory.getLogger(JsonArrayStreamer.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** stream the elements produced by a source as a JSON array
+     * @param source - hands every element of the array to the consumer it receives
+     * @return response body written on the async request thread
+     */
+    public <T> StreamingResponseBody stream(final Consumer<Consumer<T>> source) {
+        return outputStream -> {
+            final JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartArray();
+            try {
+                source.accept(element -> write(generator, element));
+            } catch (UncheckedIOException e) {
+                log.info("streaming response aborted: {}", e.getMessage());
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+            generator.flush();
+        };
+    }
+
+    private void write(final JsonGenerator generator, final Object element) {
+        try {
+            generator.writeObject(element);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
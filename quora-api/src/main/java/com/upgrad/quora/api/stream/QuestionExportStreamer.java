@@ -0,0 +1,129 @@
+package com.upgrad.quora.api.stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.api.model.AnswerExportResponse;
+import com.upgrad.quora.api.model.QuestionExportResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the question and answer corpus to the response as NDJSON or CSV, optionally gzip compressed on the fly.
+ * Writes go through a fixed size buffer straight to the response, so a client that reads slowly blocks the writer
+ * and with it the source, instead of letting the export pile up in memory.
+ */
+@Component
+public class QuestionExportStreamer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String CSV_HEADER = "question_id,question_content,question_date,question_user_id,answer_id,answer,answer_date,answer_user_id\n";
+
+    private final Logger log = LoggerFactory.getLogger(QuestionExportStreamer.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** stream the questions produced by a source as one JSON object per line
+     * @param source - hands every question to the consumer it receives
+     * @param gzip - compress the body
+     * @return response body written on the async request thread
+     */
+    public StreamingResponseBody ndjson(final Consumer<Consumer<QuestionExportResponse>> source, final boolean gzip) {
+        return outputStream -> write(outputStream, gzip, writer -> {
+            final JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            source.accept(question -> {
+                try {
+                    generator.writeObject(question);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.flush();
+        });
+    }
+
+    /** stream the questions produced by a source as CSV with a header, one row per answer
+     * @param source - hands every question to the consumer it receives
+     * @param gzip - compress the body
+     * @return response body written on the async request thread
+     */
+    public StreamingResponseBody csv(final Consumer<Consumer<QuestionExportResponse>> source, final boolean gzip) {
+        return outputStream -> write(outputStream, gzip, writer -> {
+            writer.write(CSV_HEADER);
+            source.accept(question -> {
+                try {
+                    if (question.getAnswers().isEmpty()) {
+                        writeCsvRow(writer, question, null);
+                    }
+                    for (AnswerExportResponse answer : question.getAnswers()) {
+                        writeCsvRow(writer, question, answer);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        });
+    }
+
+    private void write(final OutputStream outputStream, final boolean gzip, final Body body) throws IOException {
+        final GZIPOutputStream compressed = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : null;
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? compressed : outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            body.writeTo(writer);
+        } catch (UncheckedIOException e) {
+            log.info("export aborted: {}", e.getMessage());
+            throw e.getCause();
+        }
+        writer.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        outputStream.flush();
+    }
+
+    private static void writeCsvRow(final Writer writer, final QuestionExportResponse question, final AnswerExportResponse answer) throws IOException {
+        writer.write(csvValue(question.getId()));
+        writer.write(',');
+        writer.write(csvValue(question.getContent()));
+        writer.write(',');
+        writer.write(csvValue(question.getDate()));
+        writer.write(',');
+        writer.write(csvValue(question.getUserId()));
+        writer.write(',');
+        writer.write(answer == null ? "" : csvValue(answer.getId()));
+        writer.write(',');
+        writer.write(answer == null ? "" : csvValue(answer.getAnswer()));
+        writer.write(',');
+        writer.write(answer == null ? "" : csvValue(answer.getDate()));
+        writer.write(',');
+        writer.write(answer == null ? "" : csvValue(answer.getUserId()));
+        writer.write('\n');
+    }
+
+    private static String csvValue(final String value) {
+        if (value == null) {
+            return "";
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private interface Body {
+        void writeTo(Writer writer) throws IOException;
+    }
+}
@@ -0,0 +1,56 @@
+package com.upgrad.quora.api.stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.Callable;
+
+/**
+ * Gives the endpoints that return a {@link StreamingResponseBody} the long async timeout of export.stream, every
+ * other async request (sign-up and sign-in) keeps the short default timeout.
+ * The handler is known when the request is intercepted, the timeout of the async request can only be changed right
+ * before the body is handed to the stream executor, so the timeout is passed from one to the other in an attribute.
+ */
+@Component
+public class StreamTimeoutInterceptor extends HandlerInterceptorAdapter implements CallableProcessingInterceptor {
+
+    private static final String TIMEOUT = StreamTimeoutInterceptor.class.getName() + ".timeout";
+
+    @Value("${export.stream.timeout-ms:600000}")
+    private long streamTimeout;
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) {
+        if (handler instanceof HandlerMethod && isStream((HandlerMethod) handler)) {
+            request.setAttribute(TIMEOUT, streamTimeout);
+        }
+        return true;
+    }
+
+    @Override
+    public <T> void beforeConcurrentHandling(final NativeWebRequest request, final Callable<T> task) {
+        final Long timeout = (Long) request.getAttribute(TIMEOUT, RequestAttributes.SCOPE_REQUEST);
+        if (timeout != null && request instanceof AsyncWebRequest) {
+            ((AsyncWebRequest) request).setTimeout(timeout);
+        }
+    }
+
+    private static boolean isStream(final HandlerMethod handlerMethod) {
+        ResolvableType returnType = ResolvableType.forMethodReturnType(handlerMethod.getMethod());
+        if (ResponseEntity.class.isAssignableFrom(returnType.resolve(Object.class))) {
+            returnType = returnType.getGeneric(0);
+        }
+        return StreamingResponseBody.class.isAssignableFrom(returnType.resolve(Object.class));
+    }
+}
@@ -1,16 +1,49 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.business.OutboxRelay;
+import com.upgrad.quora.service.business.OutboxSubscriber;
+import com.upgrad.quora.service.business.PasswordHashingExecutor;
+import com.upgrad.quora.service.exception.ServiceBusyException;
+import com.upgrad.quora.service.projection.OutboxEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Scanner;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -22,6 +55,24 @@ public class AdminControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.password.hashing.threads}")
+    private int hashingThreads;
+
 
     //This test case passes when you try to delete the user but the JWT token entered does not exist in the database.
     @Test
@@ -48,5 +99,378 @@ public class AdminControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
 
+    //This test case passes when the cached user and the cached questions of the user are gone right after the user is deleted.
+    @Test
+    public void deleteUserEvictsCachedUserAndQuestions() throws Exception {
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        final String userUuid = JsonPath.read(performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        final String accessToken = performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access_token");
+        final String questionUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=cached_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + userUuid).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionUuid).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.delete("/admin/user/" + userUuid).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/" + userUuid).header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionUuid).header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+    }
+
+    //This test case passes when the answers of a deleted user are no longer counted on the questions of other users.
+    @Test
+    public void deleteUserUncountsAnswers() throws Exception {
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        final String userUuid = JsonPath.read(performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        final String accessToken = performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access_token");
+        final String questionUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=answered_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        for (String token : new String[]{accessToken, accessToken, "database_accesstoken1"}) {
+            mvc.perform(MockMvcRequestBuilders.post("/question/" + questionUuid + "/answer/create?answer=counted_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", token))
+                    .andExpect(status().isCreated());
+        }
+
+        mvc.perform(MockMvcRequestBuilders.delete("/admin/user/" + userUuid).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid2?limit=1").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(questionUuid))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answer_count").value(1));
+    }
+
+    //This test case passes when users, questions and answers in NDJSON are imported, an imported user can sign in, an imported answer is listed under an existing question and the imported question counts its answer.
+    @Test
+    public void importNdjsonRecords() throws Exception {
+        final String prefix = "imp-" + UUID.randomUUID().toString().substring(0, 8);
+        final String records = "{\"type\":\"user\",\"uuid\":\"" + prefix + "-u1\",\"first_name\":\"a\",\"last_name\":\"a\",\"user_name\":\"" + prefix + "-u1\",\"email_address\":\"" + prefix + "-u1\",\"password\":\"secret\"}\n"
+                + "{\"type\":\"user\",\"uuid\":\"" + prefix + "-u2\",\"first_name\":\"b\",\"last_name\":\"b\",\"user_name\":\"" + prefix + "-u2\",\"email_address\":\"" + prefix + "-u2\",\"password\":\"secret\"}\n"
+                + "\n"
+                + "{\"type\":\"question\",\"uuid\":\"" + prefix + "-q1\",\"content\":\"imported question\",\"date\":\"2018-05-01T10:00:00Z\",\"user_uuid\":\"" + prefix + "-u1\"}\n"
+                + "{\"type\":\"answer\",\"uuid\":\"" + prefix + "-a1\",\"answer\":\"imported answer\",\"user_uuid\":\"" + prefix + "-u2\",\"question_uuid\":\"" + prefix + "-q1\"}\n"
+                + "{\"type\":\"answer\",\"uuid\":\"" + prefix + "-a2\",\"answer\":\"" + prefix + " answer\",\"user_uuid\":\"" + prefix + "-u1\",\"question_uuid\":\"database_question_uuid\"}\n";
+        mvc.perform(MockMvcRequestBuilders.post("/admin/import").contentType("application/x-ndjson").content(records).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("users").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("questions").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("answers").value(2));
+
+        final String credentials = Base64.getEncoder().encodeToString((prefix + "-u1:secret").getBytes());
+        performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + prefix + "-q1").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answerContent").value("imported answer"));
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(org.hamcrest.Matchers.containsString(prefix + " answer")));
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/" + prefix + "-u1").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answer_count").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].last_answer_at").isString());
+    }
+
+    //This test case passes when users and questions in CSV are imported, including quoted values with commas and quotes.
+    @Test
+    public void importCsvRecords() throws Exception {
+        final String prefix = "imp-" + UUID.randomUUID().toString().substring(0, 8);
+        final String records = "user," + prefix + "-u1,a,a," + prefix + "-u1," + prefix + "-u1,secret,India,,,,\n"
+                + "question," + prefix + "-q1,\"why, \"\"really\"\"?\",," + prefix + "-u1\n";
+        mvc.perform(MockMvcRequestBuilders.post("/admin/import").contentType("text/csv").content(records).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("users").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("questions").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("answers").value(0));
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/" + prefix + "-u1").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value("why, \"really\"?"));
+    }
+
+    //This test case passes when an import holds its hashes back while the hashing queue is full, without counting them as rejected, and completes once the queue drains.
+    @Test
+    public void importWaitsForFullHashingQueue() throws Exception {
+        final String prefix = "imp-" + UUID.randomUUID().toString().substring(0, 8);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            fillHashingQueue(release);
+            while (meterRegistry.get("password.hashing.active").gauge().value() < hashingThreads) {
+                Thread.sleep(10);
+            }
+            fillHashingQueue(release);
+            final double rejected = meterRegistry.get("password.hashing.rejected").functionCounter().count();
+            final Future<MvcResult> imported = executor.submit(() -> mvc.perform(MockMvcRequestBuilders.post("/admin/import").contentType("text/csv").content("user," + prefix + "-u1,a,a," + prefix + "-u1," + prefix + "-u1,secret,,,,,\n").header("authorization", "database_accesstoken")).andReturn());
+            Thread.sleep(200);
+            Assert.assertFalse(imported.isDone());
+            release.countDown();
+            Assert.assertEquals(200, imported.get(10, TimeUnit.SECONDS).getResponse().getStatus());
+            Assert.assertEquals(rejected, meterRegistry.get("password.hashing.rejected").functionCounter().count(), 0);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    //This test case passes when you try to import records but the role of the user corresponding to the JWT token entered is nonadmin.
+    @Test
+    public void importWithNonadminAsRole() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/admin/import").contentType("text/csv").content("user,x,a,a,x,x,secret\n").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+    }
+
+    //This test case passes when you try to import an answer to a question that does not exist and the error names its line.
+    @Test
+    public void importAnswerToNonExistingQuestion() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/admin/import").contentType("text/csv").content("\nanswer,,an answer,,database_uuid1,non_existing_question_uuid\n").header("authorization", "database_accesstoken"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("IMP-002"))
+                .andExpect(MockMvcResultMatchers.jsonPath("message").value("Line 2 refers to a user or question that does not exist"));
+    }
+
+    //This test case passes when the NDJSON export is gzip compressed and has the seeded question on one line with its answer.
+    @Test
+    public void exportNdjsonGzipped() throws Exception {
+        final MvcResult result = performAsync(MockMvcRequestBuilders.get("/admin/export").header("authorization", "database_accesstoken").header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("Content-Encoding", "gzip"))
+                .andReturn();
+        final String export;
+        try (Scanner scanner = new Scanner(new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray())), "UTF-8")) {
+            export = scanner.useDelimiter("\\A").next();
+        }
+        String seededQuestion = null;
+        for (String line : export.split("\n")) {
+            if (JsonPath.read(line, "$.id").equals("database_question_uuid")) {
+                seededQuestion = line;
+            }
+        }
+        Assert.assertNotNull(seededQuestion);
+        Assert.assertEquals("database_uuid1", JsonPath.read(seededQuestion, "$.user_id"));
+        Assert.assertEquals("database_answer_uuid", JsonPath.read(seededQuestion, "$.answers[0].id"));
+        Assert.assertEquals("my_answer", JsonPath.read(seededQuestion, "$.answers[0].answer"));
+    }
 
+    //This test case passes when the CSV export is not compressed without Accept-Encoding and has a header and a row for the seeded answer.
+    @Test
+    public void exportCsv() throws Exception {
+        final String export = performAsync(MockMvcRequestBuilders.get("/admin/export?format=CSV").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("Content-Encoding"))
+                .andReturn().getResponse().getContentAsString();
+        Assert.assertTrue(export.startsWith("question_id,question_content,question_date,question_user_id,answer_id,answer,answer_date,answer_user_id\n"));
+        Assert.assertTrue(export.contains("\"database_question_uuid\",\"database_question_content\","));
+        Assert.assertTrue(export.contains(",\"database_answer_uuid\",\"my_answer\","));
+    }
+
+    //This test case passes when you try to export but the role of the user corresponding to the JWT token entered is nonadmin.
+    @Test
+    public void exportWithNonadminAsRole() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/admin/export").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+    }
+
+    //This test case passes when the creation, edit and deletion of a question and its answer reach an outbox subscriber in the order they were made and its offset is readable afterwards.
+    @Test
+    public void outboxRelaysChangesInOrder() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber("test-" + UUID.randomUUID(), 0);
+        outboxRelay.subscribe(subscriber);
+        try {
+            final String questionUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=outbox_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString(), "$.id");
+            mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + questionUuid + "?content=edited_outbox_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk());
+            final String answerUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/" + questionUuid + "/answer/create?answer=outbox_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString(), "$.id");
+            mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionUuid).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk());
+
+            outboxRelay.relay();
+
+            final List<String> changes = new ArrayList<>();
+            String editedPayload = null;
+            for (OutboxEvent event : subscriber.events) {
+                if (event.getUuid().equals(questionUuid) || event.getUuid().equals(answerUuid)) {
+                    changes.add(event.getAggregate() + " " + event.getType());
+                    if (event.getType() == OutboxEvent.Type.UPDATED) {
+                        editedPayload = event.getPayload();
+                    }
+                }
+            }
+            Assert.assertEquals(Arrays.asList("QUESTION CREATED", "QUESTION UPDATED", "ANSWER CREATED", "ANSWER DELETED", "QUESTION DELETED"), changes);
+            Assert.assertEquals("edited_outbox_question", JsonPath.read(editedPayload, "$.content"));
+            Assert.assertEquals("database_uuid1", JsonPath.read(editedPayload, "$.user_uuid"));
+
+            mvc.perform(MockMvcRequestBuilders.get("/admin/outbox/offsets").header("authorization", "database_accesstoken"))
+                    .andExpect(status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.subscriber == '" + subscriber.getName() + "')].last_id").value(Math.toIntExact(subscriber.events.get(subscriber.events.size() - 1).getId())))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.subscriber == '" + subscriber.getName() + "')].pending").value(0));
+        } finally {
+            outboxRelay.unsubscribe(subscriber);
+        }
+    }
+
+    //This test case passes when a batch an outbox subscriber failed on is delivered to it again in the next run.
+    @Test
+    public void outboxRedeliversAfterSubscriberFailure() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber("test-" + UUID.randomUUID(), 1);
+        outboxRelay.subscribe(subscriber);
+        try {
+            final String questionUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=redelivered_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString(), "$.id");
+
+            outboxRelay.relay();
+            outboxRelay.relay();
+
+            Assert.assertEquals(0, subscriber.failures.get());
+            Assert.assertTrue(subscriber.events.stream().anyMatch(event -> event.getUuid().equals(questionUuid)));
+        } finally {
+            outboxRelay.unsubscribe(subscriber);
+        }
+    }
+
+    //This test case passes when an event that commits before an event with a lower id is held back until the transaction of the lower id has committed, and both are then delivered in id order.
+    @Test
+    public void outboxWaitsForTransactionsInFlight() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber("test-" + UUID.randomUUID(), 0);
+        outboxRelay.subscribe(subscriber);
+        final String inFlightUuid = UUID.randomUUID().toString();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("select txid_current()");
+                statement.execute("insert into change_outbox(aggregate_type, aggregate_uuid, event_type, payload) values ('QUESTION', '" + inFlightUuid + "', 'UPDATED', '{}')");
+            }
+            final String questionUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=outbox_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString(), "$.id");
+
+            outboxRelay.relay();
+            Assert.assertFalse(subscriber.events.stream().anyMatch(event -> event.getUuid().equals(questionUuid)));
+
+            connection.commit();
+            outboxRelay.relay();
+            final List<String> uuids = new ArrayList<>();
+            for (OutboxEvent event : subscriber.events) {
+                if (event.getUuid().equals(inFlightUuid) || event.getUuid().equals(questionUuid)) {
+                    uuids.add(event.getUuid());
+                }
+            }
+            Assert.assertEquals(Arrays.asList(inFlightUuid, questionUuid), uuids);
+        } finally {
+            outboxRelay.unsubscribe(subscriber);
+        }
+    }
+
+    //This test case passes when a signed up user and an imported user reach an outbox subscriber as created users.
+    @Test
+    public void outboxRelaysCreatedUsers() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber("test-" + UUID.randomUUID(), 0);
+        outboxRelay.subscribe(subscriber);
+        try {
+            final String userName = UUID.randomUUID().toString().substring(0, 20);
+            final String signedUp = JsonPath.read(performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString(), "$.id");
+            final String imported = "imp-" + UUID.randomUUID().toString().substring(0, 8);
+            mvc.perform(MockMvcRequestBuilders.post("/admin/import").contentType("text/csv").content("user," + imported + ",a,a," + imported + "," + imported + ",secret,,,,,\n").header("authorization", "database_accesstoken"))
+                    .andExpect(status().isOk());
+
+            outboxRelay.relay();
+
+            for (String uuid : new String[]{signedUp, imported}) {
+                Assert.assertTrue(uuid, subscriber.events.stream().anyMatch(event -> event.getUuid().equals(uuid)
+                        && event.getAggregate() == OutboxEvent.Aggregate.USER && event.getType() == OutboxEvent.Type.CREATED));
+            }
+        } finally {
+            outboxRelay.unsubscribe(subscriber);
+        }
+    }
+
+    //This test case passes when events older than the retention are purged by the relay although no subscriber has handled them.
+    @Test
+    public void outboxPurgesExpiredEvents() throws Exception {
+        final String uuid = UUID.randomUUID().toString();
+        jdbcTemplate.update("insert into change_outbox(aggregate_type, aggregate_uuid, event_type, payload, created_at) values ('QUESTION', ?, 'UPDATED', '{}', now() - interval '30 days')", uuid);
+        jdbcTemplate.update("insert into change_outbox_offset(subscriber, last_id) values (?, 0)", "test-" + uuid);
+        try {
+            outboxRelay.relay();
+            Assert.assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("select count(*) from change_outbox where aggregate_uuid = ?", Integer.class, uuid));
+        } finally {
+            jdbcTemplate.update("delete from change_outbox_offset where subscriber = ?", "test-" + uuid);
+        }
+    }
+
+    //This test case passes when you try to read the outbox offsets but the role of the user corresponding to the JWT token entered is nonadmin.
+    @Test
+    public void outboxOffsetsWithNonadminAsRole() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/admin/outbox/offsets").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+    }
+
+    /** records the events it is handed, after throwing on the first "failures" batches */
+    private static final class RecordingSubscriber implements OutboxSubscriber {
+        private final String name;
+        private final AtomicInteger failures;
+        private final List<OutboxEvent> events = new CopyOnWriteArrayList<>();
+
+        private RecordingSubscriber(final String name, final int failures) {
+            this.name = name;
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void onEvents(final List<OutboxEvent> batch) {
+            if (failures.getAndUpdate(left -> Math.max(left - 1, 0)) > 0) {
+                throw new IllegalStateException("failing on purpose");
+            }
+            events.addAll(batch);
+        }
+    }
+
+    private void fillHashingQueue(final CountDownLatch release) {
+        while (true) {
+            try {
+                passwordHashingExecutor.submit(() -> release.await(1, TimeUnit.MINUTES));
+            } catch (ServiceBusyException e) {
+                return;
+            }
+        }
+    }
+
+    private ResultActions performAsync(final RequestBuilder request) throws Exception {
+        final MvcResult result = mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
 }
@@ -1,28 +1,44 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.api.support.StatementCountingConfiguration;
+import com.upgrad.quora.api.support.StatementCountingDataSource;
+import com.upgrad.quora.service.business.UserSessionCache;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
 @AutoConfigureMockMvc
-
+@Import(StatementCountingConfiguration.class)
 public class AnswerControllerTest {
 
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private UserSessionCache userSessionCache;
+
+    @Autowired
+    private StatementCountingDataSource statements;
+
 
     //This test case passes when you try to create the answer but the JWT token entered does not exist in the database.
     @Test
@@ -136,5 +152,107 @@ public class AnswerControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
     }
 
+    //This test case passes when you stream all the answers posted for a specific question as one JSON array.
+    @Test
+    public void streamAllAnswersToQuestion() throws Exception {
+        final MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid?stream=true").header("authorization", "database_accesstoken1"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == 'database_answer_uuid')].answerContent").value("my_answer"));
+    }
+
+    //This test case passes when you try to stream all the answers posted for a specific question which does not exist in the database.
+    @Test
+    public void streamAllAnswersToNonExistingQuestion() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/non_existing_question_uuid?stream=true").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+    }
+
+    //This test case passes when getting all the answers for a question looks up an uncached JWT token in the database exactly once.
+    @Test
+    public void getAllAnswersToQuestionLooksUpAccessTokenOnce() throws Exception {
+        userSessionCache.invalidate("database_accesstoken1");
+        final CacheStats before = userSessionCache.getStats();
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        final CacheStats lookups = userSessionCache.getStats().minus(before);
+        Assert.assertEquals(1, lookups.missCount());
+        Assert.assertEquals(0, lookups.hitCount());
+    }
 
+    //This test case passes when getting all the answers for a question with a cached JWT token does not look the token up in the database.
+    @Test
+    public void getAllAnswersToQuestionWithCachedAccessTokenSkipsLookup() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        final CacheStats before = userSessionCache.getStats();
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        final CacheStats lookups = userSessionCache.getStats().minus(before);
+        Assert.assertEquals(0, lookups.missCount());
+        Assert.assertEquals(1, lookups.hitCount());
+    }
+
+    //This test case passes when getting all the answers for a question runs a fixed number of SQL statements however many users have answered it.
+    @Test
+    public void getAllAnswersToQuestionRunsBoundedStatements() throws Exception {
+        for (String accessToken : new String[]{"database_accesstoken", "database_accesstoken1", "database_accesstoken2"}) {
+            mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=bounded_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                    .andExpect(status().isCreated());
+        }
+        userSessionCache.invalidate("database_accesstoken1");
+        statements.reset();
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.answerContent == 'bounded_answer')].questionContent").value(hasSize(greaterThanOrEqualTo(3))));
+        //access token, question and answers
+        statements.assertAtMost(3);
+    }
+
+    //This test case passes when the answers of several questions come back grouped by question in the requested order, with an error entry for a question that does not exist, from a fixed number of SQL statements.
+    @Test
+    public void getAllAnswersToQuestionsGroupsByQuestion() throws Exception {
+        final String questionUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=batch_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        mvc.perform(MockMvcRequestBuilders.post("/question/" + questionUuid + "/answer/create?answer=batch_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isCreated());
+        userSessionCache.invalidate("database_accesstoken1");
+        statements.reset();
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all?questionIds=" + questionUuid + ",non_existing_question_uuid,database_question_uuid," + questionUuid).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(3)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].question_id").value(questionUuid))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answers", hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answers[0].answerContent").value("batch_answer"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].question_id").value("non_existing_question_uuid"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].code").value("QUES-001"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[2].question_id").value("database_question_uuid"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[2].answers[0].answerContent").value("my_answer"));
+        //access token, questions and answers
+        statements.assertAtMost(3);
+    }
+
+    //This test case passes when you try to get the answers of more questions than allowed at once.
+    @Test
+    public void getAllAnswersToTooManyQuestions() throws Exception {
+        final StringBuilder questionIds = new StringBuilder("question_0");
+        for (int i = 1; i <= 50; i++) {
+            questionIds.append(",question_").append(i);
+        }
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all?questionIds=" + questionIds).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ANS-002"));
+    }
+
+    //This test case passes when you try to get the answers of several questions and the JWT token entered exists in the database but the user corresponding to that JWT token is signed out.
+    @Test
+    public void getAllAnswersToQuestionsWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all?questionIds=database_question_uuid").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
 }
@@ -1,26 +1,46 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.upgrad.quora.api.support.StatementCountingConfiguration;
+import com.upgrad.quora.api.support.StatementCountingDataSource;
+import com.upgrad.quora.service.dao.EntityCacheMetrics;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.UUID;
+
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
 @AutoConfigureMockMvc
+@Import(StatementCountingConfiguration.class)
 public class CommonControllerTest {
 
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private EntityCacheMetrics entityCacheMetrics;
+
+    @Autowired
+    private StatementCountingDataSource statements;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     //This test case passes when you try to get the details of the existing user and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in.
     @Test
     public void details() throws Exception {
@@ -36,6 +56,29 @@ public class CommonControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
 
+    //This test case passes when an access token cannot be stored twice with the same expiry, and a token stored with two expiries is refused instead of picking one of its sessions.
+    @Test
+    public void detailsUsingDuplicatedAccessToken() throws Exception {
+        final String accessToken = "duplicated-" + UUID.randomUUID();
+        final String insert = "insert into user_auth(uuid, user_id, access_token, expires_at, login_at) "
+                + "select ?, id, ?, date_trunc('second', now()) + ? * interval '1 hour', now() from users where uuid = 'database_uuid1'";
+        jdbcTemplate.update(insert, UUID.randomUUID().toString(), accessToken, 1);
+        try {
+            jdbcTemplate.update(insert, UUID.randomUUID().toString(), accessToken, 1);
+            Assert.fail("the access token was stored twice with the same expiry");
+        } catch (DuplicateKeyException e) {
+            //expected
+        }
+        jdbcTemplate.update(insert, UUID.randomUUID().toString(), accessToken, 2);
+        try {
+            mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessToken))
+                    .andExpect(status().isForbidden())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+        } finally {
+            jdbcTemplate.update("delete from user_auth where access_token = ?", accessToken);
+        }
+    }
+
     //This test case passes when you try to get the details of the user which does not exist in the database.
     @Test
     public void detailsOfNonExistingUser() throws Exception {
@@ -43,4 +86,20 @@ public class CommonControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
+
+    //This test case passes when the details of an user that was looked up before are served from the second-level cache without any SQL statement.
+    @Test
+    public void detailsOfCachedUserRunsNoStatements() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid2").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+        final long naturalIdHits = entityCacheMetrics.getNaturalIdRegionStatistics(UserEntity.NATURAL_ID_CACHE_REGION).getHitCount();
+        final long entityHits = entityCacheMetrics.getRegionStatistics(UserEntity.CACHE_REGION).getHitCount();
+        statements.reset();
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid2").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("user_name").value("database_username2"));
+        statements.assertAtMost(0);
+        Assert.assertTrue(entityCacheMetrics.getNaturalIdRegionStatistics(UserEntity.NATURAL_ID_CACHE_REGION).getHitCount() > naturalIdHits);
+        Assert.assertTrue(entityCacheMetrics.getRegionStatistics(UserEntity.CACHE_REGION).getHitCount() > entityHits);
+    }
 }
@@ -0,0 +1,137 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.business.AdaptiveConcurrencyLimiter;
+import com.upgrad.quora.service.business.ConcurrencyLimits;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Slows the database down for the reads of questions by locking the QUESTION table from another connection, so the
+ * one read allowed by the limit of the "read" group waits on the lock while the next requests arrive.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"concurrency-limit.groups.read.initial-limit=1", "concurrency-limit.groups.read.min-limit=1", "concurrency-limit.groups.read.max-limit=1",
+        "concurrency-limit.groups.stream.initial-limit=2", "concurrency-limit.groups.stream.min-limit=2", "concurrency-limit.groups.stream.max-limit=2",
+        "export.stream.threads=1", "export.stream.queue-capacity=1"})
+@AutoConfigureMockMvc
+public class ConcurrencyLimitTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ConcurrencyLimits concurrencyLimits;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //This test case passes when a read beyond the concurrency limit is shed at once with 503 and GEN-002 while the database is slow, sign in still works, and the waiting read completes once the database is back.
+    @Test
+    public void readsBeyondLimitAreShedWhileDatabaseIsSlow() throws Exception {
+        final AdaptiveConcurrencyLimiter reads = concurrencyLimits.getLimiter("read");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("lock table question in access exclusive mode");
+            }
+            final Future<MvcResult> blocked = executor.submit(() -> getQuestions().andReturn());
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (reads.getInFlight() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, reads.getInFlight());
+
+            final long rejectedBefore = reads.getRejected();
+            final long startedAt = System.nanoTime();
+            getQuestions()
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("GEN-002"));
+            Assert.assertTrue(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(1));
+            Assert.assertEquals(rejectedBefore + 1, reads.getRejected());
+            Assert.assertEquals(rejectedBefore + 1, meterRegistry.get("concurrency.rejected").tag("group", "read").functionCounter().count(), 0);
+
+            final String userName = UUID.randomUUID().toString().substring(0, 20);
+            performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                    .andExpect(status().isCreated());
+            final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+            performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                    .andExpect(status().isOk());
+            Assert.assertFalse(blocked.isDone());
+
+            connection.rollback();
+            Assert.assertEquals(200, blocked.get(10, TimeUnit.SECONDS).getResponse().getStatus());
+            Assert.assertEquals(0, reads.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+        getQuestions().andExpect(status().isOk());
+    }
+
+    //This test case passes when a stream beyond the stream thread and its queue is rejected with 503 and GEN-002 before it is started, and the accepted streams complete once the database is back.
+    @Test
+    public void streamsBeyondLimitAreRejected() throws Exception {
+        final MvcResult running;
+        final MvcResult queued;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("lock table question in access exclusive mode");
+            }
+            running = streamQuestions().andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+            queued = streamQuestions().andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+            streamQuestions()
+                    .andExpect(MockMvcResultMatchers.request().asyncNotStarted())
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("GEN-002"));
+            Assert.assertEquals(2, concurrencyLimits.getLimiter("stream").getInFlight());
+            connection.rollback();
+        }
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(running)).andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(queued)).andExpect(status().isOk());
+        Assert.assertEquals(0, concurrencyLimits.getLimiter("stream").getInFlight());
+    }
+
+    private ResultActions streamQuestions() throws Exception {
+        return mvc.perform(MockMvcRequestBuilders.get("/question/all?stream=true").header("authorization", "database_accesstoken1"));
+    }
+
+    private ResultActions getQuestions() throws Exception {
+        return mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"));
+    }
+
+    private ResultActions performAsync(final RequestBuilder request) throws Exception {
+        final MvcResult result = mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+}
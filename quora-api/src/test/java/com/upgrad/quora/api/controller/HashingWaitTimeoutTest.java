@@ -0,0 +1,86 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.business.PasswordHashingExecutor;
+import com.upgrad.quora.service.exception.ServiceBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Base64;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"user.password.hashing.threads=1", "user.password.hashing.wait-timeout-ms=200"})
+@AutoConfigureMockMvc
+public class HashingWaitTimeoutTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //This test case passes when a signin whose hash waited in the queue longer than the wait timeout is rejected with 503 instead of being hashed.
+    @Test
+    public void signinRejectedWhenHashWaitedTooLong() throws Exception {
+        final double rejected = meterRegistry.get("password.hashing.rejected").functionCounter().count();
+        final CountDownLatch release = occupyHashingWorker();
+        final MvcResult signin;
+        try {
+            final String credentials = Base64.getEncoder().encodeToString("database_username:a".getBytes());
+            signin = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                    .andReturn();
+            Thread.sleep(500);
+        } finally {
+            release.countDown();
+        }
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(signin))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("GEN-002"));
+        Assert.assertEquals(rejected + 1, meterRegistry.get("password.hashing.rejected").functionCounter().count(), 0);
+    }
+
+    //This test case passes when a caller waiting for a hash gives up after the wait timeout with GEN-002 and the task it gave up on is never run.
+    @Test
+    public void callGivesUpAfterWaitTimeout() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean();
+        final CountDownLatch release = occupyHashingWorker();
+        try {
+            passwordHashingExecutor.call(() -> ran.getAndSet(true));
+            Assert.fail();
+        } catch (ServiceBusyException e) {
+            Assert.assertEquals("GEN-002", e.getCode());
+        } finally {
+            release.countDown();
+        }
+        passwordHashingExecutor.call(() -> true);
+        Assert.assertFalse(ran.get());
+    }
+
+    /* keeps the only hashing worker busy until the returned latch is released */
+    private CountDownLatch occupyHashingWorker() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        passwordHashingExecutor.submit(() -> release.await(1, TimeUnit.MINUTES));
+        while (meterRegistry.get("password.hashing.active").gauge().value() < 1) {
+            Thread.sleep(10);
+        }
+        return release;
+    }
+}
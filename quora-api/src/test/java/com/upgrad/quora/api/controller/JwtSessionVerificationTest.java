@@ -0,0 +1,82 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.business.UserSessionCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"user.session.verification=jwt", "user.session.jwt.secret=test-secret"})
+@AutoConfigureMockMvc
+public class JwtSessionVerificationTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserSessionCache userSessionCache;
+
+    //This test case passes when a signed in user can read questions without the access token being looked up in the database.
+    @Test
+    public void readWithoutDatabaseLookup() throws Exception {
+        final String accessToken = signupAndSignin();
+        final long lookups = userSessionCache.getStats().requestCount();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        Assert.assertEquals(lookups, userSessionCache.getStats().requestCount());
+    }
+
+    //This test case passes when a token that was signed out is rejected although its signature is still valid.
+    @Test
+    public void signedOutTokenIsDenied() throws Exception {
+        final String accessToken = signupAndSignin();
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when a token that is not a JWT issued by this server is still checked against the database.
+    @Test
+    public void databaseTokenFallsBackToLookup() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    private String signupAndSignin() throws Exception {
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated());
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        return performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access_token");
+    }
+
+    private ResultActions performAsync(final RequestBuilder request) throws Exception {
+        final MvcResult result = mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+}
@@ -1,28 +1,55 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.api.support.StatementCountingConfiguration;
+import com.upgrad.quora.api.support.StatementCountingDataSource;
+import com.upgrad.quora.service.business.QuestionActivityRepairJob;
+import com.upgrad.quora.service.business.UserSessionCache;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.UUID;
+
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
 @AutoConfigureMockMvc
-
+@Import(StatementCountingConfiguration.class)
 public class QuestionControllerTest {
 
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private UserSessionCache userSessionCache;
+
+    @Autowired
+    private StatementCountingDataSource statements;
+
+    @Autowired
+    private QuestionActivityRepairJob questionActivityRepairJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${export.stream.timeout-ms}")
+    private long streamTimeout;
+
 
     //This test case passes when you try to create the question but the JWT token entered does not exist in the database.
     @Test
@@ -152,5 +179,214 @@ public class QuestionControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
 
+    //This test case passes when you page through all the questions with a limit and the next-cursor of each page leads to the following page, newest first.
+    @Test
+    public void getAllQuestionsPageByPage() throws Exception {
+        final String olderQuestion = createQuestion("database_accesstoken1");
+        final String newerQuestion = createQuestion("database_accesstoken1");
+        final MvcResult firstPage = mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(newerQuestion))
+                .andExpect(MockMvcResultMatchers.header().exists("next-cursor"))
+                .andReturn();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=1").param("cursor", firstPage.getResponse().getHeader("next-cursor")).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(olderQuestion));
+    }
+
+    //This test case passes when you get the last page of the questions posted by a specific user and no next-cursor is returned.
+    @Test
+    public void getAllQuestionsByUserLastPage() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid").param("limit", "100").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("next-cursor"));
+    }
+
+    //This test case passes when you try to get the questions with a cursor that was not handed out by the application.
+    @Test
+    public void getAllQuestionsWithInvalidCursor() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?cursor=not_a_cursor").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("PAGE-001"));
+    }
+
+    //This test case passes when you try to get the questions with a limit that is not positive.
+    @Test
+    public void getAllQuestionsWithInvalidLimit() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=0").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("PAGE-002"));
+    }
+
+    //This test case passes when you stream all the questions and every question, including the ones beyond the default page size, is written to one JSON array with the long timeout of streams.
+    @Test
+    public void streamAllQuestions() throws Exception {
+        final String question = createQuestion("database_accesstoken1");
+        final MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/question/all?stream=true").header("authorization", "database_accesstoken1"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        Assert.assertEquals(streamTimeout, result.getRequest().getAsyncContext().getTimeout());
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(question))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == 'database_question_uuid')].content").value("database_question_content"));
+    }
+
+    //This test case passes when a stream started with a valid session completes even though the session is signed out before its async dispatch.
+    @Test
+    public void streamIsNotAuthenticatedAgainOnAsyncDispatch() throws Exception {
+        final String accessToken = "stream-token-" + UUID.randomUUID();
+        jdbcTemplate.update("insert into user_auth(uuid, user_id, access_token, expires_at, login_at) "
+                + "select ?, id, ?, now() + interval '8 hours', now() from users where uuid = 'database_uuid1'", UUID.randomUUID().toString(), accessToken);
+        final MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/question/all?stream=true").header("authorization", accessToken))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        jdbcTemplate.update("update user_auth set logout_at = now() where access_token = ?", accessToken);
+        userSessionCache.invalidate(accessToken);
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == 'database_question_uuid')].content").value("database_question_content"));
+    }
+
+    //This test case passes when getting a page of questions posted by different users runs a fixed number of SQL statements.
+    @Test
+    public void getAllQuestionsRunsBoundedStatements() throws Exception {
+        createQuestion("database_accesstoken");
+        createQuestion("database_accesstoken2");
+        userSessionCache.invalidate("database_accesstoken1");
+        statements.reset();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        //access token and page
+        statements.assertAtMost(2);
+    }
+
+    //This test case passes when getting a page of questions posted by a specific user runs a fixed number of SQL statements.
+    @Test
+    public void getQuestionsByUserRunsBoundedStatements() throws Exception {
+        createQuestion("database_accesstoken1");
+        createQuestion("database_accesstoken1");
+        userSessionCache.invalidate("database_accesstoken1");
+        statements.reset();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        //access token, user and page
+        statements.assertAtMost(3);
+    }
+
+    //This test case passes when you try to get a question and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in.
+    @Test
+    public void getQuestion() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/database_question_uuid").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists("ETag"))
+                .andExpect(MockMvcResultMatchers.jsonPath("id").value("database_question_uuid"))
+                .andExpect(MockMvcResultMatchers.jsonPath("content").value("database_question_content"))
+                .andExpect(MockMvcResultMatchers.jsonPath("author.id").value("database_uuid1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("answers[?(@.id == 'database_answer_uuid')].answer").value("my_answer"));
+    }
+
+    //This test case passes when you try to get a question with the ETag of the previous response and nothing has changed since.
+    @Test
+    public void getQuestionNotModified() throws Exception {
+        final String etag = mvc.perform(MockMvcRequestBuilders.get("/question/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mvc.perform(MockMvcRequestBuilders.get("/question/database_question_uuid").header("authorization", "database_accesstoken1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+    }
+
+    //This test case passes when a question with the ETag of the previous response is fetched again after a new answer is posted and the new answer is returned.
+    @Test
+    public void getQuestionModifiedByNewAnswer() throws Exception {
+        final String question = createQuestion("database_accesstoken1");
+        final String etag = mvc.perform(MockMvcRequestBuilders.get("/question/" + question).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("answers").isEmpty())
+                .andReturn().getResponse().getHeader("ETag");
+        mvc.perform(MockMvcRequestBuilders.post("/question/" + question + "/answer/create").param("answer", "new_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isCreated());
+        mvc.perform(MockMvcRequestBuilders.get("/question/" + question).header("authorization", "database_accesstoken1").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("answers[0].answer").value("new_answer"))
+                .andExpect(MockMvcResultMatchers.jsonPath("more_answers").value(false));
+    }
 
+    //This test case passes when you try to get a question which does not exist in the database.
+    @Test
+    public void getNonExistingQuestion() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/non_existing_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+    }
+
+    //This test case passes when you try to get a question but the user corresponding to the JWT token entered is signed out of the application.
+    @Test
+    public void getQuestionWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/database_question_uuid").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when getting a question with its author and answers runs a fixed number of SQL statements.
+    @Test
+    public void getQuestionRunsBoundedStatements() throws Exception {
+        userSessionCache.invalidate("database_accesstoken1");
+        statements.reset();
+        mvc.perform(MockMvcRequestBuilders.get("/question/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        //access token, question with author and page of answers
+        statements.assertAtMost(3);
+    }
+
+    //This test case passes when the questions posted by a specific user are listed with the number of their answers and the date of the latest one, after answers are created and deleted.
+    @Test
+    public void getAllQuestionsByUserWithAnswerActivity() throws Exception {
+        final String answeredQuestion = createQuestion("database_accesstoken1");
+        createAnswer(answeredQuestion, "database_accesstoken");
+        final String deletedAnswer = createAnswer(answeredQuestion, "database_accesstoken2");
+        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/" + deletedAnswer).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk());
+        final String unansweredQuestion = createQuestion("database_accesstoken1");
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1?limit=2").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(unansweredQuestion))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answer_count").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].last_answer_at").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value(answeredQuestion))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].answer_count").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].last_answer_at").isString());
+    }
+
+    //This test case passes when the answer activity of a question that has drifted from its answers is recomputed by the repair job.
+    @Test
+    public void repairAnswerActivity() throws Exception {
+        final String question = createQuestion("database_accesstoken1");
+        createAnswer(question, "database_accesstoken2");
+        jdbcTemplate.update("update question set answer_count = 7, last_answer_at = null where uuid = ?", question);
+        Assert.assertTrue(questionActivityRepairJob.repairAll() >= 1);
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1?limit=1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(question))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answer_count").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].last_answer_at").isString());
+        Assert.assertEquals(0, questionActivityRepairJob.repairAll());
+    }
+
+    private String createQuestion(final String accessToken) throws Exception {
+        final MvcResult result = mvc.perform(MockMvcRequestBuilders.post("/question/create").param("content", "paged_question_" + UUID.randomUUID()).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return JsonPath.read(result.getResponse().getContentAsString(), "$.id");
+    }
+
+    private String createAnswer(final String question, final String accessToken) throws Exception {
+        final MvcResult result = mvc.perform(MockMvcRequestBuilders.post("/question/" + question + "/answer/create").param("answer", "activity_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return JsonPath.read(result.getResponse().getContentAsString(), "$.id");
+    }
 }
@@ -0,0 +1,57 @@
+package com.upgrad.quora.api.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"rate-limit.groups.question-write.burst=2", "rate-limit.groups.question-write.per-minute=1"})
+@AutoConfigureMockMvc
+public class RateLimitTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    //This test case passes when a question created beyond the rate limit is rejected with 429, RATE-001 and the seconds to wait in Retry-After.
+    @Test
+    public void createQuestionBeyondRateLimit() throws Exception {
+        createQuestion("database_accesstoken1").andExpect(status().isCreated());
+        createQuestion("database_accesstoken1").andExpect(status().isCreated());
+        final MvcResult result = createQuestion("database_accesstoken1")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("RATE-001"))
+                .andExpect(MockMvcResultMatchers.header().exists("Retry-After"))
+                .andReturn();
+        final long retryAfter = Long.parseLong(result.getResponse().getHeader("Retry-After"));
+        Assert.assertTrue("Retry-After of " + retryAfter + " seconds", retryAfter >= 1 && retryAfter <= 60);
+    }
+
+    //This test case passes when an user over the rate limit of questions can still answer, and other users can still post questions.
+    @Test
+    public void rateLimitIsPerUserAndGroup() throws Exception {
+        createQuestion("database_accesstoken2").andExpect(status().isCreated());
+        createQuestion("database_accesstoken2").andExpect(status().isCreated());
+        createQuestion("database_accesstoken2").andExpect(status().isTooManyRequests());
+        mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create").param("answer", "rate_limited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                .andExpect(status().isCreated());
+        createQuestion("database_accesstoken").andExpect(status().isCreated());
+    }
+
+    private ResultActions createQuestion(final String accessToken) throws Exception {
+        return mvc.perform(MockMvcRequestBuilders.post("/question/create").param("content", "rate_limited_question_" + UUID.randomUUID()).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken));
+    }
+}
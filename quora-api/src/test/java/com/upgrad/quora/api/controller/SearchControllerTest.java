@@ -0,0 +1,180 @@
+package com.upgrad.quora.api.controller;
+
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class SearchControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+
+    //This test case passes when you search for the words of a question that was in the database when the application started.
+    @Test
+    public void searchIndexedAtStartup() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", "database_question_content").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == 'database_question_uuid')].type").value("QUESTION"));
+    }
+
+    //This test case passes when you search for a word of a new question and of a new answer, and both are found with the uuid of the question.
+    @Test
+    public void searchQuestionsAndAnswers() throws Exception {
+        final String word = word();
+        final String question = createQuestion(word + " in a question", "database_accesstoken1");
+        final String answer = createAnswer(question, word + " " + word + " in an answer", "database_accesstoken2");
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", word).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].type").value("ANSWER"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(answer))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].question_id").value(question))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value(word + " " + word + " in an answer"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].type").value("QUESTION"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value(question));
+    }
+
+    //This test case passes when a part of the query in double quotes only matches the words next to each other in that order.
+    @Test
+    public void searchPhrase() throws Exception {
+        final String first = word();
+        final String second = word();
+        final String inOrder = createQuestion(first + " " + second + " together", "database_accesstoken1");
+        final String reversed = createQuestion(second + " and " + first, "database_accesstoken1");
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", "\"" + first + " " + second + "\"").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(inOrder));
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", first + " " + second).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + reversed + "')]").exists());
+    }
+
+    //This test case passes when an edited question is found by its new words only, and a deleted question and its answers are no longer found.
+    @Test
+    public void searchAfterEditAndDelete() throws Exception {
+        final String oldWord = word();
+        final String newWord = word();
+        final String question = createQuestion(oldWord + " question", "database_accesstoken1");
+        createAnswer(question, oldWord + " answer", "database_accesstoken2");
+        mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + question).param("content", newWord + " question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", oldWord).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].type").value("ANSWER"));
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", newWord).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value(newWord + " question"));
+
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + question).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", oldWord + " " + newWord).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(0)));
+    }
+
+    //This test case passes when an imported question and an imported answer are found by search.
+    @Test
+    public void searchImportedQuestionsAndAnswers() throws Exception {
+        final String word = word();
+        final String records = "question," + word + "-q,\"" + word + " imported question\",,database_uuid1\n"
+                + "answer," + word + "-a," + word + " " + word + " imported answer,,database_uuid2," + word + "-q\n";
+        mvc.perform(MockMvcRequestBuilders.post("/admin/import").contentType("text/csv").content(records).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", word).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(word + "-a"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].question_id").value(word + "-q"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value(word + "-q"));
+    }
+
+    //This test case passes when the questions and answers of a deleted user are removed from the index, so they do not crowd out the results that are left.
+    @Test
+    public void searchAfterDeleteUser() throws Exception {
+        final String word = word();
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        final String userUuid = JsonPath.read(performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        final String accessToken = performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access_token");
+        final String question = createQuestion(word, accessToken);
+        createQuestion(word + " " + word, accessToken);
+        createAnswer(question, word, "database_accesstoken2");
+        final String remaining = createQuestion(word + " in a question with many more words than the others", "database_accesstoken1");
+
+        mvc.perform(MockMvcRequestBuilders.delete("/admin/user/" + userUuid).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", word).param("limit", "1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(remaining));
+    }
+
+    //This test case passes when you search with a query that contains no word.
+    @Test
+    public void searchWithoutWords() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", " ?! ").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("SRCH-001"));
+    }
+
+    //This test case passes when you try to search but the user corresponding to the JWT token entered is signed out of the application.
+    @Test
+    public void searchWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/search").param("q", "question").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    private String createQuestion(final String content, final String accessToken) throws Exception {
+        return JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create").param("content", content).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+    }
+
+    private String createAnswer(final String question, final String answer, final String accessToken) throws Exception {
+        return JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/" + question + "/answer/create").param("answer", answer).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+    }
+
+    /** a word no other test writes */
+    private static String word() {
+        return "w" + UUID.randomUUID().toString().replace("-", "");
+    }
+
+    private ResultActions performAsync(final RequestBuilder request) throws Exception {
+        final MvcResult result = mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+}
@@ -1,15 +1,37 @@
 package com.upgrad.quora.api.controller;
 
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.business.PasswordCryptographyProvider;
+import com.upgrad.quora.service.business.PasswordHashingExecutor;
+import com.upgrad.quora.service.exception.ServiceBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -21,10 +43,25 @@ public class UserControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${user.password.hashing.threads}")
+    private int hashingThreads;
+
     //This test case passes when you signup with a username that already exists in the database.
     @Test
     public void signupWithRepeatedUserName() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=database_username&emailAddress=a&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+        performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=database_username&emailAddress=a&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isConflict())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-001"));
     }
@@ -32,12 +69,46 @@ public class UserControllerTest {
     //This test case passes when you signup with an email that already exists in the database.
     @Test
     public void signupWithRepeatedEmail() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=non_existing_username&emailAddress=database_email&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+        performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=non_existing_username&emailAddress=database_email&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isConflict())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-002"));
     }
 
 
+    //This test case passes when two signups with the same username both pass the checks before either is inserted, and the second one is reported with 409 instead of failing on the unique key.
+    @Test
+    public void concurrentSignupWithRepeatedUserName() throws Exception {
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        final CountDownLatch release = new CountDownLatch(1);
+        final MvcResult first;
+        final MvcResult second;
+        try {
+            for (int i = 0; i < hashingThreads; i++) {
+                passwordHashingExecutor.submit(() -> release.await(1, TimeUnit.MINUTES));
+            }
+            while (meterRegistry.get("password.hashing.active").gauge().value() < hashingThreads) {
+                Thread.sleep(10);
+            }
+            first = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "-1&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                    .andReturn();
+            second = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "-2&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                    .andReturn();
+            while (meterRegistry.get("password.hashing.queue.size").gauge().value() < 2) {
+                Thread.sleep(10);
+            }
+        } finally {
+            release.countDown();
+        }
+        final MockHttpServletResponse firstResponse = mvc.perform(MockMvcRequestBuilders.asyncDispatch(first)).andReturn().getResponse();
+        final MockHttpServletResponse secondResponse = mvc.perform(MockMvcRequestBuilders.asyncDispatch(second)).andReturn().getResponse();
+        final MockHttpServletResponse conflict = firstResponse.getStatus() == 409 ? firstResponse : secondResponse;
+        Assert.assertEquals(201 + 409, firstResponse.getStatus() + secondResponse.getStatus());
+        Assert.assertEquals(409, conflict.getStatus());
+        Assert.assertEquals("SGR-001", JsonPath.read(conflict.getContentAsString(), "$.code"));
+    }
+
     //This test case passes when you try to signout but the JWT token entered does not exist in the database.
     @Test
     public void signoutWithNonExistingAccessToken() throws Exception {
@@ -45,4 +116,172 @@ public class UserControllerTest {
                 .andExpect(status().isUnauthorized())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-001"));
     }
+
+    //This test case passes when a session that was used (and cached) before signing out is rejected right after the signout.
+    @Test
+    public void signoutInvalidatesCachedSession() throws Exception {
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated());
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        final String accessToken = performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access_token");
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when signing in with a password stored in the legacy hash format upgrades the stored hash, and the upgraded hash still signs in.
+    @Test
+    public void signinUpgradesLegacyPasswordHash() throws Exception {
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated());
+        final String[] legacy = new PasswordCryptographyProvider(1000, 64).encrypt("a");
+        final String legacyHash = legacy[1].substring(legacy[1].lastIndexOf('$') + 1);
+        jdbcTemplate.update("update users set salt = ?, password = ? where username = ?", legacy[0], legacyHash, userName);
+
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk());
+        final String upgradedHash = jdbcTemplate.queryForObject("select password from users where username = ?", String.class, userName);
+        Assert.assertTrue(upgradedHash.startsWith("$pbkdf2-sha512$i="));
+        performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk());
+        Assert.assertEquals(upgradedHash, jdbcTemplate.queryForObject("select password from users where username = ?", String.class, userName));
+    }
+
+    //This test case passes when a signin is rejected right away with 503 while every hashing worker is busy and the hashing queue is full.
+    @Test
+    public void signinRejectedWhenHashingQueueIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final double rejected = meterRegistry.get("password.hashing.rejected").functionCounter().count();
+        try {
+            fillHashingQueue(release);
+            while (meterRegistry.get("password.hashing.active").gauge().value() < hashingThreads) {
+                Thread.sleep(10);
+            }
+            fillHashingQueue(release);
+            final String credentials = Base64.getEncoder().encodeToString("database_username:a".getBytes());
+            performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("GEN-002"));
+        } finally {
+            release.countDown();
+        }
+        Assert.assertTrue(meterRegistry.get("password.hashing.rejected").functionCounter().count() > rejected);
+    }
+
+    //This test case passes when a signin waiting for its user row, locked by another transaction, holds no hashing worker and completes once the row is released.
+    @Test
+    public void signinWaitingOnDatabaseHoldsNoHashingWorker() throws Exception {
+        final String userName = signup();
+        final MvcResult signin = signinWhileUserIsLocked(userName, () -> {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (meterRegistry.get("password.hashing.active").gauge().value() > 0 && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            Assert.assertEquals(0, meterRegistry.get("password.hashing.active").gauge().value(), 0);
+        });
+        Assert.assertEquals(200, signin.getResponse().getStatus());
+    }
+
+    //This test case passes when the upgraded hash of a legacy password is computed before the signin waits for the user row, and stored once the row is released.
+    @Test
+    public void legacyPasswordIsRehashedBeforeUserIsLocked() throws Exception {
+        final String userName = signup();
+        final String[] legacy = new PasswordCryptographyProvider(1000, 64).encrypt("a");
+        jdbcTemplate.update("update users set salt = ?, password = ? where username = ?", legacy[0], legacy[1].substring(legacy[1].lastIndexOf('$') + 1), userName);
+        final long hashes = meterRegistry.get("password.hashing.wait").timer().count();
+        final MvcResult signin = signinWhileUserIsLocked(userName,
+                () -> Assert.assertEquals(hashes + 2, meterRegistry.get("password.hashing.wait").timer().count()));
+        Assert.assertEquals(200, signin.getResponse().getStatus());
+        Assert.assertTrue(jdbcTemplate.queryForObject("select password from users where username = ?", String.class, userName).startsWith("$pbkdf2-sha512$i="));
+    }
+
+    //This test case passes when a signin whose user is deleted while the signin waits for the user row fails with 401 instead of 500.
+    @Test
+    public void signinOfUserDeletedWhileWaitingFails() throws Exception {
+        final String userName = signup();
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        final MvcResult signin;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("select id from users where username = ? for update")) {
+                statement.setString(1, userName);
+                statement.executeQuery().close();
+            }
+            signin = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                    .andReturn();
+            awaitRowLockWait();
+            try (PreparedStatement statement = connection.prepareStatement("delete from users where username = ?")) {
+                statement.setString(1, userName);
+                statement.executeUpdate();
+            }
+            connection.commit();
+        }
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(signin))
+                .andExpect(status().isUnauthorized())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATH-001"));
+    }
+
+    private String signup() throws Exception {
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated());
+        return userName;
+    }
+
+    /* signs in while another transaction holds the row of the user, runs the check once the signin waits for the lock */
+    private MvcResult signinWhileUserIsLocked(final String userName, final Runnable whileWaiting) throws Exception {
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("select id from users where username = ? for update")) {
+                statement.setString(1, userName);
+                statement.executeQuery().close();
+            }
+            final MvcResult signin = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                    .andReturn();
+            awaitRowLockWait();
+            whileWaiting.run();
+            Assert.assertFalse(WebAsyncUtils.getAsyncManager(signin.getRequest()).hasConcurrentResult());
+            connection.rollback();
+            return mvc.perform(MockMvcRequestBuilders.asyncDispatch(signin)).andReturn();
+        }
+    }
+
+    /* waits until a statement waits for a row lock taken with for update */
+    private void awaitRowLockWait() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (jdbcTemplate.queryForObject("select count(*) from pg_stat_activity where wait_event_type = 'Lock' and datname = current_database() and query like '%for update%'", Integer.class) == 0
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private ResultActions performAsync(final RequestBuilder request) throws Exception {
+        final MvcResult result = mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+
+    private void fillHashingQueue(final CountDownLatch release) {
+        while (true) {
+            try {
+                passwordHashingExecutor.submit(() -> release.await(1, TimeUnit.MINUTES));
+            } catch (ServiceBusyException e) {
+                return;
+            }
+        }
+    }
 }
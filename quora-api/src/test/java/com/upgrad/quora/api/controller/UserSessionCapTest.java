@@ -0,0 +1,89 @@
+package com.upgrad.quora.api.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"user.session.max-active=2"})
+@AutoConfigureMockMvc
+public class UserSessionCapTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //This test case passes when signing in beyond the session limit signs out the oldest session of the user and keeps the most recent ones.
+    @Test
+    public void signinBeyondLimitSignsOutOldestSession() throws Exception {
+        final String userName = signup();
+        final String first = signin(userName);
+        final String second = signin(userName);
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", first))
+                .andExpect(status().isOk());
+        final String third = signin(userName);
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", first))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", second))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", third))
+                .andExpect(status().isOk());
+        Assert.assertEquals(2, jdbcTemplate.queryForObject("select count(*) from user_auth ut join users u on u.id = ut.user_id "
+                + "where u.username = ? and ut.logout_at is null", Integer.class, userName).intValue());
+    }
+
+    //This test case passes when a new session is still created on every signin while the user is under the session limit.
+    @Test
+    public void signinUnderLimitCreatesNewSession() throws Exception {
+        final String userName = signup();
+        final String first = signin(userName);
+        final String second = signin(userName);
+        Assert.assertNotEquals(first, second);
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", first))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", second))
+                .andExpect(status().isOk());
+    }
+
+    private String signup() throws Exception {
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated());
+        return userName;
+    }
+
+    private String signin(final String userName) throws Exception {
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        return performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access_token");
+    }
+
+    private ResultActions performAsync(final RequestBuilder request) throws Exception {
+        final MvcResult result = mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+}
@@ -0,0 +1,78 @@
+package com.upgrad.quora.api.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"user.session.reuse-on-signin=true"})
+@AutoConfigureMockMvc
+public class UserSessionReuseTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //This test case passes when signing in again returns the live session of the user instead of creating a new one.
+    @Test
+    public void signinReusesLiveSession() throws Exception {
+        final String userName = signup();
+        final String first = signin(userName);
+        Assert.assertEquals(first, signin(userName));
+        Assert.assertEquals(1, jdbcTemplate.queryForObject("select count(*) from user_auth ut join users u on u.id = ut.user_id "
+                + "where u.username = ?", Integer.class, userName).intValue());
+    }
+
+    //This test case passes when signing in after a signout creates a new session, as the signed out one cannot be reused.
+    @Test
+    public void signinAfterSignoutCreatesNewSession() throws Exception {
+        final String userName = signup();
+        final String first = signin(userName);
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", first))
+                .andExpect(status().isOk());
+        final String second = signin(userName);
+        Assert.assertNotEquals(first, second);
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", second))
+                .andExpect(status().isOk());
+    }
+
+    private String signup() throws Exception {
+        final String userName = UUID.randomUUID().toString().substring(0, 20);
+        performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isCreated());
+        return userName;
+    }
+
+    private String signin(final String userName) throws Exception {
+        final String credentials = Base64.getEncoder().encodeToString((userName + ":a").getBytes());
+        return performAsync(MockMvcRequestBuilders.post("/user/signin").header("authorization", "Basic " + credentials))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access_token");
+    }
+
+    private ResultActions performAsync(final RequestBuilder request) throws Exception {
+        final MvcResult result = mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+}
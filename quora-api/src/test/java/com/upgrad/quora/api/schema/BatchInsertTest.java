@@ -0,0 +1,58 @@
+package com.upgrad.quora.api.schema;
+
+import com.upgrad.quora.api.support.StatementCountingConfiguration;
+import com.upgrad.quora.api.support.StatementCountingDataSource;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Checks that new entities get their ids from pooled sequences and are inserted in JDBC batches.
+ * The users are inserted inside the test transaction and rolled back afterwards.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+@Import(StatementCountingConfiguration.class)
+public class BatchInsertTest {
+
+    private static final int USERS = 100;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private StatementCountingDataSource statements;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    //This test case passes when creating 100 users takes a few sequence calls and insert batches instead of one statement per user.
+    @Test
+    public void createUsersInBatches() {
+        statements.reset();
+        for (int i = 0; i < USERS; i++) {
+            final UserEntity user = new UserEntity();
+            user.setUuid("batch-user-" + i);
+            user.setFirstName("batch");
+            user.setLastName("user");
+            user.setUserName("batch-user-" + i);
+            user.setEmailAddress("batch-user-" + i + "@quora");
+            user.setPassword("password");
+            user.setSalt("salt");
+            user.setRole("nonadmin");
+            userDao.createUser(user);
+        }
+        entityManager.flush();
+        statements.assertAtMost(6);
+    }
+}
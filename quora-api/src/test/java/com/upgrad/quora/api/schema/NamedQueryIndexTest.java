@@ -0,0 +1,163 @@
+package com.upgrad.quora.api.schema;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.spi.ParameterTranslations;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.metamodel.EntityType;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that every named query of the entities is planned as an index scan once the tables hold a realistic number
+ * of rows. The rows are seeded and analyzed inside the test transaction and rolled back afterwards.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class NamedQueryIndexTest {
+
+    private static final int USERS = 2000;
+    private static final int QUESTIONS = 20000;
+    private static final int ANSWERS = 40000;
+    private static final int PAGE_SIZE = 20;
+    /* seeded rows get explicit ids above the ones handed out by the sequences and used by quora_test.sql */
+    private static final int FIRST_ID = 1000000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Integer userId;
+    private Integer questionId;
+    private Timestamp questionDate;
+
+    @Before
+    public void seed() {
+        jdbcTemplate.update("insert into users(id, uuid, firstname, lastname, username, email, password, salt, role) " +
+                "select ? + g, 'explain-user-' || g, 'explain', 'user', 'explain-user-' || g, 'explain-user-' || g || '@quora', 'password', 'salt', 'nonadmin' from generate_series(1, ?) g", FIRST_ID, USERS);
+        jdbcTemplate.update("insert into user_auth(id, uuid, user_id, access_token, expires_at, login_at) " +
+                "select u.id, u.uuid, u.id, 'explain-token-' || u.id, now() + interval '8 hours', now() from users u where u.uuid like 'explain-user-%'");
+        jdbcTemplate.update("insert into question(id, uuid, content, date, user_id) " +
+                "select ? + g, 'explain-question-' || g, 'explain question ' || g, now() - g * interval '1 second', u.id from generate_series(1, ?) g join users u on u.uuid = 'explain-user-' || (g % ? + 1)", FIRST_ID, QUESTIONS, USERS);
+        jdbcTemplate.update("insert into answer(id, uuid, ans, date, user_id, question_id) " +
+                "select ? + g, 'explain-answer-' || g, 'explain answer ' || g, now(), q.user_id, q.id from generate_series(1, ?) g join question q on q.uuid = 'explain-question-' || (g % ? + 1)", FIRST_ID, ANSWERS, QUESTIONS);
+        jdbcTemplate.execute("analyze users");
+        jdbcTemplate.execute("analyze user_auth");
+        jdbcTemplate.execute("analyze question");
+        jdbcTemplate.execute("analyze answer");
+        userId = jdbcTemplate.queryForObject("select id from users where uuid = 'explain-user-1'", Integer.class);
+        questionId = jdbcTemplate.queryForObject("select id from question where uuid = 'explain-question-100'", Integer.class);
+        questionDate = jdbcTemplate.queryForObject("select date from question where uuid = 'explain-question-100'", Timestamp.class);
+    }
+
+    //This test case passes when every named query of the entities reads its rows through an index.
+    @Test
+    public void everyNamedQueryUsesAnIndex() {
+        final Map<String, Case> cases = cases();
+        for (NamedQuery namedQuery : namedQueries()) {
+            final Case queryCase = cases.get(namedQuery.name());
+            Assert.assertNotNull("no parameters for named query " + namedQuery.name(), queryCase);
+            final String plan = explain(namedQuery.query(), queryCase);
+            /* the default partition of user_auth only holds the few sessions outside of every week partition */
+            Assert.assertFalse(namedQuery.name() + " scans a table sequentially:\n" + plan,
+                    plan.replace("Seq Scan on user_auth_default", "").contains("Seq Scan"));
+            Assert.assertTrue(namedQuery.name() + " does not use an index:\n" + plan, plan.contains("Index"));
+        }
+    }
+
+    private Map<String, Case> cases() {
+        final Map<String, Case> cases = new HashMap<>();
+        cases.put("userByEmail", new Case(null).with("email", "explain-user-1@quora"));
+        cases.put("userByUserName", new Case(null).with("userName", "explain-user-1"));
+        cases.put("userAuthTokenByAccessToken", new Case(null).with("accessToken", "explain-token-" + userId));
+        cases.put("liveUserAuthTokensByUser", new Case(1).with("user", userId).with("now", new Timestamp(System.currentTimeMillis())));
+        cases.put("questionsPage", new Case(PAGE_SIZE));
+        cases.put("questionsPageAfter", new Case(PAGE_SIZE).with("date", questionDate).with("id", questionId));
+        cases.put("questionsByUserPage", new Case(PAGE_SIZE).with("user", userId));
+        cases.put("questionsByUserPageAfter", new Case(PAGE_SIZE).with("user", userId).with("date", questionDate).with("id", questionId));
+        cases.put("getAnswerById", new Case(null).with("uuid", "explain-answer-1"));
+        cases.put("getAllAnswersToQuestion", new Case(null).with("question", questionId));
+        cases.put("questionDetailByUuid", new Case(null).with("uuid", "explain-question-100"));
+        cases.put("answersPageToQuestion", new Case(PAGE_SIZE).with("questionId", questionId));
+        cases.put("questionsByUuids", new Case(null).with("uuids", "explain-question-100"));
+        cases.put("getAllAnswersToQuestions", new Case(null).with("questionIds", questionId));
+        cases.put("questionsExportAfter", new Case(PAGE_SIZE).with("id", questionId));
+        cases.put("answerTexts", new Case(PAGE_SIZE));
+        cases.put("answerTextsByUuids", new Case(null).with("uuids", "explain-answer-1"));
+        cases.put("answersExportByQuestionIds", new Case(null).with("questionIds", questionId));
+        cases.put("questionUuidsByUser", new Case(null).with("userId", userId));
+        cases.put("answerUuidsByUser", new Case(null).with("userId", userId));
+        cases.put("answerUuidsToQuestionsOfUser", new Case(null).with("userId", userId));
+        return cases;
+    }
+
+    private List<NamedQuery> namedQueries() {
+        final List<NamedQuery> namedQueries = new ArrayList<>();
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            final NamedQueries declared = entity.getJavaType().getAnnotation(NamedQueries.class);
+            if (declared != null) {
+                Collections.addAll(namedQueries, declared.value());
+            }
+        }
+        return namedQueries;
+    }
+
+    /* translates the query to SQL, binds the parameters at their SQL positions and returns the plan as text */
+    private String explain(final String hql, final Case queryCase) {
+        final SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        final QueryTranslator translator = new ASTQueryTranslatorFactory().createQueryTranslator(hql, hql, Collections.emptyMap(), sessionFactory, null);
+        translator.compile(Collections.emptyMap(), false);
+        final ParameterTranslations parameters = translator.getParameterTranslations();
+        final String sql = "explain " + translator.getSQLString() + (queryCase.limit != null ? " limit " + queryCase.limit : "");
+        return jdbcTemplate.execute(sql, (PreparedStatementCallback<String>) statement -> {
+            for (Object name : parameters.getNamedParameterNames()) {
+                for (int location : parameters.getNamedParameterSqlLocations((String) name)) {
+                    statement.setObject(location + 1, queryCase.parameters.get(name));
+                }
+            }
+            final StringBuilder plan = new StringBuilder();
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        });
+    }
+
+    private static final class Case {
+        private final Integer limit;
+        private final Map<String, Object> parameters = new HashMap<>();
+
+        private Case(final Integer limit) {
+            this.limit = limit;
+        }
+
+        private Case with(final String name, final Object value) {
+            parameters.put(name, value);
+            return this;
+        }
+    }
+}
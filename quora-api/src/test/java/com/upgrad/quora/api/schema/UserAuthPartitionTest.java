@@ -0,0 +1,140 @@
+package com.upgrad.quora.api.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.service.business.UserAuthHistoryJob;
+import com.upgrad.quora.service.dao.UserAuthHistoryDao;
+import com.upgrad.quora.service.projection.SessionCounts;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Checks that the lookup of an access token does not get slower as sessions pile up in USER_AUTH, and that the
+ * sessions that can no longer be used are removed. The sessions are inserted inside the test transaction and rolled
+ * back afterwards, together with the partitions created and dropped by the test.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class UserAuthPartitionTest {
+
+    private static final int HISTORY = 100000;
+    private static final int SIGNED_OUT = 2500;
+    private static final int LIVE = 100;
+    private static final int BATCH = 1000;
+    /* seeded rows get explicit ids above the ones handed out by the sequence and used by quora_test.sql */
+    private static final int FIRST_ID = 1000000;
+    private static final String LOOKUP = "select ut.*, u.* from user_auth ut join users u on u.id = ut.user_id where ut.access_token = ?";
+
+    private final Logger log = LoggerFactory.getLogger(UserAuthPartitionTest.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserAuthHistoryDao userAuthHistoryDao;
+
+    @Autowired
+    private UserAuthHistoryJob userAuthHistoryJob;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    //This test case passes when 100000 sessions of an expired week are read through the token index, and looking up a token reads as many pages as before them once the expired week is dropped.
+    @Test
+    public void tokenLookupStaysFlatAsHistoryGrows() throws Exception {
+        jdbcTemplate.execute("analyze user_auth");
+        final JsonNode baseline = lookup("database_accesstoken1");
+
+        final LocalDate expiredWeek = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).minusWeeks(2);
+        final String partition = userAuthHistoryDao.createWeekPartition(expiredWeek);
+        jdbcTemplate.update("insert into user_auth(id, uuid, user_id, access_token, expires_at, login_at, logout_at) "
+                + "select ? + g, 'history-' || g, u.id, 'history-token-' || g, ? + g * interval '1 second', ? + g * interval '1 second' - interval '8 hours', "
+                + "case when g % 2 = 0 then ? + g * interval '1 second' - interval '4 hours' end from generate_series(1, ?) g join users u on u.uuid = 'database_uuid1'",
+                FIRST_ID, expiredWeek, expiredWeek, expiredWeek, HISTORY);
+        jdbcTemplate.execute("analyze user_auth");
+        final JsonNode grown = lookup("database_accesstoken1");
+
+        Assert.assertEquals(1, userAuthHistoryJob.maintainPartitions());
+        Assert.assertFalse(userAuthHistoryDao.getWeekPartitions().containsKey(expiredWeek));
+        jdbcTemplate.execute("analyze user_auth");
+        final JsonNode dropped = lookup("database_accesstoken1");
+
+        log.info("token lookup: {} ms and {} pages, with {} expired sessions {} ms and {} pages, after dropping them {} ms and {} pages",
+                executionTime(baseline), pages(baseline), HISTORY, executionTime(grown), pages(grown), executionTime(dropped), pages(dropped));
+        Assert.assertEquals("Index Scan", scanOf(grown.get("Plan"), partition));
+        Assert.assertEquals(pages(baseline), pages(dropped));
+        Assert.assertEquals(1, jdbcTemplate.queryForObject("select count(*) from user_auth where access_token = 'database_accesstoken1'", Integer.class).intValue());
+    }
+
+    //This test case passes when signed out sessions are purged in batches while the live ones are kept, and the session gauges match the table.
+    @Test
+    public void purgeDeletesSignedOutSessionsInBatches() {
+        jdbcTemplate.update("insert into user_auth(id, uuid, user_id, access_token, expires_at, login_at, logout_at) "
+                + "select ? + g, 'purge-' || g, u.id, 'purge-token-' || g, now() + interval '8 hours', now(), "
+                + "case when g <= ? then now() - interval '48 hours' end from generate_series(1, ?) g join users u on u.uuid = 'database_uuid1'",
+                FIRST_ID, SIGNED_OUT, SIGNED_OUT + LIVE);
+        final int signedOut = jdbcTemplate.queryForObject("select count(*) from user_auth where logout_at < now() - interval '24 hours'", Integer.class);
+
+        Assert.assertEquals(BATCH, userAuthHistoryDao.purgeSignedOut(24, BATCH));
+        Assert.assertEquals(BATCH, userAuthHistoryDao.purgeSignedOut(24, BATCH));
+        Assert.assertEquals(signedOut - 2 * BATCH, userAuthHistoryDao.purgeSignedOut(24, BATCH));
+        Assert.assertEquals(0, userAuthHistoryDao.purgeSignedOut(24, BATCH));
+        Assert.assertEquals(0, jdbcTemplate.queryForObject("select count(*) from user_auth where uuid like 'purge-%' and logout_at is not null", Integer.class).intValue());
+        Assert.assertEquals(LIVE, jdbcTemplate.queryForObject("select count(*) from user_auth where uuid like 'purge-%'", Integer.class).intValue());
+
+        userAuthHistoryJob.purgeSessions();
+        final SessionCounts counts = userAuthHistoryDao.countSessions();
+        Assert.assertEquals(counts.getLive(), meterRegistry.get("user.sessions").tag("state", "live").gauge().value(), 0);
+        Assert.assertEquals(counts.getDead(), meterRegistry.get("user.sessions").tag("state", "dead").gauge().value(), 0);
+        Assert.assertTrue(counts.getLive() >= LIVE);
+    }
+
+    /* runs the lookup of a token with EXPLAIN ANALYZE and returns the top node of the plan, the first runs load the catalog caches */
+    private JsonNode lookup(final String accessToken) throws IOException {
+        String plan = null;
+        for (int run = 0; run < 3; run++) {
+            plan = jdbcTemplate.queryForObject("explain (analyze, buffers, format json) " + LOOKUP, String.class, accessToken);
+        }
+        return objectMapper.readTree(plan).get(0);
+    }
+
+    private static long pages(final JsonNode explained) {
+        final JsonNode plan = explained.get("Plan");
+        return plan.get("Shared Hit Blocks").asLong() + plan.get("Shared Read Blocks").asLong();
+    }
+
+    /* type of the node that scans a table, null if the plan does not read it */
+    private static String scanOf(final JsonNode plan, final String table) {
+        if (table.equals(plan.path("Relation Name").asText())) {
+            return plan.get("Node Type").asText();
+        }
+        for (JsonNode child : plan.path("Plans")) {
+            final String scan = scanOf(child, table);
+            if (scan != null) {
+                return scan;
+            }
+        }
+        return null;
+    }
+
+    private static double executionTime(final JsonNode explained) {
+        return explained.get("Execution Time").asDouble();
+    }
+}
@@ -0,0 +1,103 @@
+package com.upgrad.quora.api.support;
+
+import org.junit.Assert;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource that counts the SQL statements executed through it, so tests can put an upper bound on the statements
+ * an endpoint runs and fail when a change brings back per-row loading.
+ * A batch counts as one statement, as it is one round trip to the database.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private final AtomicInteger executed = new AtomicInteger();
+
+    public StatementCountingDataSource(final DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    /**
+     * starts counting from zero
+     */
+    public void reset() {
+        executed.set(0);
+    }
+
+    /**
+     * @return number of statements executed since the last reset
+     */
+    public int getCount() {
+        return executed.get();
+    }
+
+    /** fail the test when more statements were executed since the last reset than allowed
+     * @param maximum - number of statements allowed
+     */
+    public void assertAtMost(final int maximum) {
+        final int count = executed.get();
+        if (count > maximum) {
+            Assert.fail("expected at most " + maximum + " SQL statements but " + count + " were executed");
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(Connection.class, super.getConnection(), this::connectionCall);
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return wrap(Connection.class, super.getConnection(username, password), this::connectionCall);
+    }
+
+    private Object connectionCall(final Object target, final Method method, final Object[] args) throws Throwable {
+        final Object result = invoke(target, method, args);
+        if (result instanceof CallableStatement) {
+            return wrap(CallableStatement.class, (CallableStatement) result, this::statementCall);
+        }
+        if (result instanceof PreparedStatement) {
+            return wrap(PreparedStatement.class, (PreparedStatement) result, this::statementCall);
+        }
+        if (result instanceof Statement) {
+            return wrap(Statement.class, (Statement) result, this::statementCall);
+        }
+        return result;
+    }
+
+    private Object statementCall(final Object target, final Method method, final Object[] args) throws Throwable {
+        if (method.getName().startsWith("execute")) {
+            executed.incrementAndGet();
+        }
+        return invoke(target, method, args);
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T wrap(final Class<T> type, final T target, final Call call) {
+        final InvocationHandler handler = (proxy, method, args) -> call.on(target, method, args);
+        return (T) Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private interface Call {
+        Object on(Object target, Method method, Object[] args) throws Throwable;
+    }
+}
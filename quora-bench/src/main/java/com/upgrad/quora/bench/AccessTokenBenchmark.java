@@ -0,0 +1,82 @@
+package com.upgrad.quora.bench;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.upgrad.quora.service.business.JwtTokenProvider;
+import com.upgrad.quora.service.business.SigningKeyRing;
+import com.upgrad.quora.service.common.Constants;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of issuing and verifying access tokens.
+ * The perLogin variants build the HMAC512 algorithm and verifier from a per-user key for every token, the way tokens
+ * were signed with the password hash, the keyRing variants reuse the algorithms and the verifier of the key ring.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessTokenBenchmark {
+
+    private static final String PASSWORD_HASH = "a7b4c5cf8d9eac3b0e25c81a5eb4d1b7e8f49d2a62c3b6f1c0a1e2d3f4a5b6c7";
+
+    private JwtTokenProvider jwtTokenProvider;
+
+    private String userUuid;
+
+    private String keyRingToken;
+
+    private String perLoginToken;
+
+    @Setup
+    public void setup() {
+        jwtTokenProvider = new JwtTokenProvider(new SigningKeyRing("benchmark-secret", TimeUnit.DAYS.toMillis(1), Clock.systemUTC()));
+        userUuid = UUID.randomUUID().toString();
+        keyRingToken = keyRingSign();
+        perLoginToken = perLoginSign();
+    }
+
+    @Benchmark
+    public String perLoginSign() {
+        final ZonedDateTime now = ZonedDateTime.now();
+        return JWT.create().withIssuer(Constants.TOKEN_ISSUER)
+                .withJWTId(UUID.randomUUID().toString())
+                .withAudience(Constants.TOKEN_AUDIENCE)
+                .withSubject(userUuid)
+                .withClaim(JwtTokenProvider.USER_ID_CLAIM, 1)
+                .withClaim(JwtTokenProvider.ROLE_CLAIM, "nonadmin")
+                .withIssuedAt(Date.from(now.toInstant()))
+                .withExpiresAt(Date.from(now.plusHours(Constants.EXPIRATION_TIME).toInstant()))
+                .sign(Algorithm.HMAC512(PASSWORD_HASH));
+    }
+
+    @Benchmark
+    public String keyRingSign() {
+        final ZonedDateTime now = ZonedDateTime.now();
+        return jwtTokenProvider.generateToken(userUuid, 1, "nonadmin", now, now.plusHours(Constants.EXPIRATION_TIME));
+    }
+
+    @Benchmark
+    public DecodedJWT perLoginVerify() {
+        final JWTVerifier verifier = JWT.require(Algorithm.HMAC512(PASSWORD_HASH))
+                .withIssuer(Constants.TOKEN_ISSUER)
+                .withAudience(Constants.TOKEN_AUDIENCE)
+                .build();
+        return verifier.verify(perLoginToken);
+    }
+
+    @Benchmark
+    public DecodedJWT keyRingVerify() {
+        return jwtTokenProvider.verify(keyRingToken);
+    }
+}
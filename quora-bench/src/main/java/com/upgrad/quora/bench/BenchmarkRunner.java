@@ -0,0 +1,51 @@
+package com.upgrad.quora.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Entry point of benchmarks.jar, takes the usual JMH command line.
+ * Unless told otherwise every run measures allocation with the GC profiler and writes its results as JSON to
+ * jmh-result.json, so two runs can be compared with any JMH result viewer. Benchmarks that need the database are
+ * only run when they are selected by name, as in "java -jar benchmarks.jar ListingQueryBenchmark".
+ */
+public class BenchmarkRunner {
+
+    private static final String RESULT_FILE = "jmh-result.json";
+
+    private static final String[] DATABASE_BENCHMARKS = {ListingQueryBenchmark.class.getSimpleName(), BulkInsertBenchmark.class.getSimpleName(),
+            OutboxRelayBenchmark.class.getSimpleName()};
+
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().stream().noneMatch(profiler -> "gc".equals(profiler.getKlass()) || GCProfiler.class.getName().equals(profiler.getKlass()))) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(RESULT_FILE);
+        }
+        if (commandLine.getIncludes().isEmpty()) {
+            for (String benchmark : DATABASE_BENCHMARKS) {
+                options.exclude(benchmark);
+            }
+        }
+        new Runner(options.build()).run();
+    }
+}
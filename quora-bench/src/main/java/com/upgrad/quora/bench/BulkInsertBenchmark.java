@@ -0,0 +1,112 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of creating users, each with a question and an answer, through the DAOs in one transaction per operation,
+ * against a running database. One operation persists "rows" users, questions and answers.
+ * The batchSize parameter sets hibernate.jdbc.batch_size, 0 turns JDBC batching off. Commits do not wait for the
+ * write-ahead log to be flushed, so the time of the inserts is measured rather than the latency of the disk.
+ * Rows are created under a unique name prefix and deleted again after every iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkInsertBenchmark {
+
+    @Param({"0", "50"})
+    private int batchSize;
+
+    @Param({"100"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transaction;
+
+    private UserDao userDao;
+
+    private QuestionDao questionDao;
+
+    private AnswerDao answerDao;
+
+    private String prefix;
+
+    private long created;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = ServiceContext.start("spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                "spring.datasource.hikari.connection-init-sql=SET synchronous_commit TO off");
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        userDao = context.getBean(UserDao.class);
+        questionDao = context.getBean(QuestionDao.class);
+        answerDao = context.getBean(AnswerDao.class);
+        prefix = "bulk-" + Long.toString(System.nanoTime(), 36) + "-";
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteRows() {
+        jdbcTemplate.update("delete from users where uuid like ?", prefix + "%");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long createUsersQuestionsAndAnswers() {
+        return transaction.execute(status -> {
+            final ZonedDateTime now = ZonedDateTime.now();
+            for (int i = 0; i < rows; i++) {
+                final String name = prefix + created++;
+                final UserEntity user = new UserEntity();
+                user.setUuid(name);
+                user.setFirstName("bench");
+                user.setLastName("bench");
+                user.setUserName(name);
+                user.setEmailAddress(name + "@bench");
+                user.setPassword("password");
+                user.setSalt("salt");
+                user.setRole("nonadmin");
+                userDao.createUser(user);
+
+                final QuestionEntity question = new QuestionEntity();
+                question.setUuid(name);
+                question.setContent("bulk question");
+                question.setDate(now);
+                question.setUser(user);
+                questionDao.createQuestion(question);
+
+                final AnswerEntity answer = new AnswerEntity();
+                answer.setUuid(name);
+                answer.setAnswer("bulk answer");
+                answer.setDate(now);
+                answer.setUser(user);
+                answer.setQuestion(question);
+                answerDao.createAnswer(answer);
+            }
+            return created;
+        });
+    }
+}
@@ -0,0 +1,208 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.service.business.AdaptiveConcurrencyLimiter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the concurrency limiter of the "read" group under a database slowdown, run as a discrete-event
+ * simulation on a virtual clock, so the result does not depend on the cores of the machine it runs on.
+ * Requests arrive open-loop (Poisson) and are served by the threads of Tomcat, which queue the requests beyond them.
+ * Every request holds a connection of the pool for its query, and the query time rises ten-fold for the middle third
+ * of the run, so the database can serve fewer requests than arrive. Without the limiter the requests pile up in the
+ * pool and then in Tomcat; with the real {@link AdaptiveConcurrencyLimiter}, configured as in application.yaml, the
+ * requests beyond the learned limit are rejected with a 503 as soon as a thread picks them up.
+ * Latency is measured from arrival to response, for the requests that were served, and printed per phase.
+ * Run with "java -cp benchmarks.jar com.upgrad.quora.bench.ConcurrencyLimitSimulation".
+ */
+public class ConcurrencyLimitSimulation {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int TOMCAT_THREADS = 200;
+
+    private static final int POOL_SIZE = 10;
+
+    private static final int REQUESTS_PER_SECOND = 1000;
+
+    private static final long HEALTHY_QUERY = 5 * MILLIS;
+
+    private static final long SLOW_QUERY = 50 * MILLIS;
+
+    private static final long PHASE = TimeUnit.SECONDS.toNanos(20);
+
+    private static final String[] PHASES = {"healthy", "slow database", "recovered"};
+
+    public static void main(final String[] args) {
+        System.out.printf("%d requests/s, %d threads, %d connections, query %d ms, %d ms from %d s to %d s%n%n",
+                REQUESTS_PER_SECOND, TOMCAT_THREADS, POOL_SIZE, HEALTHY_QUERY / MILLIS, SLOW_QUERY / MILLIS,
+                TimeUnit.NANOSECONDS.toSeconds(PHASE), TimeUnit.NANOSECONDS.toSeconds(2 * PHASE));
+        System.out.printf("%-10s %-14s %8s %8s %10s %10s %10s%n", "limiter", "phase", "served", "shed", "p50 ms", "p99 ms", "max ms");
+        new ConcurrencyLimitSimulation(false).run();
+        new ConcurrencyLimitSimulation(true).run();
+    }
+
+    private final boolean limited;
+
+    private final Random random = new Random(42);
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+
+    private final ArrayDeque<Request> tomcatQueue = new ArrayDeque<>();
+
+    private final ArrayDeque<Request> poolQueue = new ArrayDeque<>();
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    private final long[][] latencies = new long[PHASES.length][];
+
+    private final int[] served = new int[PHASES.length];
+
+    private final int[] shed = new int[PHASES.length];
+
+    private long now;
+
+    private int busyThreads;
+
+    private int busyConnections;
+
+    private int minLimit = Integer.MAX_VALUE;
+
+    private ConcurrencyLimitSimulation(final boolean limited) {
+        this.limited = limited;
+        this.limiter = new AdaptiveConcurrencyLimiter("read", 20, 4, 100, 2.0, 0.2, 100 * MILLIS, 10, () -> now);
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            latencies[phase] = new long[1024];
+        }
+    }
+
+    private void run() {
+        events.add(new Event(nextArrival(0), null));
+        while (!events.isEmpty()) {
+            final Event event = events.poll();
+            now = event.at;
+            if (event.request == null) {
+                arrive();
+            } else {
+                complete(event.request);
+            }
+        }
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            final long[] sorted = Arrays.copyOf(latencies[phase], served[phase]);
+            Arrays.sort(sorted);
+            System.out.printf("%-10s %-14s %8d %8d %10.1f %10.1f %10.1f%n", limited ? "adaptive" : "none", PHASES[phase],
+                    served[phase], shed[phase], percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        }
+        if (limited) {
+            System.out.printf("lowest limit %d, limit at the end %d%n", minLimit, limiter.getLimit());
+        }
+        System.out.println();
+    }
+
+    private void arrive() {
+        final Request request = new Request(now);
+        if (busyThreads < TOMCAT_THREADS) {
+            busyThreads++;
+            handle(request);
+        } else {
+            tomcatQueue.add(request);
+        }
+        final long next = nextArrival(now);
+        if (next < PHASES.length * PHASE) {
+            events.add(new Event(next, null));
+        }
+    }
+
+    /* a thread runs the request: the limiter rejects it right away or it queries the database */
+    private void handle(final Request request) {
+        if (limited) {
+            request.startedAt = limiter.tryAcquire();
+            minLimit = Math.min(minLimit, limiter.getLimit());
+            if (request.startedAt < 0) {
+                shed[phase(request.arrivedAt)]++;
+                freeThread();
+                return;
+            }
+        }
+        if (busyConnections < POOL_SIZE) {
+            busyConnections++;
+            query(request);
+        } else {
+            poolQueue.add(request);
+        }
+    }
+
+    private void query(final Request request) {
+        final long base = now >= PHASE && now < 2 * PHASE ? SLOW_QUERY : HEALTHY_QUERY;
+        events.add(new Event(now + (long) (base * (0.5 + random.nextDouble())), request));
+    }
+
+    private void complete(final Request request) {
+        if (poolQueue.isEmpty()) {
+            busyConnections--;
+        } else {
+            query(poolQueue.poll());
+        }
+        if (limited) {
+            limiter.release(request.startedAt);
+        }
+        final int phase = phase(request.arrivedAt);
+        if (served[phase] == latencies[phase].length) {
+            latencies[phase] = Arrays.copyOf(latencies[phase], served[phase] * 2);
+        }
+        latencies[phase][served[phase]++] = now - request.arrivedAt;
+        freeThread();
+    }
+
+    private void freeThread() {
+        if (tomcatQueue.isEmpty()) {
+            busyThreads--;
+        } else {
+            handle(tomcatQueue.poll());
+        }
+    }
+
+    private long nextArrival(final long after) {
+        return after + (long) (-Math.log(1 - random.nextDouble()) * TimeUnit.SECONDS.toNanos(1) / REQUESTS_PER_SECOND);
+    }
+
+    private static int phase(final long at) {
+        return (int) Math.min(PHASES.length - 1, at / PHASE);
+    }
+
+    private static double percentile(final long[] sorted, final double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / (double) MILLIS;
+    }
+
+    private static final class Request {
+        private final long arrivedAt;
+        private long startedAt;
+
+        private Request(final long arrivedAt) {
+            this.arrivedAt = arrivedAt;
+        }
+    }
+
+    /** an arrival when the request is null, otherwise the end of the query of the request */
+    private static final class Event implements Comparable<Event> {
+        private final long at;
+        private final Request request;
+
+        private Event(final long at, final Request request) {
+            this.at = at;
+            this.request = request;
+        }
+
+        @Override
+        public int compareTo(final Event other) {
+            return Long.compare(at, other.at);
+        }
+    }
+}
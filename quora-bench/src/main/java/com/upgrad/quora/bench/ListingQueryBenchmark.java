@@ -0,0 +1,110 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.projection.QuestionSummary;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of reading one page of the question listing against a running database.
+ * The entity variant hydrates QuestionEntity and its author the way the listing did before, the projection variant
+ * reads only the listed columns through {@link QuestionDao#getQuestions}. Run with "-prof gc" to compare allocation.
+ * Questions and authors are seeded under a unique uuid prefix and deleted again after the trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListingQueryBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    @Param({"1000"})
+    private int questions;
+
+    @Param({"50"})
+    private int authors;
+
+    private ConfigurableApplicationContext context;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnly;
+
+    private EntityManager entityManager;
+
+    private QuestionDao questionDao;
+
+    private String prefix;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = ServiceContext.start();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        questionDao = context.getBean(QuestionDao.class);
+        prefix = "bench-" + System.nanoTime() + "-";
+
+        final List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < authors; i++) {
+            users.add(new Object[]{prefix + i, "bench", "author", prefix + i, prefix + i + "@bench", "password", "salt", "nonadmin"});
+        }
+        jdbcTemplate.batchUpdate("insert into users(uuid, firstname, lastname, username, email, password, salt, role) values (?, ?, ?, ?, ?, ?, ?, ?)", users);
+
+        final long now = System.currentTimeMillis();
+        final List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < questions; i++) {
+            rows.add(new Object[]{prefix + "q" + i, "benchmark question " + i, new Timestamp(now + i), prefix + (i % authors)});
+        }
+        jdbcTemplate.batchUpdate("insert into question(uuid, content, date, user_id) select ?, ?, ?, id from users where uuid = ?", rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.update("delete from users where uuid like ?", prefix + "%");
+        context.close();
+    }
+
+    @Benchmark
+    public List<String> entityPage() {
+        return readOnly.execute(status -> {
+            final List<QuestionEntity> page = entityManager
+                    .createQuery("select q from QuestionEntity q order by q.date desc, q.id desc", QuestionEntity.class)
+                    .setMaxResults(pageSize).getResultList();
+            final List<String> listed = new ArrayList<>(page.size());
+            for (QuestionEntity question : page) {
+                listed.add(question.getUuid() + question.getContent());
+            }
+            return listed;
+        });
+    }
+
+    @Benchmark
+    public List<String> projectionPage() {
+        return readOnly.execute(status -> {
+            final List<QuestionSummary> page = questionDao.getQuestions(null, pageSize);
+            final List<String> listed = new ArrayList<>(page.size());
+            for (QuestionSummary question : page) {
+                listed.add(question.getUuid() + question.getContent());
+            }
+            return listed;
+        });
+    }
+}
@@ -0,0 +1,106 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.service.business.OutboxRelay;
+import com.upgrad.quora.service.business.OutboxSubscriber;
+import com.upgrad.quora.service.dao.OutboxDao;
+import com.upgrad.quora.service.projection.OutboxEvent;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the outbox relay in events per second, against a running database. Every operation drains the
+ * same "events" question events, written once per trial, to a subscriber that only consumes them, so the reads
+ * of the batches and the updates of the offset are measured. The batchSize parameter sets outbox.relay.batch-size.
+ * A second offset is held at the start of the events so the relay does not delete them between operations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@OperationsPerInvocation(OutboxRelayBenchmark.EVENTS)
+@State(Scope.Benchmark)
+public class OutboxRelayBenchmark {
+
+    static final int EVENTS = 100000;
+
+    @Param({"100", "500", "2000"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private OutboxDao outboxDao;
+
+    private OutboxRelay outboxRelay;
+
+    private String prefix;
+
+    private long startId;
+
+    private Subscriber subscriber;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = ServiceContext.start("outbox.relay.batch-size=" + batchSize, "outbox.relay.interval-ms=3600000");
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        outboxDao = context.getBean(OutboxDao.class);
+        outboxRelay = context.getBean(OutboxRelay.class);
+        prefix = "outbox-" + Long.toString(System.nanoTime(), 36) + "-";
+
+        startId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from change_outbox", Long.class);
+        outboxDao.updateOffset(prefix + "holdback", startId);
+        jdbcTemplate.update("insert into change_outbox(aggregate_type, aggregate_uuid, event_type, payload) "
+                + "select 'QUESTION', ? || g, 'CREATED', json_build_object('uuid', ? || g, 'content', repeat('x', 200), "
+                + "'date', now(), 'user_uuid', 'bench')::text from generate_series(1, ?) g", prefix, prefix, EVENTS);
+        subscriber = new Subscriber(prefix + "relay");
+        outboxRelay.subscribe(subscriber);
+    }
+
+    @Setup(Level.Invocation)
+    public void rewind() {
+        outboxDao.updateOffset(subscriber.getName(), startId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        outboxRelay.unsubscribe(subscriber);
+        jdbcTemplate.update("delete from change_outbox_offset where subscriber like ?", prefix + "%");
+        jdbcTemplate.update("delete from change_outbox where id > ? and aggregate_uuid like ?", startId, prefix + "%");
+        context.close();
+    }
+
+    @Benchmark
+    public long relay() {
+        return outboxRelay.relay();
+    }
+
+    /** touches the payload of every event so the events are not only counted */
+    private static final class Subscriber implements OutboxSubscriber {
+        private final String name;
+        private volatile long payloadChars;
+
+        private Subscriber(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void onEvents(final List<OutboxEvent> events) {
+            long chars = 0;
+            for (OutboxEvent event : events) {
+                chars += event.getPayload().length();
+            }
+            payloadChars += chars;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.service.business.PasswordCryptographyProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashing done on sign up, with a new salt, and on every sign in, verifying against the stored hash.
+ * The iteration count is a parameter here, the application calibrates it at startup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordCryptographyBenchmark {
+
+    private static final String PASSWORD = "database_password";
+
+    @Param({"1000", "100000"})
+    private int iterations;
+
+    private PasswordCryptographyProvider passwordCryptographyProvider;
+
+    private String salt;
+
+    private String hash;
+
+    @Setup
+    public void setup() {
+        passwordCryptographyProvider = new PasswordCryptographyProvider(iterations, 512);
+        final String[] encrypted = passwordCryptographyProvider.encrypt(PASSWORD);
+        salt = encrypted[0];
+        hash = encrypted[1];
+    }
+
+    @Benchmark
+    public String[] encryptWithNewSalt() {
+        return passwordCryptographyProvider.encrypt(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matchesStoredHash() {
+        return passwordCryptographyProvider.matches(PASSWORD, salt, hash);
+    }
+}
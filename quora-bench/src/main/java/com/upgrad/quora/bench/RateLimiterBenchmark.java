@@ -0,0 +1,94 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.service.business.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the per-user rate limiter at high thread counts, against a token bucket that takes a lock per bucket.
+ * With users=1 every thread contends on the same bucket, the worst case of a single client hammering an endpoint,
+ * with more users the requests spread over the buckets as they do in production. The rate is high enough that the
+ * buckets keep refilling, so requests are both let through and rejected. The thread count is set with -t.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "64", "10000"})
+    public int users;
+
+    private static final int BURST = 1000;
+
+    private static final int PERMITS_PER_MINUTE = 600_000_000;
+
+    private String[] keys;
+
+    private RateLimiter rateLimiter;
+
+    private LockedRateLimiter lockedRateLimiter;
+
+    @Setup
+    public void setup() {
+        keys = new String[users];
+        for (int i = 0; i < users; i++) {
+            keys[i] = "user-" + i;
+        }
+        rateLimiter = new RateLimiter("bench", BURST, PERMITS_PER_MINUTE, TimeUnit.MINUTES.toNanos(10));
+        lockedRateLimiter = new LockedRateLimiter(BURST, PERMITS_PER_MINUTE);
+    }
+
+    @Benchmark
+    public long lockFree() {
+        return rateLimiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(users)]);
+    }
+
+    @Benchmark
+    public boolean locked() {
+        return lockedRateLimiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(users)]);
+    }
+
+    /** token bucket that counts its tokens as a double and refills them under the lock of the bucket */
+    private static final class LockedRateLimiter {
+        private final int burst;
+        private final double tokensPerNano;
+        private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+        private LockedRateLimiter(final int burst, final int permitsPerMinute) {
+            this.burst = burst;
+            this.tokensPerNano = permitsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        }
+
+        private boolean tryAcquire(final String key) {
+            final Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(burst, System.nanoTime()));
+            synchronized (bucket) {
+                final long now = System.nanoTime();
+                bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.refilledAt) * tokensPerNano);
+                bucket.refilledAt = now;
+                if (bucket.tokens < 1) {
+                    return false;
+                }
+                bucket.tokens--;
+                return true;
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAt;
+
+        private Bucket(final double tokens, final long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+}
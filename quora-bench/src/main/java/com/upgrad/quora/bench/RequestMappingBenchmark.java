@@ -0,0 +1,68 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.api.config.ModelMapperConfig;
+import com.upgrad.quora.api.model.AnswerRequest;
+import com.upgrad.quora.api.model.QuestionRequest;
+import com.upgrad.quora.api.model.SignupUserRequest;
+import com.upgrad.quora.api.model.UserDetailsResponse;
+import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ModelMapper conversions done by the controllers, between the request and response models and the entities.
+ * The mapper is the bean of {@link ModelMapperConfig} and is warmed up, as its type maps are built on first use.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestMappingBenchmark {
+
+    private ModelMapper modelMapper;
+
+    private SignupUserRequest signupUserRequest;
+
+    private QuestionRequest questionRequest;
+
+    private AnswerRequest answerRequest;
+
+    private UserEntity userEntity;
+
+    @Setup
+    public void setup() {
+        modelMapper = new ModelMapperConfig().modelMapper();
+        signupUserRequest = new SignupUserRequest().firstName("database_firstname").lastName("database_lastname")
+                .userName("database_username").emailAddress("database_email").password("database_password")
+                .country("database_country").aboutMe("database_aboutme").dob("database_dob").contactNumber("database_contactnumber");
+        questionRequest = new QuestionRequest().content("database_question_content");
+        answerRequest = new AnswerRequest().answer("my_answer");
+        userEntity = modelMapper.map(signupUserRequest, UserEntity.class);
+    }
+
+    @Benchmark
+    public UserEntity signupUserRequest() {
+        return modelMapper.map(signupUserRequest, UserEntity.class);
+    }
+
+    @Benchmark
+    public QuestionEntity questionRequest() {
+        return modelMapper.map(questionRequest, QuestionEntity.class);
+    }
+
+    @Benchmark
+    public AnswerEntity answerRequest() {
+        return modelMapper.map(answerRequest, AnswerEntity.class);
+    }
+
+    @Benchmark
+    public UserDetailsResponse userDetailsResponse() {
+        return modelMapper.map(userEntity, UserDetailsResponse.class);
+    }
+}
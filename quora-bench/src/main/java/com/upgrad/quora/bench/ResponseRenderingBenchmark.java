@@ -0,0 +1,100 @@
+package com.upgrad.quora.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.api.controller.QuestionController;
+import com.upgrad.quora.api.model.AnswerDetailsResponse;
+import com.upgrad.quora.api.model.QuestionDetailsResponse;
+import com.upgrad.quora.api.model.UserDetailsResponse;
+import com.upgrad.quora.service.business.QuestionService;
+import com.upgrad.quora.service.common.Page;
+import com.upgrad.quora.service.projection.QuestionSummary;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and serializing the response of the listing endpoints.
+ * questionDetailsResponseList runs {@link QuestionController#getQuestions} over a page returned by a stub service,
+ * which is the mapping of getQuestionDetailsResponseList plus the page headers. The serialize benchmarks write the
+ * response models with an ObjectMapper configured the way Spring Boot configures the one of the message converters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseRenderingBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private QuestionController questionController;
+
+    private ObjectMapper objectMapper;
+
+    private List<QuestionDetailsResponse> questionDetailsResponses;
+
+    private List<AnswerDetailsResponse> answerDetailsResponses;
+
+    private UserDetailsResponse userDetailsResponse;
+
+    @Setup
+    public void setup() throws Exception {
+        final List<QuestionSummary> questions = new ArrayList<>();
+        questionDetailsResponses = new ArrayList<>();
+        answerDetailsResponses = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            final String content = "What is the question number " + i + " of this page?";
+            questions.add(new QuestionSummary(i, UUID.randomUUID().toString(), content, ZonedDateTime.now()));
+            questionDetailsResponses.add(new QuestionDetailsResponse().id(UUID.randomUUID().toString()).content(content));
+            answerDetailsResponses.add(new AnswerDetailsResponse().id(UUID.randomUUID().toString()).questionContent(content).answerContent("This is answer " + i));
+        }
+        final Page<QuestionSummary> page = Page.of(questions, pageSize, question -> null);
+        questionController = new QuestionController();
+        inject(questionController, "questionService", new QuestionService() {
+            @Override
+            public Page<QuestionSummary> getAllQuestions(final String cursor, final Integer limit) {
+                return page;
+            }
+        });
+        objectMapper = new Jackson2ObjectMapperBuilder().build();
+        userDetailsResponse = new UserDetailsResponse().firstName("database_firstname").lastName("database_lastname")
+                .userName("database_username").emailAddress("database_email").country("database_country")
+                .aboutMe("database_aboutme").dob("database_dob").contactNumber("database_contactnumber");
+    }
+
+    @Benchmark
+    public List<QuestionDetailsResponse> questionDetailsResponseList() throws Exception {
+        return questionController.getQuestions(null, null).getBody();
+    }
+
+    @Benchmark
+    public byte[] serializeQuestionDetailsResponses() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(questionDetailsResponses);
+    }
+
+    @Benchmark
+    public byte[] serializeAnswerDetailsResponses() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(answerDetailsResponses);
+    }
+
+    @Benchmark
+    public byte[] serializeUserDetailsResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userDetailsResponse);
+    }
+
+    private static void inject(final Object target, final String name, final Object value) {
+        final Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
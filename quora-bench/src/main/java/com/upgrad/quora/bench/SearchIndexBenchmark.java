@@ -0,0 +1,128 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.service.business.SearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of the search index over a synthetic corpus of short questions and answers.
+ * Words are drawn from a Zipf distribution, as in natural text, so a few terms have posting lists of a large share
+ * of the documents and most terms are rare. The heap taken by the index is printed once it is built, measured as the
+ * used heap after a full GC and as estimated by {@link SearchIndex#estimatedBytes()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchIndexBenchmark {
+
+    @Param({"1000000"})
+    public int documents;
+
+    @Param({"50000"})
+    public int vocabulary;
+
+    @Param({"12"})
+    public int wordsPerDocument;
+
+    /** number of prepared queries of each kind, picked at random per invocation */
+    private static final int QUERIES = 1024;
+
+    private SearchIndex index;
+
+    private String[] commonQueries;
+
+    private String[] rareQueries;
+
+    private String[] mixedQueries;
+
+    private String[] phraseQueries;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final Random random = new Random(42);
+        final double[] cumulative = new double[vocabulary];
+        double sum = 0;
+        for (int rank = 0; rank < vocabulary; rank++) {
+            sum += 1.0 / (rank + 1);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < vocabulary; rank++) {
+            cumulative[rank] /= sum;
+        }
+
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        final long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        index = new SearchIndex();
+        final String[] texts = new String[8];
+        final StringBuilder text = new StringBuilder();
+        for (int doc = 0; doc < documents; doc++) {
+            text.setLength(0);
+            for (int w = 0; w < wordsPerDocument; w++) {
+                text.append(word(sample(cumulative, random))).append(' ');
+            }
+            texts[doc % texts.length] = text.toString();
+            index.put(doc % 4 == 0 ? SearchIndex.Type.QUESTION : SearchIndex.Type.ANSWER, "doc-" + doc, text.toString());
+        }
+        System.gc();
+        final long heapAfter = memory.getHeapMemoryUsage().getUsed();
+        System.out.printf("%nindexed %d documents, %d terms: heap %d MB, estimated %d MB%n", index.size(), index.terms(),
+                (heapAfter - heapBefore) >> 20, index.estimatedBytes() >> 20);
+
+        commonQueries = new String[QUERIES];
+        rareQueries = new String[QUERIES];
+        mixedQueries = new String[QUERIES];
+        phraseQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            commonQueries[i] = word(random.nextInt(10));
+            rareQueries[i] = word(1000 + random.nextInt(vocabulary - 1000)) + " " + word(1000 + random.nextInt(vocabulary - 1000));
+            mixedQueries[i] = word(sample(cumulative, random)) + " " + word(sample(cumulative, random)) + " " + word(sample(cumulative, random));
+            final List<String> words = SearchIndex.tokenize(texts[i % texts.length]);
+            final int start = random.nextInt(words.size() - 1);
+            phraseQueries[i] = "\"" + words.get(start) + " " + words.get(start + 1) + "\"";
+        }
+    }
+
+    @Benchmark
+    public List<SearchIndex.Hit> commonTerm() {
+        return index.search(pick(commonQueries), 10);
+    }
+
+    @Benchmark
+    public List<SearchIndex.Hit> rareTerms() {
+        return index.search(pick(rareQueries), 10);
+    }
+
+    @Benchmark
+    public List<SearchIndex.Hit> mixedTerms() {
+        return index.search(pick(mixedQueries), 10);
+    }
+
+    @Benchmark
+    public List<SearchIndex.Hit> phrase() {
+        return index.search(pick(phraseQueries), 10);
+    }
+
+    private static String pick(final String[] queries) {
+        return queries[ThreadLocalRandom.current().nextInt(queries.length)];
+    }
+
+    private static int sample(final double[] cumulative, final Random random) {
+        final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+
+    private static String word(final int rank) {
+        return "w" + Integer.toString(rank, 36);
+    }
+}
@@ -0,0 +1,48 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.service.ServiceConfiguration;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Service layer of the application without the web layer, for benchmarks that need the database.
+ * The database defaults to the one of quora-db/src/main/resources/config/localhost.properties and can be changed with
+ * the bench.datasource.url, bench.datasource.username and bench.datasource.password system properties.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@Import(ServiceConfiguration.class)
+public class ServiceContext {
+
+    /**
+     * @param properties - "key=value" properties overriding the defaults below
+     * @return started context, to be closed by the caller
+     */
+    public static ConfigurableApplicationContext start(final String... properties) {
+        return new SpringApplicationBuilder(ServiceContext.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties(
+                        "spring.datasource.url=" + System.getProperty("bench.datasource.url", "jdbc:postgresql://localhost:5432/quora?reWriteBatchedInserts=true"),
+                        "spring.datasource.username=" + System.getProperty("bench.datasource.username", "postgres"),
+                        "spring.datasource.password=" + System.getProperty("bench.datasource.password", "password"),
+                        "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQL9Dialect",
+                        "spring.jpa.properties.hibernate.temp.use_jdbc_metadata_defaults=false",
+                        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+                        "spring.jpa.properties.hibernate.cache.region.factory_class=org.hibernate.cache.jcache.JCacheRegionFactory",
+                        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                        "spring.jpa.properties.hibernate.order_inserts=true",
+                        "spring.jpa.properties.hibernate.order_updates=true",
+                        "user.admin.role=admin",
+                        "logging.level.com.upgrad.quora=warn")
+                .properties(properties)
+                .run();
+    }
+}
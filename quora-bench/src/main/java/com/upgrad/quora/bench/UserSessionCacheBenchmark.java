@@ -0,0 +1,81 @@
+package com.upgrad.quora.bench;
+
+import com.upgrad.quora.service.business.UserSession;
+import com.upgrad.quora.service.business.UserSessionCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Auth-path lookups under a read-heavy request mix, with and without the session cache in front of the database.
+ * The "database" is a counting loader, so the dbQueries counter shows how many USER_AUTH lookups reach Postgres
+ * relative to the number of authenticated requests.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserSessionCacheBenchmark {
+
+    /** share of requests that only authenticate, the rest sign out and sign in again with a new token */
+    @Param({"95", "99"})
+    public int readPercent;
+
+    /** number of concurrently signed in users */
+    @Param({"1000"})
+    public int liveSessions;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private AtomicReferenceArray<String> tokens;
+
+    private UserSessionCache userSessionCache;
+
+    private Function<String, UserSession> database;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long dbQueries;
+    }
+
+    private static final ThreadLocal<Counters> CURRENT = new ThreadLocal<>();
+
+    @Setup
+    public void setup() {
+        final ZonedDateTime expiresAt = ZonedDateTime.now().plusHours(8);
+        database = accessToken -> {
+            CURRENT.get().dbQueries++;
+            return new UserSession(accessToken.hashCode(), accessToken, "nonadmin", expiresAt, null);
+        };
+        userSessionCache = new UserSessionCache(database, 10_000, Duration.ofMinutes(5));
+        tokens = new AtomicReferenceArray<>(liveSessions);
+        for (int i = 0; i < liveSessions; i++) {
+            tokens.set(i, UUID.randomUUID().toString());
+        }
+    }
+
+    @Benchmark
+    public UserSession authenticatedRequest(final Counters counters) {
+        CURRENT.set(counters);
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int slot = random.nextInt(liveSessions);
+        if (random.nextInt(100) >= readPercent) {
+            final String signedOut = tokens.getAndSet(slot, UUID.randomUUID().toString());
+            if (cached) {
+                userSessionCache.invalidate(signedOut);
+            }
+        }
+        final String accessToken = tokens.get(slot);
+        return cached ? userSessionCache.getSession(accessToken) : database.apply(accessToken);
+    }
+}
@@ -0,0 +1,5 @@
+--SCHEMA_VERSION records the migrations applied to the database.
+--Every migration is idempotent and records itself here, so the whole set can be run again on any database.
+CREATE TABLE IF NOT EXISTS SCHEMA_VERSION(version INTEGER PRIMARY KEY, description VARCHAR(200) NOT NULL, installed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP);
+
+INSERT INTO SCHEMA_VERSION(version, description) VALUES (1, 'schema version') ON CONFLICT (version) DO NOTHING;
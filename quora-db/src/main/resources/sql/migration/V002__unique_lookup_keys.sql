@@ -0,0 +1,15 @@
+--Unique indexes on the keys the application looks rows up by: userByUuid, userAuthTokenByAccessToken, questionById and getAnswerById.
+--USERS.username and USERS.email are unique since the baseline schema.
+CREATE UNIQUE INDEX IF NOT EXISTS USERS_UUID_UK ON USERS(uuid);
+--Once USER_AUTH is partitioned by V008 the access token is unique together with the partition key instead.
+DO '
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = ''user_auth''::regclass) = ''r'' THEN
+        CREATE UNIQUE INDEX IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_UK ON USER_AUTH(access_token);
+    END IF;
+END
+';
+CREATE UNIQUE INDEX IF NOT EXISTS QUESTION_UUID_UK ON QUESTION(uuid);
+CREATE UNIQUE INDEX IF NOT EXISTS ANSWER_UUID_UK ON ANSWER(uuid);
+
+INSERT INTO SCHEMA_VERSION(version, description) VALUES (2, 'unique lookup keys') ON CONFLICT (version) DO NOTHING;
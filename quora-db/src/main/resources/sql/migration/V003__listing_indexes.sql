@@ -0,0 +1,7 @@
+--Composite indexes matching the order of the listings, so a page is read as an index range without a sort.
+--QUESTION(user_id, ...) and ANSWER(question_id, ...) also serve the ON DELETE CASCADE of their foreign keys.
+CREATE INDEX IF NOT EXISTS QUESTION_DATE_ID_IDX ON QUESTION(date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS QUESTION_USER_ID_DATE_ID_IDX ON QUESTION(user_id, date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS ANSWER_QUESTION_ID_ID_IDX ON ANSWER(question_id, id);
+
+INSERT INTO SCHEMA_VERSION(version, description) VALUES (3, 'listing indexes') ON CONFLICT (version) DO NOTHING;
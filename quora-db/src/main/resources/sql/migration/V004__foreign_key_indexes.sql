@@ -0,0 +1,5 @@
+--Indexes on the remaining foreign keys to USERS, deleting an user otherwise scans USER_AUTH and ANSWER for its rows.
+CREATE INDEX IF NOT EXISTS USER_AUTH_USER_ID_IDX ON USER_AUTH(user_id);
+CREATE INDEX IF NOT EXISTS ANSWER_USER_ID_DATE_IDX ON ANSWER(user_id, date);
+
+INSERT INTO SCHEMA_VERSION(version, description) VALUES (4, 'foreign key indexes') ON CONFLICT (version) DO NOTHING;
@@ -0,0 +1,12 @@
+--Id sequences hand out blocks of 50 ids, the entities allocate ids from those blocks in memory (allocationSize = 50)
+--so inserts can be sent to the database in JDBC batches. The sequences never move backwards.
+ALTER SEQUENCE USERS_ID_SEQ INCREMENT BY 50;
+ALTER SEQUENCE USER_AUTH_ID_SEQ INCREMENT BY 50;
+ALTER SEQUENCE QUESTION_ID_SEQ INCREMENT BY 50;
+ALTER SEQUENCE ANSWER_ID_SEQ INCREMENT BY 50;
+SELECT setval('USERS_ID_SEQ', GREATEST((SELECT COALESCE(MAX(id), 1) FROM USERS), (SELECT last_value FROM USERS_ID_SEQ)));
+SELECT setval('USER_AUTH_ID_SEQ', GREATEST((SELECT COALESCE(MAX(id), 1) FROM USER_AUTH), (SELECT last_value FROM USER_AUTH_ID_SEQ)));
+SELECT setval('QUESTION_ID_SEQ', GREATEST((SELECT COALESCE(MAX(id), 1) FROM QUESTION), (SELECT last_value FROM QUESTION_ID_SEQ)));
+SELECT setval('ANSWER_ID_SEQ', GREATEST((SELECT COALESCE(MAX(id), 1) FROM ANSWER), (SELECT last_value FROM ANSWER_ID_SEQ)));
+
+INSERT INTO SCHEMA_VERSION(version, description) VALUES (5, 'pooled id sequences') ON CONFLICT (version) DO NOTHING;
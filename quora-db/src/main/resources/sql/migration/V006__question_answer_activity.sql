@@ -0,0 +1,9 @@
+--Number of answers and date of the latest answer of every question, kept up to date by the application when answers
+--are created, edited or deleted so listings can show them without reading ANSWER. Existing questions are backfilled.
+ALTER TABLE QUESTION ADD COLUMN IF NOT EXISTS answer_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE QUESTION ADD COLUMN IF NOT EXISTS last_answer_at TIMESTAMP;
+UPDATE QUESTION q SET answer_count = a.answer_count, last_answer_at = a.last_answer_at
+    FROM (SELECT question_id, COUNT(*) AS answer_count, MAX(date) AS last_answer_at FROM ANSWER GROUP BY question_id) a
+    WHERE q.id = a.question_id AND (q.answer_count <> a.answer_count OR q.last_answer_at IS DISTINCT FROM a.last_answer_at);
+
+INSERT INTO SCHEMA_VERSION(version, description) VALUES (6, 'question answer activity') ON CONFLICT (version) DO NOTHING;
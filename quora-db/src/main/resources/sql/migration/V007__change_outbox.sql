@@ -0,0 +1,19 @@
+--Change feed of questions, answers and users. Every create, edit and delete appends an event in the same transaction
+--as the change itself, and the relay of the application hands the events to its subscribers in id order.
+--CHANGE_OUTBOX_OFFSET holds the id of the last event each subscriber has handled, events every subscriber has
+--handled are deleted by the relay.
+CREATE TABLE IF NOT EXISTS CHANGE_OUTBOX(
+    id BIGSERIAL PRIMARY KEY,
+    aggregate_type VARCHAR(20) NOT NULL,
+    aggregate_uuid VARCHAR(200) NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+CREATE TABLE IF NOT EXISTS CHANGE_OUTBOX_OFFSET(
+    subscriber VARCHAR(100) PRIMARY KEY,
+    last_id BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+INSERT INTO SCHEMA_VERSION(version, description) VALUES (7, 'change outbox') ON CONFLICT (version) DO NOTHING;
@@ -0,0 +1,47 @@
+--USER_AUTH is partitioned by the week of EXPIRES_AT, so the sessions of a week are dropped as a whole once all of them
+--have expired instead of being deleted row by row. The weekly partitions are named USER_AUTH_P<yyyymmdd> after the
+--monday they start on, the application creates the coming weeks ahead of time and drops the expired ones. Rows outside
+--of every week, like the sessions that had already expired when the table was converted, are kept in USER_AUTH_DEFAULT
+--until they are purged in batches.
+--A unique index on a partitioned table has to contain the partition key, so ACCESS_TOKEN is unique together with
+--EXPIRES_AT. The expiry is derived from the token, so a token is never stored twice with different expiries; the
+--lookup by token rejects a token it finds more than once rather than pick one of its sessions.
+DO '
+DECLARE
+    week DATE;
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = ''user_auth''::regclass) = ''r'' THEN
+        ALTER TABLE USER_AUTH RENAME TO USER_AUTH_UNPARTITIONED;
+        ALTER INDEX USER_AUTH_PKEY RENAME TO USER_AUTH_UNPARTITIONED_PKEY;
+        ALTER SEQUENCE USER_AUTH_ID_SEQ OWNED BY NONE;
+        CREATE TABLE USER_AUTH(
+            ID BIGINT NOT NULL DEFAULT nextval(''USER_AUTH_ID_SEQ''),
+            uuid VARCHAR(200) NOT NULL,
+            USER_ID INTEGER NOT NULL,
+            ACCESS_TOKEN VARCHAR(500) NOT NULL,
+            EXPIRES_AT TIMESTAMP NOT NULL,
+            LOGIN_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+            LOGOUT_AT TIMESTAMP NULL,
+            PRIMARY KEY (ID, EXPIRES_AT),
+            CONSTRAINT FK_USER_AUTH_USER_ID FOREIGN KEY(USER_ID) REFERENCES USERS(ID) ON DELETE CASCADE
+        ) PARTITION BY RANGE (EXPIRES_AT);
+        CREATE TABLE USER_AUTH_DEFAULT PARTITION OF USER_AUTH DEFAULT;
+        FOR i IN 0..4 LOOP
+            week := date_trunc(''week'', now())::date + 7 * i;
+            EXECUTE format(''CREATE TABLE %I PARTITION OF USER_AUTH FOR VALUES FROM (%L) TO (%L)'',
+                ''user_auth_p'' || to_char(week, ''YYYYMMDD''), week, week + 7);
+        END LOOP;
+        INSERT INTO USER_AUTH(id, uuid, user_id, access_token, expires_at, login_at, logout_at)
+            SELECT id, uuid, user_id, access_token, expires_at, login_at, logout_at FROM USER_AUTH_UNPARTITIONED;
+        DROP TABLE USER_AUTH_UNPARTITIONED;
+        ALTER SEQUENCE USER_AUTH_ID_SEQ OWNED BY USER_AUTH.ID;
+    END IF;
+END
+';
+CREATE UNIQUE INDEX IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_EXPIRES_AT_UK ON USER_AUTH(access_token, expires_at);
+DROP INDEX IF EXISTS USER_AUTH_ACCESS_TOKEN_IDX;
+CREATE INDEX IF NOT EXISTS USER_AUTH_USER_ID_IDX ON USER_AUTH(user_id);
+--signed out sessions are purged by the date they were signed out
+CREATE INDEX IF NOT EXISTS USER_AUTH_LOGOUT_AT_IDX ON USER_AUTH(logout_at) WHERE logout_at IS NOT NULL;
+
+INSERT INTO SCHEMA_VERSION(version, description) VALUES (8, 'user auth partitions') ON CONFLICT (version) DO NOTHING;
@@ -0,0 +1,5 @@
+--Events older than the retention of the outbox are purged by the relay whether or not a subscriber has handled them,
+--so CHANGE_OUTBOX stays bounded when no subscriber runs. They are found by the time they were appended.
+CREATE INDEX IF NOT EXISTS CHANGE_OUTBOX_CREATED_AT_IDX ON CHANGE_OUTBOX(created_at);
+
+INSERT INTO SCHEMA_VERSION(version, description) VALUES (9, 'change outbox retention') ON CONFLICT (version) DO NOTHING;
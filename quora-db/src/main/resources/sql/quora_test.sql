@@ -21,8 +21,15 @@ insert into user_auth (id , uuid , user_id , access_token , expires_at , login_a
 
 
 --Insert values in QUESTION table
-insert into question (id,uuid,content,date,user_id) values(1024,'database_question_uuid','database_question_content','2018-09-17 19:41:19.593',1026);
+insert into question (id,uuid,content,date,user_id,answer_count,last_answer_at) values(1024,'database_question_uuid','database_question_content','2018-09-17 19:41:19.593',1026,1,'2018-09-17 19:41:19.593');
 
 
 --Insert values in ANSWER table
 insert into answer(id,uuid,ans,date,user_id,question_id) values (1024,'database_answer_uuid','my_answer','2018-09-17 19:41:19.593',1026,1024);
+
+
+--Move the id sequences past the fixed ids of the records above
+SELECT setval('USERS_ID_SEQ', GREATEST((SELECT MAX(id) FROM USERS), (SELECT last_value FROM USERS_ID_SEQ)));
+SELECT setval('USER_AUTH_ID_SEQ', GREATEST((SELECT MAX(id) FROM USER_AUTH), (SELECT last_value FROM USER_AUTH_ID_SEQ)));
+SELECT setval('QUESTION_ID_SEQ', GREATEST((SELECT MAX(id) FROM QUESTION), (SELECT last_value FROM QUESTION_ID_SEQ)));
+SELECT setval('ANSWER_ID_SEQ', GREATEST((SELECT MAX(id) FROM ANSWER), (SELECT last_value FROM ANSWER_ID_SEQ)));
@@ -0,0 +1,165 @@
+package com.upgrad.quora.service.business;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of requests in flight to a limit that is learned from their latency, in the way of the gradient
+ * limiters of TCP congestion control.
+ * The latency of the requests that completed in a window (at least window-nanos and min-window-samples requests) is
+ * compared with a long-term average of it. While the latency stays within tolerance of the average the limit grows by
+ * about its square root per window, once requests queue up somewhere below (a slow database, a full connection pool)
+ * their latency rises and the limit shrinks by the same ratio, down to half of it per window. The change is smoothed,
+ * and the limit only grows while the requests in flight actually reached half of it.
+ * The long-term average follows a lasting change of the latency slowly, and drops quickly when the latency falls
+ * well below it, so a limiter that started under load recovers.
+ * Requests beyond the limit are rejected by {@link #tryAcquire()} and are expected to fail fast.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /** number of windows the long-term latency is averaged over */
+    private static final int LONG_WINDOWS = 600;
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final double smoothing;
+
+    private final long windowNanos;
+
+    private final int minWindowSamples;
+
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile double limit;
+
+    /* state of the current window and the long-term latency, guarded by this */
+    private long windowStart;
+    private int windowSamples;
+    private long windowLatencySum;
+    private int windowMaxInFlight;
+    private double longLatency;
+
+    public AdaptiveConcurrencyLimiter(final String name, final int initialLimit, final int minLimit, final int maxLimit,
+                                      final double tolerance, final double smoothing, final long windowNanos, final int minWindowSamples) {
+        this(name, initialLimit, minLimit, maxLimit, tolerance, smoothing, windowNanos, minWindowSamples, System::nanoTime);
+    }
+
+    public AdaptiveConcurrencyLimiter(final String name, final int initialLimit, final int minLimit, final int maxLimit,
+                                      final double tolerance, final double smoothing, final long windowNanos, final int minWindowSamples,
+                                      final LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("concurrency limit " + name + " needs 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.windowNanos = windowNanos;
+        this.minWindowSamples = minWindowSamples;
+        this.nanoClock = nanoClock;
+        this.limit = initialLimit;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /** take a slot for a request
+     * @return start time of the request to pass to {@link #release(long)}, or -1 if the limit is reached and the
+     * request has to be rejected
+     */
+    public long tryAcquire() {
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return nanoClock.getAsLong();
+            }
+        }
+    }
+
+    /** give the slot of a completed request back and learn from its latency
+     * @param startedAt - value returned by {@link #tryAcquire()}
+     */
+    public void release(final long startedAt) {
+        final int current = inFlight.getAndDecrement();
+        final long now = nanoClock.getAsLong();
+        sample(now - startedAt, current, now);
+    }
+
+    private synchronized void sample(final long latency, final int current, final long now) {
+        windowSamples++;
+        windowLatencySum += latency;
+        windowMaxInFlight = Math.max(windowMaxInFlight, current);
+        if (windowSamples < minWindowSamples || now - windowStart < windowNanos) {
+            return;
+        }
+        final double shortLatency = Math.max(1, windowLatencySum / (double) windowSamples);
+        if (longLatency == 0) {
+            longLatency = shortLatency;
+        } else {
+            longLatency += (shortLatency - longLatency) / LONG_WINDOWS;
+            if (longLatency > 2 * shortLatency) {
+                longLatency *= 0.95;
+            }
+        }
+        final double currentLimit = limit;
+        final double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatency / shortLatency));
+        double next = currentLimit * gradient + Math.sqrt(currentLimit);
+        if (next > currentLimit && windowMaxInFlight < currentLimit / 2) {
+            next = currentLimit;
+        }
+        next = currentLimit * (1 - smoothing) + next * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+
+        windowStart = now;
+        windowSamples = 0;
+        windowLatencySum = 0;
+        windowMaxInFlight = 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return current limit of requests in flight
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return number of requests in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of requests rejected since the start
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return long-term average latency of the requests in milliseconds
+     */
+    public synchronized double getLongLatencyMillis() {
+        return longLatency / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
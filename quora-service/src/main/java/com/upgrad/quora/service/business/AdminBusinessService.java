@@ -1,19 +1,30 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.OutboxDao;
+import com.upgrad.quora.service.dao.QuestionDao;
 import com.upgrad.quora.service.dao.UserDao;
-import com.upgrad.quora.service.entity.UserAuthTokenEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.projection.AnswerExport;
+import com.upgrad.quora.service.projection.OutboxOffset;
+import com.upgrad.quora.service.projection.QuestionExport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import static com.upgrad.quora.service.common.GenericErrorCode.*;
 
@@ -26,42 +37,116 @@ public class AdminBusinessService {
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private UserSessionService userSessionService;
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private AnswerDao answerDao;
+
+    @Autowired
+    private OutboxDao outboxDao;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${export.stream.fetch-size:500}")
+    private int exportChunkSize;
+
 
     /** delete requested user from db if the requestor is authorized
      * @param uuid
-     * @param authorizationToken
+     * @param userSession
      * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public void deleteUser(final String uuid,final String authorizationToken) throws AuthorizationFailedException, UserNotFoundException {
+    public void deleteUser(final String uuid, final UserSession userSession) throws AuthorizationFailedException, UserNotFoundException {
         log.debug("****** Starting deleteUser ******");
-        UserAuthTokenEntity userAuthTokenEntity = userDao.getUserAuthToken(authorizationToken);
-
-        if (userAuthTokenEntity == null) {
-            log.info("Invalid authorization token");
-            throw new AuthorizationFailedException(ATHR_001_ADMIN.getCode(), ATHR_001_ADMIN.getDefaultMessage());
-        }
-
-        if (userAuthTokenEntity.getLogoutAt() != null || userAuthTokenEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthTokenEntity.getLogoutAt(), userAuthTokenEntity.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_002_ADMIN.getCode(), ATHR_002_ADMIN.getDefaultMessage());
-        }
 
         final UserEntity userEntity = userDao.getUser(uuid);
         if (userEntity == null) {
             log.info("The user not found with the uuid: {} ", uuid);
             throw new UserNotFoundException(USR_001_ADMIN.getCode(), USR_001_ADMIN.getDefaultMessage());
         }
-        if (!userAuthTokenEntity.getUser().getRole().equals(adminRole)) {
+        if (!userSession.getRole().equals(adminRole)) {
             log.info("This user trying to delete doesn't have admin role");
             throw new AuthorizationFailedException(ATHR_003_ADMIN.getCode(), ATHR_003_ADMIN.getDefaultMessage());
         }
+        questionDao.userAnswersRemoved(userEntity.getId());
+        outboxDao.userDeleted(userEntity.getId());
+        searchService.userDeleted(userEntity.getId());
         userDao.deleteUser(userEntity);
+        userSessionService.userDeleted(userEntity);
         log.debug("****** Ending deleteUser ******");
 
     }
 
+    /** check that the requestor may export the question and answer corpus
+     * @param userSession
+     * @throws AuthorizationFailedException
+     */
+    public void authorizeExport(final UserSession userSession) throws AuthorizationFailedException {
+        if (!userSession.getRole().equals(adminRole)) {
+            log.info("This user trying to export doesn't have admin role");
+            throw new AuthorizationFailedException(ATHR_003_ADMIN.getCode(), ATHR_003_ADMIN.getDefaultMessage());
+        }
+    }
 
+    /** offsets of the subscribers of the change feed, if the requestor is authorized
+     * @param userSession
+     * @return offsets by subscriber name
+     * @throws AuthorizationFailedException
+     */
+    public List<OutboxOffset> getOutboxOffsets(final UserSession userSession) throws AuthorizationFailedException {
+        if (!userSession.getRole().equals(adminRole)) {
+            log.info("This user trying to read the outbox offsets doesn't have admin role");
+            throw new AuthorizationFailedException(ATHR_003_ADMIN.getCode(), ATHR_003_ADMIN.getDefaultMessage());
+        }
+        return outboxDao.getOffsets();
+    }
+
+    /** hand every question with its answers to the action, in question id order. The questions are read in chunks
+     * of export.stream.fetch-size, each chunk with one query for the questions and one for their answers in a short
+     * read-only transaction, so only one chunk is in memory and no connection is held while the action writes it out.
+     * @param action - receives each question with its answers, outside of any transaction
+     */
+    public void exportQuestionsWithAnswers(final Consumer<QuestionExport> action) {
+        log.debug("****** Starting exportQuestionsWithAnswers ******");
+        final TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        int afterId = 0;
+        List<QuestionExport> chunk;
+        do {
+            final int after = afterId;
+            chunk = readOnly.execute(status -> loadExportChunk(after));
+            chunk.forEach(action);
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == exportChunkSize);
+        log.debug("****** Ending exportQuestionsWithAnswers ******");
+    }
+
+    private List<QuestionExport> loadExportChunk(final int afterId) {
+        final List<QuestionExport> questions = questionDao.getQuestionsForExport(afterId, exportChunkSize);
+        if (questions.isEmpty()) {
+            return questions;
+        }
+        final Map<Integer, QuestionExport> questionsById = new HashMap<>();
+        final List<Integer> questionIds = new ArrayList<>(questions.size());
+        for (QuestionExport question : questions) {
+            questionsById.put(question.getId(), question);
+            questionIds.add(question.getId());
+        }
+        for (AnswerExport answer : answerDao.getAnswersForExport(questionIds)) {
+            questionsById.get(answer.getQuestionId()).addAnswer(answer);
+        }
+        return questions;
+    }
 }
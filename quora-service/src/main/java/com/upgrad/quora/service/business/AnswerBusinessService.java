@@ -1,15 +1,19 @@
 package com.upgrad.quora.service.business;
 
 import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.OutboxDao;
 import com.upgrad.quora.service.dao.QuestionDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.AnswerEntity;
 import com.upgrad.quora.service.entity.QuestionEntity;
-import com.upgrad.quora.service.entity.UserAuthTokenEntity;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBatchRequestException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.projection.AnswerSummary;
+import com.upgrad.quora.service.projection.OutboxEvent;
+import com.upgrad.quora.service.projection.QuestionSummary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,8 +22,17 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.text.MessageFormat;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static com.upgrad.quora.service.common.GenericErrorCode.*;
 
@@ -35,36 +48,45 @@ public class AnswerBusinessService {
     @Autowired
     private QuestionDao questionDao;
 
+    @Autowired
+    private OutboxDao outboxDao;
+
+    @Autowired
+    private SearchService searchService;
+
     @Value("${user.admin.role}")
     private String adminRole;
 
+    @Value("${export.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    @Value("${answer.batch.max-questions:50}")
+    private int maxBatchQuestions;
+
     /**
      * Business Logic to create a new answer
      *
      * @param answerEntity
-     * @param authorization
+     * @param userSession
      * @param questionId
      * @return new answer created
      * @throws UserNotFoundException
      * @throws InvalidQuestionException
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public AnswerEntity createAnswer(AnswerEntity answerEntity, final String authorization, final String questionId) throws InvalidQuestionException, AuthorizationFailedException {
+    public AnswerEntity createAnswer(AnswerEntity answerEntity, final UserSession userSession, final String questionId) throws InvalidQuestionException {
         log.debug("****** Starting createAnswer ******");
-        UserAuthTokenEntity userAuthTokenEntity = checkUserAuth(authorization);
-        if (userAuthTokenEntity.getLogoutAt() != null || userAuthTokenEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthTokenEntity.getLogoutAt(), userAuthTokenEntity.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_002_CREATE_ANS.getCode(), ATHR_002_CREATE_ANS.getDefaultMessage());
-        }
         QuestionEntity questionEntity = questionDao.getQuestionById(questionId);
         if (questionEntity == null) {
             log.info("The question not found with the uuid: {} ", questionId);
             throw new InvalidQuestionException(QUES_001.getCode(), QUES_001.getDefaultMessage());
         }
         answerEntity.setQuestion(questionEntity);
-        answerEntity.setUser(userAuthTokenEntity.getUser());
+        answerEntity.setUser(userDao.getUserReference(userSession.getUserId()));
         final AnswerEntity answer = answerDao.createAnswer(answerEntity);
+        questionDao.answerAdded(questionEntity.getId(), answer.getDate());
+        outboxDao.answersChanged(OutboxEvent.Type.CREATED, Collections.singletonList(answer.getId()));
+        searchService.answerSaved(answer);
         log.debug("****** Ending createAnswer ******");
         return answer;
     }
@@ -72,7 +94,7 @@ public class AnswerBusinessService {
     /**
      * Business logic to edit an existing answer
      *
-     * @param authorization
+     * @param userSession
      * @param answerId
      * @param answerContent
      * @return updated answer
@@ -80,26 +102,23 @@ public class AnswerBusinessService {
      * @throws AnswerNotFoundException
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public AnswerEntity editAnswer(final String authorization, final String answerId, final String answerContent) throws AuthorizationFailedException, AnswerNotFoundException {
+    public AnswerEntity editAnswer(final UserSession userSession, final String answerId, final String answerContent) throws AuthorizationFailedException, AnswerNotFoundException {
         log.debug("****** Starting editAnswer ******");
-        UserAuthTokenEntity userAuthToken = checkUserAuth(authorization);
-        if (userAuthToken.getLogoutAt() != null || userAuthToken.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthToken.getLogoutAt(), userAuthToken.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_002_EDIT_ANS.getCode(), ATHR_002_EDIT_ANS.getDefaultMessage());
-        }
         AnswerEntity existingAnswer = answerDao.getAnswerById(answerId);
         if (existingAnswer == null) {
             log.info("answer not found with the uuid: {} ", answerId);
             throw new AnswerNotFoundException(ANS_USER_001.getCode(), ANS_USER_001.getDefaultMessage());
         }
-        if (existingAnswer.getUser() != userAuthToken.getUser()) {
+        if (!userSession.isOwner(existingAnswer.getUser().getId())) {
             log.info("The user trying to modify the answer is not the owner");
             throw new AuthorizationFailedException(ATHR_003_COMMON.getCode(), ATHR_003_COMMON.getDefaultMessage());
         }
         existingAnswer.setAnswer(answerContent);
         existingAnswer.setDate(ZonedDateTime.now());
         answerDao.updateAnswer(existingAnswer);
+        questionDao.answerEdited(existingAnswer.getQuestion().getId(), existingAnswer.getDate());
+        outboxDao.answersChanged(OutboxEvent.Type.UPDATED, Collections.singletonList(existingAnswer.getId()));
+        searchService.answerSaved(existingAnswer);
         log.debug("****** Ending editAnswer ******");
         return existingAnswer;
     }
@@ -108,30 +127,27 @@ public class AnswerBusinessService {
      * Business logic to delete an answer
      *
      * @param answerId
-     * @param authorization
+     * @param userSession
      * @return Deleted answer object
      * @throws AuthorizationFailedException
      * @throws AnswerNotFoundException
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public AnswerEntity deleteAnswer(final String answerId, final String authorization) throws AuthorizationFailedException, AnswerNotFoundException {
+    public AnswerEntity deleteAnswer(final String answerId, final UserSession userSession) throws AuthorizationFailedException, AnswerNotFoundException {
         log.debug("****** Starting editAnswer ******");
-        UserAuthTokenEntity userAuthToken = checkUserAuth(authorization);
-        if (userAuthToken.getLogoutAt() != null || userAuthToken.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthToken.getLogoutAt(), userAuthToken.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_002_DEL_ANS.getCode(), ATHR_002_DEL_ANS.getDefaultMessage());
-        }
         AnswerEntity existingAnswer = answerDao.getAnswerById(answerId);
         if (existingAnswer == null) {
             log.info("The answer not found with the uuid: {} ", answerId);
             throw new AnswerNotFoundException(ANS_USER_001.getCode(), ANS_USER_001.getDefaultMessage());
         }
-        if (existingAnswer.getUser() != userAuthToken.getUser() && !userAuthToken.getUser().getRole().equals(adminRole)) {
+        if (!userSession.isOwner(existingAnswer.getUser().getId()) && !userSession.getRole().equals(adminRole)) {
             log.info("The user trying to delete the answer is neither the owner nor has admin rights");
             throw new AuthorizationFailedException(ATHR_004_COMMON.getCode(), ATHR_004_COMMON.getDefaultMessage());
         }
         log.debug("****** Starting deleteAnswer ******");
+        questionDao.answerRemoved(existingAnswer.getQuestion().getId(), existingAnswer.getId());
+        outboxDao.answersChanged(OutboxEvent.Type.DELETED, Collections.singletonList(existingAnswer.getId()));
+        searchService.answerDeleted(answerId);
         return answerDao.deleteAnswer(answerId);
     }
 
@@ -139,42 +155,79 @@ public class AnswerBusinessService {
      * Business logic to fetch all answers for a question
      *
      * @param questionId
-     * @param authorization
      * @return List of all answers
-     * @throws AuthorizationFailedException
      * @throws InvalidQuestionException
      */
-    public List<AnswerEntity> getAllAnswersToQuestion(final String questionId, final String authorization) throws AuthorizationFailedException, InvalidQuestionException {
+    public List<AnswerSummary> getAllAnswersToQuestion(final String questionId) throws InvalidQuestionException {
         log.debug("****** Starting getAllAnswersToQuestion ******");
-        checkUserAuth(authorization);
-        UserAuthTokenEntity userAuthToken = checkUserAuth(authorization);
-        if (userAuthToken.getLogoutAt() != null || userAuthToken.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthToken.getLogoutAt(), userAuthToken.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_002_GET_ANS.getCode(), ATHR_002_GET_ANS.getDefaultMessage());
+        QuestionEntity question = getQuestionToAnswer(questionId);
+        log.debug("****** Ending getAllAnswersToQuestion ******");
+        return answerDao.getAllAnswersToQuestion(question);
+    }
+
+    /**
+     * Business logic to fetch all answers for several questions with one query for the questions and one for their answers
+     *
+     * @param questionIds - question uuids, duplicates are ignored
+     * @return answers by question uuid in the order the uuids were requested, uuids without a question are missing
+     * @throws InvalidBatchRequestException if no uuid or more than answer.batch.max-questions uuids are requested
+     */
+    @Transactional(readOnly = true)
+    public Map<String, List<AnswerSummary>> getAllAnswersToQuestions(final List<String> questionIds) throws InvalidBatchRequestException {
+        log.debug("****** Starting getAllAnswersToQuestions ******");
+        final Set<String> uuids = new LinkedHashSet<>(questionIds);
+        if (uuids.isEmpty() || uuids.size() > maxBatchQuestions) {
+            log.info("{} question uuids requested at once", uuids.size());
+            throw new InvalidBatchRequestException(ANS_BATCH_001.getCode(),
+                    MessageFormat.format(ANS_BATCH_001.getDefaultMessage(), String.valueOf(maxBatchQuestions)));
+        }
+        final Map<String, Integer> idsByUuid = new HashMap<>();
+        final Map<Integer, List<AnswerSummary>> answersById = new HashMap<>();
+        for (QuestionSummary question : questionDao.getQuestionsByUuids(uuids)) {
+            idsByUuid.put(question.getUuid(), question.getId());
+            answersById.put(question.getId(), new ArrayList<>());
+        }
+        if (!answersById.isEmpty()) {
+            for (AnswerSummary answer : answerDao.getAllAnswersToQuestions(answersById.keySet())) {
+                answersById.get(answer.getQuestionId()).add(answer);
+            }
+        }
+        final Map<String, List<AnswerSummary>> answersByUuid = new LinkedHashMap<>();
+        for (String uuid : uuids) {
+            if (idsByUuid.containsKey(uuid)) {
+                answersByUuid.put(uuid, answersById.get(idsByUuid.get(uuid)));
+            }
         }
+        log.debug("****** Ending getAllAnswersToQuestions ******");
+        return answersByUuid;
+    }
+
+    /**
+     * Business logic to find the question whose answers are listed
+     *
+     * @param questionId
+     * @return question
+     * @throws InvalidQuestionException
+     */
+    public QuestionEntity getQuestionToAnswer(final String questionId) throws InvalidQuestionException {
         QuestionEntity question = questionDao.getQuestionById(questionId);
         if (question == null) {
             log.info("The question not found with the uuid: {} ", questionId);
             throw new InvalidQuestionException(INVALID_QUES_001_GET_ANS.getCode(), INVALID_QUES_001_GET_ANS.getDefaultMessage());
         }
-        log.debug("****** Ending getAllAnswersToQuestion ******");
-        return answerDao.getAllAnswersToQuestion(question);
+        return question;
     }
 
     /**
-     * Private method to verify user authentication token
+     * Business logic to stream all answers for a question without holding them in memory
      *
-     * @param authorizationToken
-     * @return Answer entity
-     * @throws AuthorizationFailedException
+     * @param question - question found by getQuestionToAnswer
+     * @param action - receives each answer while the transaction is open
      */
-    private UserAuthTokenEntity checkUserAuth(final String authorizationToken) throws AuthorizationFailedException {
-        UserAuthTokenEntity userAuthTokenEntity = userDao.getUserAuthToken(authorizationToken);
-        if (userAuthTokenEntity == null) {
-            log.info("Invalid authorization token");
-            throw new AuthorizationFailedException(ATHR_001_COMMON.getCode(), ATHR_001_COMMON.getDefaultMessage());
-        }
-        return userAuthTokenEntity;
+    @Transactional(readOnly = true)
+    public void streamAllAnswersToQuestion(final QuestionEntity question, final Consumer<AnswerSummary> action) {
+        log.debug("****** Starting streamAllAnswersToQuestion ******");
+        answerDao.scrollAnswersToQuestion(question, streamFetchSize, action);
+        log.debug("****** Ending streamAllAnswersToQuestion ******");
     }
 }
@@ -0,0 +1,19 @@
+package com.upgrad.quora.service.business;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded worker pool for the database work of sign-up and sign-in, the lookups before the password hash and the
+ * transaction after it. The requests release their servlet thread while they wait on this pool and on the
+ * {@link PasswordHashingExecutor}, and a hashing worker never waits on the database.
+ */
+@Component
+public class AuthRequestExecutor extends BoundedWorkerPool {
+
+    public AuthRequestExecutor(@Value("${user.auth.threads:8}") final int threads,
+                               @Value("${user.auth.queue-capacity:64}") final int queueCapacity,
+                               @Value("${user.auth.wait-timeout-ms:10000}") final long waitTimeoutMillis) {
+        super("user.auth", "user-auth-", threads, queueCapacity, waitTimeoutMillis);
+    }
+}
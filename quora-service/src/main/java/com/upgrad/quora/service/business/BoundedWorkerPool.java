@@ -0,0 +1,183 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.UnexpectedException;
+import com.upgrad.quora.service.exception.ServiceBusyException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.upgrad.quora.service.common.GenericErrorCode.GEN_001;
+import static com.upgrad.quora.service.common.GenericErrorCode.GEN_002;
+
+/**
+ * Fixed pool of workers with a bounded queue. Tasks that do not fit into the queue are rejected right away instead of
+ * waiting, tasks that waited in the queue longer than the wait timeout are rejected when a worker takes them, and
+ * tasks cancelled by their caller are skipped. The size of the queue, the busy workers, the rejected tasks and the time
+ * tasks wait in the queue are published as metrics under the name of the pool.
+ */
+public abstract class BoundedWorkerPool implements MeterBinder {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String name;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long waitTimeoutMillis;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile Timer waitTimer;
+
+    /**
+     * @param name - prefix of the metrics
+     * @param threadNamePrefix
+     * @param threads
+     * @param queueCapacity
+     * @param waitTimeoutMillis - longest a task waits in the queue, and a caller of {@link #call} for its result
+     */
+    protected BoundedWorkerPool(final String name, final String threadNamePrefix, final int threads, final int queueCapacity,
+                                final long waitTimeoutMillis) {
+        this.name = name;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(threadNamePrefix),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /** run a task on the pool
+     * @param task
+     * @return future completed with the result of the task, or exceptionally with the exception it threw, or with
+     * ServiceBusyException if the task waited in the queue longer than the wait timeout
+     * @throws ServiceBusyException if all workers are busy and the queue is full
+     */
+    public <T> CompletableFuture<T> submit(final Callable<T> task) throws ServiceBusyException {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        if (!execute(task, result)) {
+            rejected.incrementAndGet();
+            log.info("Queue of {} is full, rejecting request", name);
+            throw new ServiceBusyException(GEN_002.getCode(), GEN_002.getDefaultMessage());
+        }
+        return result;
+    }
+
+    /** run a task on the pool if it has room for it, for callers that hold back and try again later on their own.
+     * A full queue is not counted as a rejected task
+     * @param task
+     * @return future as of {@link #submit}, null if all workers are busy and the queue is full
+     */
+    public <T> CompletableFuture<T> trySubmit(final Callable<T> task) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        if (!execute(task, result)) {
+            log.debug("Queue of {} is full, task is held back", name);
+            return null;
+        }
+        return result;
+    }
+
+    /** hand the task to the executor, the result is completed by the worker
+     * @return false if all workers are busy and the queue is full
+     */
+    private <T> boolean execute(final Callable<T> task, final CompletableFuture<T> result) {
+        final long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                final long waited = System.nanoTime() - queuedAt;
+                final Timer timer = waitTimer;
+                if (timer != null) {
+                    timer.record(waited, TimeUnit.NANOSECONDS);
+                }
+                if (result.isDone()) {
+                    return;
+                }
+                if (waited > TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis)) {
+                    rejected.incrementAndGet();
+                    log.info("Task waited {} ms in the queue of {}, rejecting request", TimeUnit.NANOSECONDS.toMillis(waited), name);
+                    result.completeExceptionally(new ServiceBusyException(GEN_002.getCode(), GEN_002.getDefaultMessage()));
+                    return;
+                }
+                try {
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /** run a task on the pool as the next step of an asynchronous request
+     * @param task
+     * @return future completed with the result of the task, or exceptionally with the exception it threw or with
+     * ServiceBusyException if all workers are busy and the queue is full
+     */
+    public <T> CompletableFuture<T> submitAsync(final Callable<T> task) {
+        try {
+            return submit(task);
+        } catch (ServiceBusyException e) {
+            final CompletableFuture<T> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+    }
+
+    /** run a task on the pool and wait for its result, at most the wait timeout. A task that is not done by then is
+     * cancelled, so a worker does not run it once the caller gave up
+     * @param task
+     * @return result of the task, runtime exceptions of the task are rethrown as they are
+     * @throws ServiceBusyException if all workers are busy and the queue is full, the task is not done within the wait
+     * timeout, or the caller is interrupted
+     */
+    public <T> T call(final Callable<T> task) throws ServiceBusyException {
+        final CompletableFuture<T> result = submit(task);
+        try {
+            return result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new ServiceBusyException(GEN_002.getCode(), GEN_002.getDefaultMessage());
+        } catch (TimeoutException e) {
+            result.cancel(false);
+            log.info("Task not done within {} ms on {}, rejecting request", waitTimeoutMillis, name);
+            throw new ServiceBusyException(GEN_002.getCode(), GEN_002.getDefaultMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new UnexpectedException(GEN_001, e.getCause());
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder(name + ".queue.size", executor, e -> e.getQueue().size()).register(registry);
+        Gauge.builder(name + ".active", executor, ThreadPoolExecutor::getActiveCount).register(registry);
+        FunctionCounter.builder(name + ".rejected", rejected, AtomicLong::get).register(registry);
+        waitTimer = Timer.builder(name + ".wait").register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,316 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.business.ImportRecordReader.ImportRecord;
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import com.upgrad.quora.service.dao.BulkCopyDao;
+import com.upgrad.quora.service.dao.OutboxDao;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidImportException;
+import com.upgrad.quora.service.projection.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.MessageFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.upgrad.quora.service.common.GenericErrorCode.*;
+
+/**
+ * Imports users, questions and answers from NDJSON or CSV records (see {@link ImportRecordReader}) with the COPY protocol.
+ * Records are loaded in chunks of chunk-size records, each chunk in its own transaction, so the memory used does not grow
+ * with the size of the input. Passwords of a chunk are hashed before its transaction starts, on the
+ * {@link PasswordHashingExecutor} shared with sign-up and sign-in. An import keeps at most hashing-concurrency hashes
+ * on it and backs off while it is full, so an import cannot take the workers sign-ins need.
+ * A question or answer can refer to users and questions that already exist or that come earlier in the same import,
+ * the answer counts of the questions are updated in the transaction of the chunk that adds their answers, and the
+ * questions and answers of a chunk are added to the search index once it has committed.
+ * When a record is rejected, the chunks before it stay imported and the error names the line to resume from.
+ */
+@Service
+public class BulkImportService {
+
+    public enum Format {NDJSON, CSV}
+
+    private static final String[] USER_COLUMNS = {"id", "uuid", "firstname", "lastname", "username", "email", "password", "salt", "country", "aboutme", "dob", "role", "contactnumber"};
+    private static final String[] QUESTION_COLUMNS = {"id", "uuid", "content", "date", "user_id"};
+    private static final String[] ANSWER_COLUMNS = {"id", "uuid", "ans", "date", "user_id", "question_id"};
+
+    /** pause before a hash is submitted again while the hashing pool is full */
+    private static final long HASHING_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Logger log = LoggerFactory.getLogger(BulkImportService.class);
+
+    @Value("${user.admin.role}")
+    private String adminRole;
+
+    @Value("${user.default.role}")
+    private String defaultRole;
+
+    @Value("${bulk.import.chunk-size:1000}")
+    private int chunkSize;
+
+    /* hashes an import keeps on the hashing pool at a time, below its threads so sign-ins still find a worker */
+    @Value("${bulk.import.hashing-concurrency:2}")
+    private int hashingConcurrency;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private PasswordCryptographyProvider cryptographyProvider;
+
+    @Autowired
+    private BulkCopyDao bulkCopyDao;
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private OutboxDao outboxDao;
+
+    @Autowired
+    private SearchService searchService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public BulkImportService(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /** import all records of the input if the requestor is authorized
+     * @param input - one record per line
+     * @param format
+     * @param userSession
+     * @return rows created
+     * @throws AuthorizationFailedException if the requestor is not an admin
+     * @throws InvalidImportException if a record is malformed, refers to rows that do not exist or is rejected by the database
+     */
+    public ImportSummary importRecords(final Reader input, final Format format, final UserSession userSession) throws AuthorizationFailedException, InvalidImportException {
+        log.debug("****** Starting importRecords ******");
+        if (!userSession.getRole().equals(adminRole)) {
+            log.info("This user trying to import doesn't have admin role");
+            throw new AuthorizationFailedException(ATHR_003_ADMIN.getCode(), ATHR_003_ADMIN.getDefaultMessage());
+        }
+        final ImportRun run = new ImportRun();
+        final ImportRecordReader reader = new ImportRecordReader(input, format);
+        final List<ImportRecord> chunk = new ArrayList<>();
+        try {
+            ImportRecord record;
+            while ((record = reader.next()) != null) {
+                chunk.add(record);
+                if (chunk.size() == chunkSize) {
+                    run.load(chunk);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UnexpectedException(GEN_001, e);
+        }
+        if (!chunk.isEmpty()) {
+            run.load(chunk);
+        }
+        final ImportSummary summary = run.summary();
+        log.info("Imported {} users, {} questions and {} answers in {} ms", summary.getUsers(), summary.getQuestions(),
+                summary.getAnswers(), summary.getDurationMillis());
+        log.debug("****** Ending importRecords ******");
+        return summary;
+    }
+
+    static String message(final GenericErrorCode errorCode, final int... lineNumbers) {
+        final Object[] parameters = new Object[lineNumbers.length];
+        for (int i = 0; i < lineNumbers.length; i++) {
+            parameters[i] = String.valueOf(lineNumbers[i]);
+        }
+        return MessageFormat.format(errorCode.getDefaultMessage(), parameters);
+    }
+
+    /**
+     * State of one import: the ids of the users and questions seen so far by uuid, and the rows created
+     */
+    private final class ImportRun {
+        private final long startedAt = System.nanoTime();
+        private final Map<String, Integer> userIds = new HashMap<>();
+        private final Map<String, Integer> questionIds = new HashMap<>();
+        private long users;
+        private long questions;
+        private long answers;
+
+        private void load(final List<ImportRecord> chunk) throws InvalidImportException {
+            final List<ImportRecord> userRecords = new ArrayList<>();
+            final List<ImportRecord> questionRecords = new ArrayList<>();
+            final List<ImportRecord> answerRecords = new ArrayList<>();
+            for (ImportRecord record : chunk) {
+                switch (record.getType()) {
+                    case USER:
+                        userRecords.add(record);
+                        break;
+                    case QUESTION:
+                        questionRecords.add(record);
+                        break;
+                    default:
+                        answerRecords.add(record);
+                }
+            }
+
+            final List<String[]> hashes = hashPasswords(userRecords);
+            final StringBuilder userRows = new StringBuilder();
+            final List<Integer> newUserIds = bulkCopyDao.allocateIds("users_id_seq", userRecords.size());
+            for (int i = 0; i < userRecords.size(); i++) {
+                final ImportRecord record = userRecords.get(i);
+                final String uuid = record.get("uuid") != null ? record.get("uuid") : UUID.randomUUID().toString();
+                final String role = record.get("role") != null ? record.get("role") : defaultRole;
+                userIds.put(uuid, newUserIds.get(i));
+                userRows.append(BulkCopyDao.csvRow(newUserIds.get(i), uuid, record.get("first_name"), record.get("last_name"),
+                        record.get("user_name"), record.get("email_address"), hashes.get(i)[1], hashes.get(i)[0],
+                        record.get("country"), record.get("about_me"), record.get("dob"), role, record.get("contact_number")));
+            }
+
+            lookUp(userIds, "users", "user_uuid", questionRecords, answerRecords);
+            final StringBuilder questionRows = new StringBuilder();
+            final Map<String, String> questionContents = new HashMap<>();
+            final List<Integer> newQuestionIds = bulkCopyDao.allocateIds("question_id_seq", questionRecords.size());
+            for (int i = 0; i < questionRecords.size(); i++) {
+                final ImportRecord record = questionRecords.get(i);
+                final String uuid = record.get("uuid") != null ? record.get("uuid") : UUID.randomUUID().toString();
+                questionIds.put(uuid, newQuestionIds.get(i));
+                questionContents.put(uuid, record.get("content"));
+                questionRows.append(BulkCopyDao.csvRow(newQuestionIds.get(i), uuid, record.get("content"), timestamp(record),
+                        reference(userIds, record, "user_uuid")));
+            }
+
+            lookUp(questionIds, "question", "question_uuid", answerRecords);
+            final StringBuilder answerRows = new StringBuilder();
+            final Map<String, String> answerTexts = new HashMap<>();
+            final List<Integer> newAnswerIds = bulkCopyDao.allocateIds("answer_id_seq", answerRecords.size());
+            for (int i = 0; i < answerRecords.size(); i++) {
+                final ImportRecord record = answerRecords.get(i);
+                final String uuid = record.get("uuid") != null ? record.get("uuid") : UUID.randomUUID().toString();
+                answerTexts.put(uuid, record.get("answer"));
+                answerRows.append(BulkCopyDao.csvRow(newAnswerIds.get(i), uuid, record.get("answer"), timestamp(record),
+                        reference(userIds, record, "user_uuid"), reference(questionIds, record, "question_uuid")));
+            }
+
+            final int firstLine = chunk.get(0).getLineNumber();
+            final int lastLine = chunk.get(chunk.size() - 1).getLineNumber();
+            try {
+                transactionTemplate.execute(status -> {
+                    if (!userRecords.isEmpty()) {
+                        bulkCopyDao.copyIn("users", USER_COLUMNS, userRows.toString());
+                        outboxDao.usersChanged(OutboxEvent.Type.CREATED, newUserIds);
+                    }
+                    if (!questionRecords.isEmpty()) {
+                        bulkCopyDao.copyIn("question", QUESTION_COLUMNS, questionRows.toString());
+                        outboxDao.questionsChanged(OutboxEvent.Type.CREATED, newQuestionIds);
+                        searchService.questionsImported(questionContents);
+                    }
+                    if (!answerRecords.isEmpty()) {
+                        bulkCopyDao.copyIn("answer", ANSWER_COLUMNS, answerRows.toString());
+                        questionDao.answersAdded(newAnswerIds);
+                        outboxDao.answersChanged(OutboxEvent.Type.CREATED, newAnswerIds);
+                        searchService.answersImported(answerTexts);
+                    }
+                    return null;
+                });
+            } catch (DataAccessException e) {
+                log.info("Import records from line {} to line {} were rejected: {}", firstLine, lastLine, e.getMostSpecificCause().getMessage());
+                throw new InvalidImportException(IMP_003.getCode(), message(IMP_003, firstLine, lastLine));
+            }
+            users += userRecords.size();
+            questions += questionRecords.size();
+            answers += answerRecords.size();
+            final ImportSummary progress = summary();
+            log.info("Imported {} rows up to line {}, {} rows/s", progress.getUsers() + progress.getQuestions() + progress.getAnswers(),
+                    lastLine, progress.getRowsPerSecond());
+        }
+
+        private ImportSummary summary() {
+            return new ImportSummary(users, questions, answers, (System.nanoTime() - startedAt) / 1000000L);
+        }
+
+        /** add the ids of the referenced rows that are not known yet, in one query per chunk */
+        @SafeVarargs
+        private final void lookUp(final Map<String, Integer> ids, final String table, final String field, final List<ImportRecord>... records) {
+            final Set<String> unknown = new HashSet<>();
+            for (List<ImportRecord> list : records) {
+                for (ImportRecord record : list) {
+                    if (!ids.containsKey(record.get(field))) {
+                        unknown.add(record.get(field));
+                    }
+                }
+            }
+            ids.putAll(bulkCopyDao.findIds(table, unknown));
+        }
+
+        private Integer reference(final Map<String, Integer> ids, final ImportRecord record, final String field) throws InvalidImportException {
+            final Integer id = ids.get(record.get(field));
+            if (id == null) {
+                throw new InvalidImportException(IMP_002.getCode(), message(IMP_002, record.getLineNumber()));
+            }
+            return id;
+        }
+
+        /** the date of the record as local time of the server, which is how the entities store their ZonedDateTime */
+        private LocalDateTime timestamp(final ImportRecord record) throws InvalidImportException {
+            final String date = record.get("date");
+            if (date == null) {
+                return LocalDateTime.now();
+            }
+            try {
+                return ZonedDateTime.parse(date).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+            } catch (DateTimeParseException e) {
+                throw new InvalidImportException(IMP_001.getCode(), message(IMP_001, record.getLineNumber()));
+            }
+        }
+
+        /** hash the passwords in record order with at most hashing-concurrency of them on the pool */
+        private List<String[]> hashPasswords(final List<ImportRecord> userRecords) {
+            final List<CompletableFuture<String[]>> futures = new ArrayList<>(userRecords.size());
+            final List<String[]> hashes = new ArrayList<>(userRecords.size());
+            for (ImportRecord record : userRecords) {
+                final String password = record.get("password");
+                while (true) {
+                    if (futures.size() - hashes.size() >= Math.max(1, hashingConcurrency)) {
+                        hashes.add(futures.get(hashes.size()).join());
+                    }
+                    final CompletableFuture<String[]> future = passwordHashingExecutor.trySubmit(() -> cryptographyProvider.encrypt(password));
+                    if (future != null) {
+                        futures.add(future);
+                        break;
+                    }
+                    if (futures.size() > hashes.size()) {
+                        hashes.add(futures.get(hashes.size()).join());
+                    } else {
+                        LockSupport.parkNanos(HASHING_BACKOFF_NANOS);
+                    }
+                }
+            }
+            while (hashes.size() < futures.size()) {
+                hashes.add(futures.get(hashes.size()).join());
+            }
+            return hashes;
+        }
+    }
+}
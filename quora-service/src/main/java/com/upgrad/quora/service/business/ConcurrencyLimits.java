@@ -0,0 +1,93 @@
+package com.upgrad.quora.service.business;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive concurrency limits of the endpoint groups, one {@link AdaptiveConcurrencyLimiter} per group.
+ * A group is configured by concurrency-limit.groups.[group].initial-limit, .min-limit and .max-limit, groups without
+ * their own settings use concurrency-limit.default. The limit, the requests in flight and the rejected requests of
+ * every group are published as concurrency.limit, concurrency.in-flight and concurrency.rejected tagged by group.
+ */
+@Component
+public class ConcurrencyLimits implements MeterBinder {
+
+    private final Logger log = LoggerFactory.getLogger(ConcurrencyLimits.class);
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${concurrency-limit.default.initial-limit:20}")
+    private int defaultInitialLimit;
+
+    @Value("${concurrency-limit.default.min-limit:4}")
+    private int defaultMinLimit;
+
+    @Value("${concurrency-limit.default.max-limit:100}")
+    private int defaultMaxLimit;
+
+    @Value("${concurrency-limit.tolerance:2.0}")
+    private double tolerance;
+
+    @Value("${concurrency-limit.smoothing:0.2}")
+    private double smoothing;
+
+    @Value("${concurrency-limit.window-ms:100}")
+    private long windowMillis;
+
+    @Value("${concurrency-limit.min-window-samples:10}")
+    private int minWindowSamples;
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry registry;
+
+    /** get the limiter of a group, created on first use
+     * @param group - endpoint group
+     * @return limiter of the group
+     */
+    public AdaptiveConcurrencyLimiter getLimiter(final String group) {
+        final AdaptiveConcurrencyLimiter limiter = limiters.get(group);
+        return limiter != null ? limiter : limiters.computeIfAbsent(group, this::createLimiter);
+    }
+
+    private AdaptiveConcurrencyLimiter createLimiter(final String group) {
+        final String prefix = "concurrency-limit.groups." + group;
+        final int initialLimit = environment.getProperty(prefix + ".initial-limit", Integer.class, defaultInitialLimit);
+        final int minLimit = environment.getProperty(prefix + ".min-limit", Integer.class, defaultMinLimit);
+        final int maxLimit = environment.getProperty(prefix + ".max-limit", Integer.class, defaultMaxLimit);
+        log.info("Concurrency limit of {}: {} requests in flight, between {} and {}", group, initialLimit, minLimit, maxLimit);
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(group, initialLimit, minLimit, maxLimit,
+                tolerance, smoothing, TimeUnit.MILLISECONDS.toNanos(windowMillis), minWindowSamples);
+        if (registry != null) {
+            bind(registry, limiter);
+        }
+        return limiter;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        this.registry = registry;
+        for (AdaptiveConcurrencyLimiter limiter : limiters.values()) {
+            bind(registry, limiter);
+        }
+    }
+
+    private static void bind(final MeterRegistry registry, final AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit).tag("group", limiter.getName()).register(registry);
+        Gauge.builder("concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight).tag("group", limiter.getName()).register(registry);
+        FunctionCounter.builder("concurrency.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected).tag("group", limiter.getName()).register(registry);
+    }
+}
@@ -0,0 +1,192 @@
+package com.upgrad.quora.service.business;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.service.exception.InvalidImportException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.upgrad.quora.service.common.GenericErrorCode.IMP_001;
+
+/**
+ * Reads bulk import records one line at a time, either as NDJSON objects with a "type" field or as CSV rows whose
+ * first column is the type and the remaining columns follow the field order of the type. Blank lines are skipped.
+ * A CSV value can be quoted to contain commas, but every record has to fit on one line.
+ */
+final class ImportRecordReader {
+
+    enum Type {
+        USER("uuid", "first_name", "last_name", "user_name", "email_address", "password", "country", "about_me", "dob", "contact_number", "role"),
+        QUESTION("uuid", "content", "date", "user_uuid"),
+        ANSWER("uuid", "answer", "date", "user_uuid", "question_uuid");
+
+        private final List<String> fields;
+
+        Type(final String... fields) {
+            this.fields = Arrays.asList(fields);
+        }
+    }
+
+    /** required fields by type, all other fields may be left out */
+    private static final Map<Type, List<String>> REQUIRED = new HashMap<>();
+
+    static {
+        REQUIRED.put(Type.USER, Arrays.asList("first_name", "last_name", "user_name", "email_address", "password"));
+        REQUIRED.put(Type.QUESTION, Arrays.asList("content", "user_uuid"));
+        REQUIRED.put(Type.ANSWER, Arrays.asList("answer", "user_uuid", "question_uuid"));
+    }
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final BufferedReader lines;
+
+    private final BulkImportService.Format format;
+
+    private int lineNumber;
+
+    ImportRecordReader(final Reader input, final BulkImportService.Format format) {
+        this.lines = new BufferedReader(input);
+        this.format = format;
+    }
+
+    /**
+     * @return next record or null at the end of the input
+     * @throws InvalidImportException if the line is malformed, of an unknown type or misses a required field
+     * @throws IOException if the input cannot be read
+     */
+    ImportRecord next() throws InvalidImportException, IOException {
+        String line;
+        do {
+            line = lines.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.trim().isEmpty());
+
+        final Map<String, String> values = format == BulkImportService.Format.NDJSON ? parseJson(line) : parseCsv(line);
+        final Type type = typeOf(values.remove("type"));
+        for (String field : REQUIRED.get(type)) {
+            final String value = values.get(field);
+            if (value == null || value.isEmpty()) {
+                throw invalid();
+            }
+        }
+        return new ImportRecord(type, lineNumber, values);
+    }
+
+    private Map<String, String> parseJson(final String line) throws InvalidImportException {
+        final JsonNode node;
+        try {
+            node = OBJECT_MAPPER.readTree(line);
+        } catch (IOException e) {
+            throw invalid();
+        }
+        if (node == null || !node.isObject()) {
+            throw invalid();
+        }
+        final Map<String, String> values = new HashMap<>();
+        node.fields().forEachRemaining(field -> {
+            if (!field.getValue().isNull()) {
+                values.put(field.getKey(), field.getValue().asText());
+            }
+        });
+        return values;
+    }
+
+    private Map<String, String> parseCsv(final String line) throws InvalidImportException {
+        final List<String> columns = splitCsv(line);
+        final Type type = typeOf(columns.get(0));
+        if (columns.size() - 1 > type.fields.size()) {
+            throw invalid();
+        }
+        final Map<String, String> values = new HashMap<>();
+        values.put("type", columns.get(0));
+        for (int i = 1; i < columns.size(); i++) {
+            if (!columns.get(i).isEmpty()) {
+                values.put(type.fields.get(i - 1), columns.get(i));
+            }
+        }
+        return values;
+    }
+
+    private List<String> splitCsv(final String line) throws InvalidImportException {
+        final List<String> columns = new ArrayList<>();
+        final StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    column.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    column.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else {
+                column.append(c);
+            }
+        }
+        if (quoted) {
+            throw invalid();
+        }
+        columns.add(column.toString());
+        return columns;
+    }
+
+    private Type typeOf(final String type) throws InvalidImportException {
+        if (type != null) {
+            for (Type candidate : Type.values()) {
+                if (candidate.name().equalsIgnoreCase(type.trim())) {
+                    return candidate;
+                }
+            }
+        }
+        throw invalid();
+    }
+
+    private InvalidImportException invalid() {
+        return new InvalidImportException(IMP_001.getCode(), BulkImportService.message(IMP_001, lineNumber));
+    }
+
+    /**
+     * One record of an import with its field values by name, missing and empty fields are absent
+     */
+    static final class ImportRecord {
+        private final Type type;
+        private final int lineNumber;
+        private final Map<String, String> values;
+
+        private ImportRecord(final Type type, final int lineNumber, final Map<String, String> values) {
+            this.type = type;
+            this.lineNumber = lineNumber;
+            this.values = values;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        int getLineNumber() {
+            return lineNumber;
+        }
+
+        String get(final String field) {
+            return values.get(field);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.upgrad.quora.service.business;
+
+/**
+ * Number of rows created by a bulk import and the time it took.
+ */
+public final class ImportSummary {
+
+    private final long users;
+    private final long questions;
+    private final long answers;
+    private final long durationMillis;
+
+    public ImportSummary(final long users, final long questions, final long answers, final long durationMillis) {
+        this.users = users;
+        this.questions = questions;
+        this.answers = answers;
+        this.durationMillis = durationMillis;
+    }
+
+    public long getUsers() {
+        return users;
+    }
+
+    public long getQuestions() {
+        return questions;
+    }
+
+    public long getAnswers() {
+        return answers;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return rows of all tables created per second of the import
+     */
+    public long getRowsPerSecond() {
+        return (users + questions + answers) * 1000 / Math.max(durationMillis, 1);
+    }
+}
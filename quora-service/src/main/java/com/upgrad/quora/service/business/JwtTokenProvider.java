@@ -1,54 +1,81 @@
 package com.upgrad.quora.service.business;
 
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.upgrad.quora.service.common.Constants;
-import com.upgrad.quora.service.common.GenericErrorCode;
-import com.upgrad.quora.service.common.UnexpectedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
 
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoField;
 import java.util.Date;
 import java.util.UUID;
 
 /**
  * This class is used in the project to provide JWT token after successful authentication
+ * and to verify the JWT tokens it has issued without a database lookup.
  */
+@Component
 public class JwtTokenProvider {
 
-    private final Algorithm algorithm;
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+
+    private final SigningKeyRing signingKeyRing;
+
+    private final JWTVerifier verifier;
 
     /**
-     * A constructor for JwtTokenProvider class which receives user password as an argument to be used in the signature part of JWT access token.
+     * A constructor for JwtTokenProvider class which receives the key ring used in the signature part of JWT access token.
+     * The verifier is built once and shared by all threads, it selects the key by the "kid" header of the token.
      */
-    public JwtTokenProvider(final String secret) {
-        try {
-            algorithm = Algorithm.HMAC512(secret);
-        } catch (IllegalArgumentException e) {
-            throw new UnexpectedException(GenericErrorCode.GEN_001);
-        }
+    @Autowired
+    public JwtTokenProvider(final SigningKeyRing signingKeyRing) {
+        this.signingKeyRing = signingKeyRing;
+        verifier = JWT.require(signingKeyRing.getVerificationAlgorithm())
+                .withIssuer(Constants.TOKEN_ISSUER)
+                .withAudience(Constants.TOKEN_AUDIENCE)
+                .build();
     }
 
 
     /**
-     * This method receives uuid of the user, current time and expiry time of the access token.
+     * This method receives uuid, id and role of the user, current time and expiry time of the access token.
      * This information is stored in the payload of the JWT token and the JWT token is returned by this method.
      */
     /**
      * @param userUuid        - uuid of the user
+     * @param userId          - database id of the user
+     * @param role            - role of the user
      * @param issuedDateTime  - current time
      * @param expiresDateTime - expiry time of the JWT token
      * @return - generated JWT token
      */
-    public String generateToken(final String userUuid, final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
+    public String generateToken(final String userUuid, final Integer userId, final String role,
+                                final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
+
+        final Date issuedAt = Date.from(issuedDateTime.toInstant());
+        final Date expiresAt = Date.from(expiresDateTime.toInstant());
 
-        final Date issuedAt = new Date(issuedDateTime.getLong(ChronoField.INSTANT_SECONDS));
-        final Date expiresAt = new Date(expiresDateTime.getLong(ChronoField.INSTANT_SECONDS));
+        return signingKeyRing.sign(JWT.create().withIssuer(Constants.TOKEN_ISSUER)
+                .withJWTId(UUID.randomUUID().toString())
+                .withAudience(Constants.TOKEN_AUDIENCE)
+                .withSubject(userUuid)
+                .withClaim(USER_ID_CLAIM, userId)
+                .withClaim(ROLE_CLAIM, role)
+                .withIssuedAt(issuedAt).withExpiresAt(expiresAt));
+    }
 
-        return JWT.create().withIssuer(Constants.TOKEN_ISSUER)
-                .withKeyId(UUID.randomUUID().toString())
-                .withAudience(userUuid)
-                .withIssuedAt(issuedAt).withExpiresAt(expiresAt).sign(algorithm);
+    /**
+     * This method checks the signature, issuer, audience and expiry of a JWT token issued by this provider.
+     *
+     * @param token - JWT token
+     * @return - decoded JWT token
+     * @throws JWTVerificationException - if the token is malformed, forged or expired
+     */
+    public DecodedJWT verify(final String token) throws JWTVerificationException {
+        return verifier.verify(token);
     }
 
 }
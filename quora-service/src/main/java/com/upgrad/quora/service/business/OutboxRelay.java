@@ -0,0 +1,153 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.OutboxDao;
+import com.upgrad.quora.service.projection.OutboxEvent;
+import com.upgrad.quora.service.projection.OutboxOffset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers the change feed of CHANGE_OUTBOX to the subscribers of this process. Each subscriber is handed the events
+ * after its stored offset in batches of batch-size in id order, and its offset is moved past a batch only once the
+ * subscriber has returned from it, so every event is delivered at least once and never out of order. A subscriber that
+ * throws is retried from the same offset in the next run, without holding back the other subscribers.
+ * Events are only read up to the horizon of {@link OutboxDao}, so an event that commits after an event with a higher id
+ * is never skipped. The horizon moves once the transactions in flight when it was taken have ended, which is the same
+ * run unless one of them is still running, so a long transaction holds back the feed but not the writers.
+ * Events every subscriber with an offset has handled are deleted after each run, and events older than retention-hours
+ * are deleted even if a subscriber has not handled them, also when nothing subscribes in this process.
+ */
+@Component
+public class OutboxRelay {
+
+    private final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    @Autowired
+    private OutboxDao outboxDao;
+
+    @Autowired(required = false)
+    private List<OutboxSubscriber> subscriberBeans = Collections.emptyList();
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${outbox.retention-hours:168}")
+    private long retentionHours;
+
+    /* events up to this id are visible or rolled back for good */
+    private long horizonId;
+
+    /* last id drawn before the pending snapshot, it becomes the horizon once the snapshot has ended */
+    private long pendingId;
+
+    private String pendingSnapshot;
+
+    private final Map<String, OutboxSubscriber> subscribers = new ConcurrentHashMap<>();
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void subscribeBeans() {
+        subscriberBeans.forEach(this::subscribe);
+    }
+
+    /** deliver the change feed to a subscriber from its stored offset, or from the oldest event if it has none
+     * @param subscriber
+     */
+    public void subscribe(final OutboxSubscriber subscriber) {
+        outboxDao.createOffset(subscriber.getName());
+        if (subscribers.putIfAbsent(subscriber.getName(), subscriber) == null) {
+            log.info("Subscribed {} to the outbox", subscriber.getName());
+        }
+    }
+
+    /** stop delivering to a subscriber, its offset is kept
+     * @param subscriber
+     */
+    public void unsubscribe(final OutboxSubscriber subscriber) {
+        subscribers.remove(subscriber.getName(), subscriber);
+    }
+
+    /**
+     * hands every subscriber the events after its offset up to the horizon, then deletes the events all subscribers
+     * have handled and the ones past the retention
+     * @return number of events delivered
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:1000}")
+    public synchronized long relay() {
+        long delivered = 0;
+        if (!subscribers.isEmpty()) {
+            moveHorizon();
+            for (OutboxSubscriber subscriber : subscribers.values()) {
+                delivered += drain(subscriber);
+            }
+        }
+        final int handled = outboxDao.deleteHandledEvents();
+        if (handled > 0) {
+            log.debug("Deleted {} handled events from the outbox", handled);
+        }
+        final int expired = outboxDao.deleteEventsBefore(ZonedDateTime.now().minusHours(retentionHours));
+        if (expired > 0) {
+            log.info("Deleted {} events older than {} hours from the outbox", expired, retentionHours);
+        }
+        return delivered;
+    }
+
+    /**
+     * @return offsets of all subscribers that ever subscribed, by name
+     */
+    public List<OutboxOffset> getOffsets() {
+        return outboxDao.getOffsets();
+    }
+
+    /* take a new snapshot and move the horizon to it if it has ended already, otherwise to the pending one if that has */
+    private void moveHorizon() {
+        final long lastId = outboxDao.getLastDrawnId();
+        final String snapshot = outboxDao.getSnapshot();
+        if (outboxDao.hasEnded(snapshot)) {
+            horizonId = lastId;
+            pendingSnapshot = null;
+        } else if (pendingSnapshot == null) {
+            pendingId = lastId;
+            pendingSnapshot = snapshot;
+        } else if (outboxDao.hasEnded(pendingSnapshot)) {
+            horizonId = pendingId;
+            pendingId = lastId;
+            pendingSnapshot = snapshot;
+        }
+    }
+
+    private long drain(final OutboxSubscriber subscriber) {
+        long offset = outboxDao.getOffset(subscriber.getName());
+        long delivered = 0;
+        while (true) {
+            final List<OutboxEvent> events = outboxDao.getEvents(offset, horizonId, batchSize);
+            if (events.isEmpty()) {
+                break;
+            }
+            try {
+                subscriber.onEvents(Collections.unmodifiableList(events));
+            } catch (RuntimeException e) {
+                log.warn("Subscriber {} failed on the events after {}, they are delivered again in the next run", subscriber.getName(), offset, e);
+                break;
+            }
+            offset = events.get(events.size() - 1).getId();
+            outboxDao.updateOffset(subscriber.getName(), offset);
+            delivered += events.size();
+            if (events.size() < batchSize) {
+                break;
+            }
+        }
+        return delivered;
+    }
+}
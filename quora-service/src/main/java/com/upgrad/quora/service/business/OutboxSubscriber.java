@@ -0,0 +1,24 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.projection.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Receiver of the change feed in this process. Beans implementing it are subscribed to the {@link OutboxRelay} when
+ * the application starts, others can subscribe themselves with {@link OutboxRelay#subscribe(OutboxSubscriber)}.
+ * Delivery is at least once: a batch is delivered again if the subscriber throws or the process stops before the
+ * offset after it is stored, so handling an event twice must have the same effect as handling it once.
+ */
+public interface OutboxSubscriber {
+
+    /**
+     * @return name the offset of the subscriber is stored under, unique among all processes sharing the database
+     */
+    String getName();
+
+    /**
+     * @param events - next events in id order
+     */
+    void onEvents(List<OutboxEvent> events);
+}
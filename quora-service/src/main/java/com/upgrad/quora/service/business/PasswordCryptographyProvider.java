@@ -1,6 +1,7 @@
 package com.upgrad.quora.service.business;
 
 
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
@@ -10,39 +11,127 @@ import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 
+/**
+ * Hashes passwords with PBKDF2. Stored hashes describe how they were made, "$pbkdf2-sha512$i=(iterations),l=(key length)$(hex)",
+ * so the cost can be raised without invalidating existing hashes. Hashes without that prefix are from before the format
+ * and were made with 1000 iterations and a key length of 64 bits.
+ * Unless configured, the iteration count is calibrated at startup to the per-hash latency budget on the current hardware.
+ * Calibration never goes below the legacy count, and a hash only needs to be redone when it is cheaper than the current
+ * settings, so instances that calibrate slightly differently do not rehash each other's passwords back and forth.
+ */
 @Component
 public class PasswordCryptographyProvider {
 
     private static String SECRET_KEY_ALGORITHM = "PBKDF2WithHmacSHA512";
-    private static int HASHING_ITERATIONS = 1000;
-    private static int HASHING_KEY_LENGTH = 64;
+    private static final String HASH_ID = "pbkdf2-sha512";
+    private static final String HASH_PREFIX = "$" + HASH_ID + "$";
+    private static final int LEGACY_HASHING_ITERATIONS = 1000;
+    private static final int LEGACY_HASHING_KEY_LENGTH = 64;
+    private static final int CALIBRATION_ITERATIONS = 10000;
+    private static final int CALIBRATION_ROUNDS = 3;
     private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
 
+    /** SecretKeyFactory and SecureRandom are not cheap to create and not meant to be shared, so every thread keeps one */
+    private static final ThreadLocal<SecretKeyFactory> SECRET_KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    });
+    private static final ThreadLocal<SecureRandom> SECURE_RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordCryptographyProvider.class);
+
+    private final int iterations;
+
+    private final int keyLength;
+
+    @Autowired
+    public PasswordCryptographyProvider(@Value("${user.password.hashing.iterations:0}") final int iterations,
+                                        @Value("${user.password.hashing.key-length:512}") final int keyLength,
+                                        @Value("${user.password.hashing.target-millis:50}") final long targetMillis) {
+        this(iterations > 0 ? iterations : calibrate(keyLength, targetMillis), keyLength);
+    }
+
+    /**
+     * @param iterations - PBKDF2 iteration count of new hashes
+     * @param keyLength  - key length of new hashes in bits
+     */
+    public PasswordCryptographyProvider(final int iterations, final int keyLength) {
+        this.iterations = iterations;
+        this.keyLength = keyLength;
+        log.info("Hashing passwords with {} iterations and a key length of {} bits", iterations, keyLength);
+    }
+
     /**
      * This method generates Salt and hashed Password
      *
      * @param password char array.
-     * @return String array with [0] encoded salt [1] hashed password.
+     * @return String array with [0] encoded salt [1] hashed password in the self-describing format.
      */
     public String[] encrypt(final String password) {
         byte[] salt = generateSaltBytes();
-        byte[] hashedPassword = hashPassword(password.toCharArray(), salt);
-        return new String[]{getBase64EncodedBytesAsString(salt), bytesToHex(hashedPassword)};
+        byte[] hashedPassword = hashPassword(password.toCharArray(), salt, iterations, keyLength);
+        return new String[]{getBase64EncodedBytesAsString(salt), HASH_PREFIX + "i=" + iterations + ",l=" + keyLength + "$" + bytesToHex(hashedPassword)};
     }
 
     /**
-     * This method re-generates hashed Password from raw-password and salt.
-     * This will be used during authentication.
+     * This method re-generates hashed Password from raw-password and salt with the settings of the stored hash,
+     * and compares it with the stored hash. This will be used during authentication.
      *
-     * @param password char array.
-     * @param salt     byte array.
-     * @return byte array of hashed password.
+     * @param password   raw password.
+     * @param salt       encoded salt.
+     * @param storedHash hashed password as stored.
+     * @return true if the password matches.
      */
-    public static String encrypt(final String password, String salt) {
-        return bytesToHex(hashPassword(password.toCharArray(), getBase64DecodedStringAsBytes(salt)));
+    public boolean matches(final String password, final String salt, final String storedHash) {
+        final HashSettings settings = HashSettings.parse(storedHash);
+        if (settings == null) {
+            log.info("Stored password hash has an unknown format");
+            return false;
+        }
+        final byte[] hashedPassword = hashPassword(password.toCharArray(), getBase64DecodedStringAsBytes(salt), settings.iterations, settings.keyLength);
+        return MessageDigest.isEqual(bytesToHex(hashedPassword).getBytes(), settings.hash.getBytes());
+    }
+
+    /**
+     * @param storedHash hashed password as stored.
+     * @return true if the stored hash is in the legacy format or cheaper than the current settings.
+     */
+    public boolean needsRehash(final String storedHash) {
+        final HashSettings settings = HashSettings.parse(storedHash);
+        return settings == null || settings.legacy || settings.keyLength != keyLength || settings.iterations < iterations;
+    }
+
+    /**
+     * This method measures the time of a hash and scales the iteration count to the latency budget
+     *
+     * @param keyLength    key length in bits.
+     * @param targetMillis latency budget of one hash.
+     * @return iteration count, in whole thousands and at least the legacy count.
+     */
+    static int calibrate(final int keyLength, final long targetMillis) {
+        final char[] password = "calibration".toCharArray();
+        final byte[] salt = generateSaltBytes();
+        hashPassword(password, salt, CALIBRATION_ITERATIONS, keyLength);
+        long fastest = Long.MAX_VALUE;
+        for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+            final long start = System.nanoTime();
+            hashPassword(password, salt, CALIBRATION_ITERATIONS, keyLength);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        final long scaled = CALIBRATION_ITERATIONS * targetMillis * 1000000L / Math.max(fastest, 1L);
+        final int calibrated = (int) Math.max(LEGACY_HASHING_ITERATIONS, Math.min(Integer.MAX_VALUE, scaled / 1000 * 1000));
+        log.info("Calibrated password hashing to {} iterations for {} ms per hash", calibrated, targetMillis);
+        return calibrated;
     }
 
     /**
@@ -51,7 +140,7 @@ public class PasswordCryptographyProvider {
      * @return 32 bytes long array
      */
     private static byte[] generateSaltBytes() {
-        final Random random = new SecureRandom();
+        final Random random = SECURE_RANDOM.get();
         byte[] saltBytes = new byte[32];
         random.nextBytes(saltBytes);
         return saltBytes;
@@ -60,18 +149,20 @@ public class PasswordCryptographyProvider {
     /**
      * This method generates hashed Password
      *
-     * @param password char array.
-     * @param salt     byte array.
+     * @param password   char array.
+     * @param salt       byte array.
+     * @param iterations PBKDF2 iteration count.
+     * @param keyLength  key length in bits.
      * @return byte array of hashed password.
      */
-    private static byte[] hashPassword(final char[] password, final byte[] salt) {
+    private static byte[] hashPassword(final char[] password, final byte[] salt, final int iterations, final int keyLength) {
         try {
-            SecretKeyFactory skf = SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
-            PBEKeySpec spec = new PBEKeySpec(password, salt, HASHING_ITERATIONS, HASHING_KEY_LENGTH);
+            SecretKeyFactory skf = SECRET_KEY_FACTORY.get();
+            PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, keyLength);
             SecretKey key = skf.generateSecret(spec);
             byte[] res = key.getEncoded();
             return res;
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+        } catch (InvalidKeySpecException e) {
             throw new RuntimeException(e);
         }
     }
@@ -93,6 +184,55 @@ public class PasswordCryptographyProvider {
     private static byte[] getBase64DecodedStringAsBytes(String decode) {
         return Base64.getDecoder().decode(decode);
     }
-}
 
+    /**
+     * Settings and hex digest read from a stored hash
+     */
+    private static final class HashSettings {
+        private final boolean legacy;
+        private final int iterations;
+        private final int keyLength;
+        private final String hash;
+
+        private HashSettings(final boolean legacy, final int iterations, final int keyLength, final String hash) {
+            this.legacy = legacy;
+            this.iterations = iterations;
+            this.keyLength = keyLength;
+            this.hash = hash;
+        }
 
+        /**
+         * @param storedHash hashed password as stored.
+         * @return settings of the hash or null if the format is not recognized.
+         */
+        private static HashSettings parse(final String storedHash) {
+            if (!storedHash.startsWith("$")) {
+                return new HashSettings(true, LEGACY_HASHING_ITERATIONS, LEGACY_HASHING_KEY_LENGTH, storedHash);
+            }
+            if (!storedHash.startsWith(HASH_PREFIX)) {
+                return null;
+            }
+            final String[] parts = storedHash.substring(HASH_PREFIX.length()).split("\\$");
+            if (parts.length != 2) {
+                return null;
+            }
+            int iterations = 0;
+            int keyLength = 0;
+            try {
+                for (String parameter : parts[0].split(",")) {
+                    if (parameter.startsWith("i=")) {
+                        iterations = Integer.parseInt(parameter.substring(2));
+                    } else if (parameter.startsWith("l=")) {
+                        keyLength = Integer.parseInt(parameter.substring(2));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (iterations <= 0 || keyLength <= 0) {
+                return null;
+            }
+            return new HashSettings(false, iterations, keyLength, parts[1]);
+        }
+    }
+}
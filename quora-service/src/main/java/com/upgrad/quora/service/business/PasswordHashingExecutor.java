@@ -0,0 +1,19 @@
+package com.upgrad.quora.service.business;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded worker pool for the password hashes of sign-up, sign-in and imports, so that a burst of them cannot take
+ * more CPU than the pool has threads. Only the hashing runs on the pool, the database work of sign-up and sign-in runs
+ * on the {@link AuthRequestExecutor} and the imports keep theirs on their own thread.
+ */
+@Component
+public class PasswordHashingExecutor extends BoundedWorkerPool {
+
+    public PasswordHashingExecutor(@Value("${user.password.hashing.threads:4}") final int threads,
+                                   @Value("${user.password.hashing.queue-capacity:64}") final int queueCapacity,
+                                   @Value("${user.password.hashing.wait-timeout-ms:10000}") final long waitTimeoutMillis) {
+        super("password.hashing", "password-hash-", threads, queueCapacity, waitTimeoutMillis);
+    }
+}
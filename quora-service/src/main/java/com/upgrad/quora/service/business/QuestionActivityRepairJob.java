@@ -0,0 +1,68 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.QuestionDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Recomputes the answer count and last answer date of every question from its answers, so activity that drifted
+ * (answers changed outside of the application, or two answers of a question deleted at the same moment) is put right.
+ * Questions are repaired in id order, batch-size questions per transaction, so only one batch of rows is locked at a time.
+ */
+@Component
+public class QuestionActivityRepairJob {
+
+    private final Logger log = LoggerFactory.getLogger(QuestionActivityRepairJob.class);
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Value("${question.activity.repair.batch-size:1000}")
+    private int batchSize;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public QuestionActivityRepairJob(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * repairs the activity of all questions
+     * @return number of questions whose activity had drifted
+     */
+    @Scheduled(initialDelayString = "${question.activity.repair.interval-ms:21600000}",
+            fixedDelayString = "${question.activity.repair.interval-ms:21600000}")
+    public int repairAll() {
+        log.debug("****** Starting repairAll ******");
+        int afterId = 0;
+        int checked = 0;
+        int repaired = 0;
+        while (true) {
+            final int from = afterId;
+            final int[] batch = transactionTemplate.execute(status -> {
+                final List<Integer> questionIds = questionDao.lockQuestionsForRepair(from, batchSize);
+                if (questionIds.isEmpty()) {
+                    return null;
+                }
+                return new int[]{questionIds.get(questionIds.size() - 1), questionIds.size(), questionDao.repairAnswerActivity(questionIds)};
+            });
+            if (batch == null) {
+                break;
+            }
+            afterId = batch[0];
+            checked += batch[1];
+            repaired += batch[2];
+        }
+        log.info("Checked the answer activity of {} questions, repaired {}", checked, repaired);
+        log.debug("****** Ending repairAll ******");
+        return repaired;
+    }
+}
@@ -1,12 +1,21 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.common.Page;
+import com.upgrad.quora.service.common.PageCursor;
+import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.OutboxDao;
 import com.upgrad.quora.service.dao.QuestionDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.QuestionEntity;
-import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.projection.OutboxEvent;
+import com.upgrad.quora.service.projection.AnswerExport;
+import com.upgrad.quora.service.projection.QuestionDetail;
+import com.upgrad.quora.service.projection.QuestionSummary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,8 +24,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.ZonedDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static com.upgrad.quora.service.common.GenericErrorCode.*;
 
@@ -29,89 +39,131 @@ public class QuestionService {
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private AnswerDao answerDao;
+
+    @Autowired
+    private OutboxDao outboxDao;
+
+    @Autowired
+    private SearchService searchService;
+
     @Value("${user.admin.role}")
     private String adminRole;
 
+    @Value("${question.page.default-limit:20}")
+    private int defaultPageSize;
+
+    @Value("${question.page.max-limit:100}")
+    private int maxPageSize;
+
+    @Value("${export.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    @Value("${question.detail.answer-limit:10}")
+    private int detailAnswerLimit;
+
     /*
      * @param questionEntity - questionEntity Object to be persisted
-     * @param authorizationToken - authorizationToken to be checked for authentication and authorization
-     * @throws AuthorizationFailedException - thrown if user does not exist or is signed out
+     * @param userSession - session of the signed in user
      * @returns questionEntity - questionEntity Object which is persisted
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity createQuestion(final QuestionEntity questionEntity, final String authorizationToken) throws AuthorizationFailedException {
+    public QuestionEntity createQuestion(final QuestionEntity questionEntity, final UserSession userSession) {
         log.debug("****** Starting createQuestion ******");
-        UserAuthTokenEntity userAuthTokenEntity = checkUserAuth(authorizationToken);
-        if (userAuthTokenEntity.getLogoutAt() != null || userAuthTokenEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthTokenEntity.getLogoutAt(), userAuthTokenEntity.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_QSN_USR_001_COMMON.getCode(), ATHR_QSN_USR_001_COMMON.getDefaultMessage());
-        }
-        questionEntity.setUser(userAuthTokenEntity.getUser());
+        questionEntity.setUser(userDao.getUserReference(userSession.getUserId()));
         final QuestionEntity question = questionDao.createQuestion(questionEntity);
+        outboxDao.questionsChanged(OutboxEvent.Type.CREATED, Collections.singletonList(question.getId()));
+        searchService.questionSaved(question);
         log.debug("****** Ending createQuestion ******");
         return question;
     }
 
     /*
-     * @param authorizationToken - authorizationToken to be checked for authentication and authorization
-     * @returns List<QuestionEntity> - returns list of question entities
+     * @param cursor - next-cursor of the previous page, null for the first page
+     * @param limit - requested page size, null for the default
+     * @throws InvalidPageRequestException - thrown if the cursor or the limit is not valid
+     * @returns Page<QuestionSummary> - returns a page of questions, newest first
      */
-    public List<QuestionEntity> getAllQuestions(final String authorizationToken) throws AuthorizationFailedException {
+    public Page<QuestionSummary> getAllQuestions(final String cursor, final Integer limit) throws InvalidPageRequestException {
         log.debug("****** Starting getAllQuestions ******");
-        UserAuthTokenEntity userAuthTokenEntity = checkUserAuth(authorizationToken);
-        if (userAuthTokenEntity.getLogoutAt() != null || userAuthTokenEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthTokenEntity.getLogoutAt(), userAuthTokenEntity.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_QSN_USR_002_COMMON.getCode(), ATHR_QSN_USR_002_COMMON.getDefaultMessage());
-        }
-        final List<QuestionEntity> questions = questionDao.getQuestions();
+        final PageCursor after = PageCursor.decode(cursor);
+        final int pageSize = pageSize(limit);
+        final List<QuestionSummary> questions = questionDao.getQuestions(after, pageSize + 1);
         log.debug("****** Ending getAllQuestions ******");
-        return questions;
+        return Page.of(questions, pageSize, QuestionService::cursorOf);
+    }
+
+    /*
+     * Streams every question newest first without holding the listing in memory, for admin and export clients
+     * @param action - receives each question while the transaction is open
+     */
+    @Transactional(readOnly = true)
+    public void streamAllQuestions(final Consumer<QuestionSummary> action) {
+        log.debug("****** Starting streamAllQuestions ******");
+        questionDao.scrollQuestions(streamFetchSize, action);
+        log.debug("****** Ending streamAllQuestions ******");
+    }
+
+    /*
+     * The question with its author and first page of answers, read with one query for the question and author and one
+     * for the answers
+     * @param questionId - question uuid
+     * @throws InvalidQuestionException - thrown if there is no question with the uuid
+     * @returns QuestionDetail - with at most question.detail.answer-limit answers, oldest first
+     */
+    @Transactional(readOnly = true)
+    public QuestionDetail getQuestionDetail(final String questionId) throws InvalidQuestionException {
+        log.debug("****** Starting getQuestionDetail ******");
+        final QuestionDetail question = questionDao.getQuestionDetail(questionId);
+        if (question == null) {
+            log.info("The question not found with the uuid: {} ", questionId);
+            throw new InvalidQuestionException(QSN_001.getCode(), QSN_001.getDefaultMessage());
+        }
+        final List<AnswerExport> answers = answerDao.getAnswersPage(question.getId(), detailAnswerLimit + 1);
+        final boolean moreAnswers = answers.size() > detailAnswerLimit;
+        question.setAnswers(moreAnswers ? answers.subList(0, detailAnswerLimit) : answers, moreAnswers);
+        log.debug("****** Ending getQuestionDetail ******");
+        return question;
     }
 
     /*
      * @param userId - user Id for retrieving user questions
-     * @param authorizationToken - authorizationToken to be checked for authentication and authorization
-     * @returns List<QuestionEntity> - returns list of question entities
+     * @param cursor - next-cursor of the previous page, null for the first page
+     * @param limit - requested page size, null for the default
+     * @throws InvalidPageRequestException - thrown if the cursor or the limit is not valid
+     * @returns Page<QuestionSummary> - returns a page of questions of the user, newest first
      */
-    public List<QuestionEntity> getQuestionsByUser(final String userId, final String authorizationToken) throws AuthorizationFailedException, UserNotFoundException {
+    public Page<QuestionSummary> getQuestionsByUser(final String userId, final String cursor, final Integer limit) throws UserNotFoundException, InvalidPageRequestException {
         log.debug("****** Starting getQuestionsByUser ******");
-        UserAuthTokenEntity userAuthTokenEntity = checkUserAuth(authorizationToken);
-        if (userAuthTokenEntity.getLogoutAt() != null || userAuthTokenEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthTokenEntity.getLogoutAt(), userAuthTokenEntity.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_QSN_USR_003_COMMON.getCode(), ATHR_QSN_USR_003_COMMON.getDefaultMessage());
-        }
-        if (userDao.getUser(userId) == null) {
+        final PageCursor after = PageCursor.decode(cursor);
+        final int pageSize = pageSize(limit);
+        final UserEntity user = userDao.getUser(userId);
+        if (user == null) {
             log.info("The user not found with the uuid: {} ", userId);
             throw new UserNotFoundException(QSN_USER_001.getCode(), QSN_USER_001.getDefaultMessage());
         }
-        final List<QuestionEntity> questionsByUser = questionDao.getQuestionsByUser(userId);
+        final List<QuestionSummary> questionsByUser = questionDao.getQuestionsByUser(user, after, pageSize + 1);
         log.debug("****** Ending getQuestionsByUser ******");
-        return questionsByUser;
+        return Page.of(questionsByUser, pageSize, QuestionService::cursorOf);
     }
 
     /*
      * @param questionId - questionId Id for retrieving question to be deleted
-     * @param authorizationToken - authorizationToken to be checked for authentication and authorization
+     * @param userSession - session of the signed in user
      * @returns QuestionEntity - returns questionEntity which is deleted
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity deleteQuestionById(final String questionId, final String authorizationToken) throws AuthorizationFailedException, InvalidQuestionException {
+    public QuestionEntity deleteQuestionById(final String questionId, final UserSession userSession) throws AuthorizationFailedException, InvalidQuestionException {
         log.debug("****** Starting deleteQuestionById ******");
-        UserAuthTokenEntity userAuthTokenEntity = checkUserAuth(authorizationToken);
-        if (userAuthTokenEntity.getLogoutAt() != null || userAuthTokenEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthTokenEntity.getLogoutAt(), userAuthTokenEntity.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_QSN_USR_004_COMMON.getCode(), ATHR_QSN_USR_004_COMMON.getDefaultMessage());
-        }
         QuestionEntity questionEntity = getQuestionByQuestionId(questionId);
-        if (questionEntity.getUser() != userAuthTokenEntity.getUser() && !userAuthTokenEntity.getUser().getRole().equals(adminRole)) {
+        if (!userSession.isOwner(questionEntity.getUser().getId()) && !userSession.getRole().equals(adminRole)) {
             log.info("The user trying to delete the question is neither the owner nor has admin rights");
             throw new AuthorizationFailedException(ATHR_QSN_001_COMMON.getCode(), ATHR_QSN_001_COMMON.getDefaultMessage());
         }
+        outboxDao.questionDeleted(questionEntity.getId());
         final QuestionEntity entity = questionDao.deleteQuestion(questionEntity);
+        searchService.questionDeleted(entity.getUuid());
         log.debug("****** Ending deleteQuestionById ******");
         return entity;
     }
@@ -119,43 +171,44 @@ public class QuestionService {
     /*
      * @param questionEntity - question Entity object
      * @param questionId - questionId Id for retrieving question to be deleted
-     * @param authorizationToken - authorizationToken to be checked for authentication and authorization
+     * @param userSession - session of the signed in user
      * @returns QuestionEntity - returns questionEntity which is deleted
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity editQuestion(final QuestionEntity questionEntity, final String questionId, final String authorizationToken) throws AuthorizationFailedException, InvalidQuestionException {
+    public QuestionEntity editQuestion(final QuestionEntity questionEntity, final String questionId, final UserSession userSession) throws AuthorizationFailedException, InvalidQuestionException {
         log.debug("****** Starting editQuestion ******");
-        UserAuthTokenEntity userAuthTokenEntity = checkUserAuth(authorizationToken);
-        if (userAuthTokenEntity.getLogoutAt() != null || userAuthTokenEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
-                    userAuthTokenEntity.getLogoutAt(), userAuthTokenEntity.getExpiresAt());
-            throw new AuthorizationFailedException(ATHR_QSN_USR_005_COMMON.getCode(), ATHR_QSN_USR_005_COMMON.getDefaultMessage());
-        }
         QuestionEntity question = getQuestionByQuestionId(questionId);
-        if (question.getUser() != userAuthTokenEntity.getUser()) {
+        if (!userSession.isOwner(question.getUser().getId())) {
             log.info("The user trying to modify the question is not the owner");
             throw new AuthorizationFailedException(ATHR_QSN_002_COMMON.getCode(), ATHR_QSN_002_COMMON.getDefaultMessage());
         }
         question.setContent(questionEntity.getContent());
         question.setDate(questionEntity.getDate());
         final QuestionEntity entity = questionDao.editQuestion(question);
+        outboxDao.questionsChanged(OutboxEvent.Type.UPDATED, Collections.singletonList(entity.getId()));
+        searchService.questionSaved(entity);
         log.debug("****** Ending editQuestion ******");
         return entity;
     }
 
 
-    /* checks user authentication based on the authorizationToken
-     * @param authorizationToken - authorizationToken to be checked for authentication and authorization
-     * @throws AuthorizationFailedException - thrown if user does not exist or is signed out
-     * @returns userAuthToken - UserAuthTokenEntity object for the authorizationToken
+    /*
+     * @param limit - requested page size, null for the default
+     * @returns page size capped at the maximum
      */
-    private UserAuthTokenEntity checkUserAuth(final String authorizationToken) throws AuthorizationFailedException {
-        UserAuthTokenEntity userAuthTokenEntity = userDao.getUserAuthToken(authorizationToken);
-        if (userAuthTokenEntity == null) {
-            log.info("Invalid authorization token");
-            throw new AuthorizationFailedException(ATHR_001_COMMON.getCode(), ATHR_001_COMMON.getDefaultMessage());
+    private int pageSize(final Integer limit) throws InvalidPageRequestException {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            log.info("Invalid page limit: {}", limit);
+            throw new InvalidPageRequestException(PAGE_002.getCode(), PAGE_002.getDefaultMessage());
         }
-        return userAuthTokenEntity;
+        return Math.min(limit, maxPageSize);
+    }
+
+    private static PageCursor cursorOf(final QuestionSummary question) {
+        return new PageCursor(question.getDate(), question.getId());
     }
 
     /*
@@ -0,0 +1,92 @@
+package com.upgrad.quora.service.business;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter keyed by user, holding one bucket per key that sent a request recently.
+ * A bucket holds up to burst tokens and gains one every 60 / permitsPerMinute seconds. It is kept as a single
+ * {@link AtomicLong}, the time at which it will be full again (the generic cell rate algorithm form of a token
+ * bucket), so taking a token is one compare-and-set and requests of different users never contend on a lock.
+ * A bucket that has been full for idle-nanos behaves exactly like a new one and is evicted by {@link #evictIdle()}.
+ * A request racing with the eviction of its bucket may be let through by a fresh bucket, which costs at most one
+ * extra token of a bucket that was full anyway.
+ */
+public class RateLimiter {
+
+    private final String name;
+
+    private final long intervalNanos;
+
+    private final long burstNanos;
+
+    private final long idleNanos;
+
+    private final LongSupplier nanoClock;
+
+    /* key -> time at which the bucket is full again, in nanos of the clock */
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(final String name, final int burst, final int permitsPerMinute, final long idleNanos) {
+        this(name, burst, permitsPerMinute, idleNanos, System::nanoTime);
+    }
+
+    public RateLimiter(final String name, final int burst, final int permitsPerMinute, final long idleNanos, final LongSupplier nanoClock) {
+        if (burst < 1 || permitsPerMinute < 1) {
+            throw new IllegalArgumentException("rate limit " + name + " needs a positive burst and permits per minute");
+        }
+        this.name = name;
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+        this.burstNanos = intervalNanos * burst;
+        this.idleNanos = idleNanos;
+        this.nanoClock = nanoClock;
+    }
+
+    /** take a token from the bucket of a key
+     * @param key
+     * @return 0 if a token was taken, otherwise the nanos until the bucket holds a token again
+     */
+    public long tryAcquire(final String key) {
+        final long now = nanoClock.getAsLong();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            final long fullAt = bucket.get();
+            final long next = Math.max(fullAt, now) + intervalNanos;
+            final long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * removes the buckets that have been full for longer than the idle time
+     * @return number of removed buckets
+     */
+    public int evictIdle() {
+        final long idleBefore = nanoClock.getAsLong() - idleNanos;
+        final int before = buckets.size();
+        buckets.values().removeIf(fullAt -> fullAt.get() - idleBefore < 0);
+        return before - buckets.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of buckets currently held
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,87 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.exception.RateLimitExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.upgrad.quora.service.common.GenericErrorCode.RATE_001;
+
+/**
+ * Rate limits of the endpoint groups, one {@link RateLimiter} per group keyed by user uuid.
+ * A group is configured by rate-limit.groups.[group].burst and .per-minute, groups without their own settings use
+ * rate-limit.default, and a burst of 0 turns the limit of a group off.
+ */
+@Component
+public class RateLimits {
+
+    private final Logger log = LoggerFactory.getLogger(RateLimits.class);
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${rate-limit.default.burst:20}")
+    private int defaultBurst;
+
+    @Value("${rate-limit.default.per-minute:60}")
+    private int defaultPerMinute;
+
+    @Value("${rate-limit.idle-eviction-ms:600000}")
+    private long idleEvictionMillis;
+
+    /* stands for the groups whose limit is off */
+    private static final RateLimiter OFF = new RateLimiter("off", 1, 1, 0);
+
+    private final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+    /** take a request of an user from the rate limit of a group
+     * @param group - endpoint group
+     * @param userUuid
+     * @throws RateLimitExceededException - thrown if the user has no request left in the group, with the seconds to wait
+     */
+    public void acquire(final String group, final String userUuid) throws RateLimitExceededException {
+        final RateLimiter limiter = limiters.computeIfAbsent(group, this::createLimiter);
+        if (limiter == OFF) {
+            return;
+        }
+        final long waitNanos = limiter.tryAcquire(userUuid);
+        if (waitNanos > 0) {
+            final long retryAfterSeconds = (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+            log.info("Rate limit of {} exceeded by user {}, retry after {} s", group, userUuid, retryAfterSeconds);
+            throw new RateLimitExceededException(RATE_001.getCode(), RATE_001.getDefaultMessage(), retryAfterSeconds);
+        }
+    }
+
+    /**
+     * removes the buckets of users that have not sent a request for the idle time
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.idle-eviction-ms:600000}")
+    public void evictIdle() {
+        for (RateLimiter limiter : limiters.values()) {
+            if (limiter == OFF) {
+                continue;
+            }
+            final int evicted = limiter.evictIdle();
+            log.debug("evicted {} idle buckets of rate limit {}, {} left", evicted, limiter.getName(), limiter.size());
+        }
+    }
+
+    private RateLimiter createLimiter(final String group) {
+        final int burst = environment.getProperty("rate-limit.groups." + group + ".burst", Integer.class, defaultBurst);
+        final int perMinute = environment.getProperty("rate-limit.groups." + group + ".per-minute", Integer.class, defaultPerMinute);
+        if (burst <= 0) {
+            log.info("Rate limit of {} is off", group);
+            return OFF;
+        }
+        log.info("Rate limit of {}: bursts of {} requests, {} requests per minute", group, burst, perMinute);
+        return new RateLimiter(group, burst, perMinute, TimeUnit.MILLISECONDS.toNanos(idleEvictionMillis));
+    }
+}
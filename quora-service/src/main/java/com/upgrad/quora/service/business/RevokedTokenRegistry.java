@@ -0,0 +1,78 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.upgrad.quora.service.common.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory deny-list of JWT access tokens that were revoked before they expired.
+ * Tokens are kept by their id until their own expiry, deleted users are kept by uuid for the lifetime of a token,
+ * so the list only ever holds revocations that could still be presented.
+ */
+@Component
+public class RevokedTokenRegistry {
+
+    private static final long TOKEN_LIFETIME_SECONDS = TimeUnit.HOURS.toSeconds(Constants.EXPIRATION_TIME);
+
+    private final Logger log = LoggerFactory.getLogger(RevokedTokenRegistry.class);
+
+    /* token id -> expiry of the token, in epoch seconds */
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    /* user uuid -> time of revocation, in epoch seconds */
+    private final Map<String, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    /** revoke a single token until it expires
+     * @param tokenId
+     * @param expiresAt
+     */
+    public void revokeToken(final String tokenId, final Instant expiresAt) {
+        revokedTokens.put(tokenId, expiresAt.getEpochSecond());
+    }
+
+    /** revoke all tokens of an user issued up to now
+     * @param userUuid
+     * @param revokedAt
+     */
+    public void revokeUser(final String userUuid, final Instant revokedAt) {
+        revokedUsers.merge(userUuid, revokedAt.getEpochSecond(), Math::max);
+    }
+
+    /** check a verified token against the deny-list
+     * @param jwt
+     * @return true if the token or its user has been revoked
+     */
+    public boolean isRevoked(final DecodedJWT jwt) {
+        if (jwt.getId() != null && revokedTokens.containsKey(jwt.getId())) {
+            return true;
+        }
+        final Long userRevokedAt = revokedUsers.get(jwt.getSubject());
+        return userRevokedAt != null && jwt.getIssuedAt().toInstant().getEpochSecond() <= userRevokedAt;
+    }
+
+    /**
+     * @return number of revocations currently held
+     */
+    public int size() {
+        return revokedTokens.size() + revokedUsers.size();
+    }
+
+    /**
+     * removes revocations of tokens that have expired on their own
+     */
+    @Scheduled(fixedDelayString = "${user.session.revocation.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        final long now = Instant.now().getEpochSecond();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt < now);
+        revokedUsers.values().removeIf(revokedAt -> revokedAt + TOKEN_LIFETIME_SECONDS < now);
+        log.debug("revoked token registry holds {} entries after purge", size());
+    }
+}
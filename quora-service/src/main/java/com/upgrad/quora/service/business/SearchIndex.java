@@ -0,0 +1,464 @@
+package com.upgrad.quora.service.business;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the text of questions and answers, ranked with BM25.
+ * Text is split into lower case runs of letters and digits. Every term keeps a positional posting list in document
+ * order, so a query matches any of its words and a part of the query in double quotes only matches as a phrase.
+ * Documents are never changed in place: a new version is appended and the old one is marked deleted, and the posting
+ * lists are compacted once a quarter of the documents are deleted. Searches share a read lock, changes take the write lock.
+ */
+public class SearchIndex {
+
+    public enum Type {QUESTION, ANSWER}
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    /** compaction is not worth it below this number of deleted documents */
+    private static final int MIN_DELETED_TO_COMPACT = 1024;
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /** document by uuid, one map per type */
+    private final List<Map<String, Integer>> documents = Arrays.asList(new HashMap<>(), new HashMap<>());
+
+    private Type[] types = new Type[1024];
+    private String[] uuids = new String[1024];
+    private int[] lengths = new int[1024];
+    private BitSet deleted = new BitSet();
+    private int maxDoc;
+    private int deletedDocs;
+    private long liveLength;
+
+    /** add a document or replace its earlier version
+     * @param type
+     * @param uuid
+     * @param text
+     */
+    public void put(final Type type, final String uuid, final String text) {
+        final Map<String, int[]> terms = positions(text);
+        lock.writeLock().lock();
+        try {
+            if (delete(type, uuid)) {
+                compactIfNeeded();
+            }
+            final int doc = maxDoc++;
+            ensureDocCapacity(maxDoc);
+            types[doc] = type;
+            uuids[doc] = uuid;
+            int length = 0;
+            for (Map.Entry<String, int[]> term : terms.entrySet()) {
+                final int[] termPositions = term.getValue();
+                postings.computeIfAbsent(term.getKey(), key -> new Postings()).add(doc, termPositions, termPositions[0]);
+                length += termPositions[0];
+            }
+            lengths[doc] = length;
+            liveLength += length;
+            documents.get(type.ordinal()).put(uuid, doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** remove a document if it is indexed
+     * @param type
+     * @param uuid
+     */
+    public void remove(final Type type, final String uuid) {
+        lock.writeLock().lock();
+        try {
+            if (delete(type, uuid)) {
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** rank the documents that contain any word of the query, and every phrase of it in double quotes
+     * @param query
+     * @param limit - maximum number of hits
+     * @return hits with the best score first
+     */
+    public List<Hit> search(final String query, final int limit) {
+        final List<String> words = new ArrayList<>();
+        final List<List<String>> phrases = new ArrayList<>();
+        parse(query, words, phrases);
+        if (words.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            return rank(words, phrases, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of documents that can be found
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return maxDoc - deletedDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of distinct terms
+     */
+    public int terms() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return approximate heap size of the index in bytes, not counting the uuid strings shared with their callers
+     */
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) types.length * 4 + (long) uuids.length * 4 + (long) lengths.length * 4 + deleted.size() / 8;
+            for (Map.Entry<String, Postings> term : postings.entrySet()) {
+                // hash map entry, string and postings headers
+                bytes += 32 + 40 + 2L * term.getKey().length() + 48;
+                bytes += term.getValue().capacityBytes();
+            }
+            for (Map<String, Integer> byUuid : documents) {
+                bytes += byUuid.size() * (32L + 16);
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** split a text into the terms it is indexed and searched by
+     * @param text
+     * @return lower case terms in the order they appear
+     */
+    public static List<String> tokenize(final String text) {
+        final List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /** positions of every term of a text, the first element of each array is the number of positions that follow */
+    private static Map<String, int[]> positions(final String text) {
+        final Map<String, int[]> terms = new LinkedHashMap<>();
+        final List<String> tokens = tokenize(text);
+        for (int position = 0; position < tokens.size(); position++) {
+            int[] termPositions = terms.get(tokens.get(position));
+            if (termPositions == null) {
+                termPositions = new int[2];
+            } else if (termPositions[0] + 1 == termPositions.length) {
+                termPositions = Arrays.copyOf(termPositions, termPositions.length * 2);
+            }
+            termPositions[++termPositions[0]] = position;
+            terms.put(tokens.get(position), termPositions);
+        }
+        return terms;
+    }
+
+    private static void parse(final String query, final List<String> words, final List<List<String>> phrases) {
+        if (query == null) {
+            return;
+        }
+        final String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            final List<String> tokens = tokenize(parts[i]);
+            words.addAll(tokens);
+            // odd parts are between quotes, an unbalanced quote leaves the rest of the query as a phrase
+            if (i % 2 == 1 && tokens.size() > 1) {
+                phrases.add(tokens);
+            }
+        }
+    }
+
+    private List<Hit> rank(final List<String> words, final List<List<String>> phrases, final int limit) {
+        final Set<String> terms = new LinkedHashSet<>(words);
+        for (List<String> phrase : phrases) {
+            for (String word : phrase) {
+                if (!postings.containsKey(word)) {
+                    return Collections.emptyList();
+                }
+            }
+        }
+        final int live = Math.max(maxDoc - deletedDocs, 1);
+        final float averageLength = Math.max((float) liveLength / live, 1f);
+        final List<Postings> lists = new ArrayList<>();
+        final List<String> listTerms = new ArrayList<>();
+        final List<Float> idfs = new ArrayList<>();
+        for (String term : terms) {
+            final Postings list = postings.get(term);
+            if (list != null) {
+                lists.add(list);
+                listTerms.add(term);
+                final int df = Math.min(list.size, live);
+                idfs.add((float) Math.log(1 + (live - df + 0.5) / (df + 0.5)));
+            }
+        }
+        if (lists.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final int[] cursors = new int[lists.size()];
+        final PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, Hit.WORST_FIRST);
+        while (true) {
+            int doc = Integer.MAX_VALUE;
+            for (int t = 0; t < lists.size(); t++) {
+                if (cursors[t] < lists.get(t).size) {
+                    doc = Math.min(doc, lists.get(t).docs[cursors[t]]);
+                }
+            }
+            if (doc == Integer.MAX_VALUE) {
+                break;
+            }
+            float score = 0;
+            final float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+            final boolean found = !deleted.get(doc);
+            for (int t = 0; t < lists.size(); t++) {
+                final Postings list = lists.get(t);
+                if (cursors[t] < list.size && list.docs[cursors[t]] == doc) {
+                    if (found) {
+                        final int tf = list.freqs[cursors[t]];
+                        score += idfs.get(t) * tf * (K1 + 1) / (tf + norm);
+                    }
+                    cursors[t]++;
+                }
+            }
+            if (!found || !containsPhrases(doc, phrases, listTerms, lists, cursors)) {
+                continue;
+            }
+            if (best.size() < limit || score > best.peek().score) {
+                best.add(new Hit(types[doc], uuids[doc], score, doc));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        final List<Hit> hits = new ArrayList<>(best);
+        hits.sort(Collections.reverseOrder(Hit.WORST_FIRST));
+        return hits;
+    }
+
+    /** cursors have already moved past the document, so its postings are one entry back */
+    private static boolean containsPhrases(final int doc, final List<List<String>> phrases, final List<String> listTerms,
+                                           final List<Postings> lists, final int[] cursors) {
+        for (List<String> phrase : phrases) {
+            final Postings first = lists.get(listTerms.indexOf(phrase.get(0)));
+            final int firstIndex = cursors[listTerms.indexOf(phrase.get(0))] - 1;
+            if (firstIndex < 0 || first.docs[firstIndex] != doc) {
+                return false;
+            }
+            boolean found = false;
+            for (int p = 0; p < first.freqs[firstIndex] && !found; p++) {
+                final int start = first.positions[first.positionStarts[firstIndex] + p];
+                found = true;
+                for (int w = 1; w < phrase.size() && found; w++) {
+                    final int t = listTerms.indexOf(phrase.get(w));
+                    final int index = cursors[t] - 1;
+                    found = index >= 0 && lists.get(t).docs[index] == doc && lists.get(t).hasPosition(index, start + w);
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean delete(final Type type, final String uuid) {
+        final Integer doc = documents.get(type.ordinal()).remove(uuid);
+        if (doc == null) {
+            return false;
+        }
+        deleted.set(doc);
+        deletedDocs++;
+        liveLength -= lengths[doc];
+        return true;
+    }
+
+    /** drop deleted documents from the posting lists and renumber the remaining ones in the same order */
+    private void compactIfNeeded() {
+        if (deletedDocs < MIN_DELETED_TO_COMPACT || deletedDocs * 4 < maxDoc) {
+            return;
+        }
+        final int[] renumbered = new int[maxDoc];
+        int live = 0;
+        for (int doc = 0; doc < maxDoc; doc++) {
+            if (deleted.get(doc)) {
+                renumbered[doc] = -1;
+            } else {
+                renumbered[doc] = live;
+                types[live] = types[doc];
+                uuids[live] = uuids[doc];
+                lengths[live] = lengths[doc];
+                live++;
+            }
+        }
+        Arrays.fill(uuids, live, maxDoc, null);
+        final Iterator<Postings> lists = postings.values().iterator();
+        while (lists.hasNext()) {
+            final Postings list = lists.next();
+            list.retain(renumbered);
+            if (list.size == 0) {
+                lists.remove();
+            }
+        }
+        for (Map<String, Integer> byUuid : documents) {
+            byUuid.replaceAll((uuid, doc) -> renumbered[doc]);
+        }
+        maxDoc = live;
+        deletedDocs = 0;
+        deleted = new BitSet();
+    }
+
+    private void ensureDocCapacity(final int capacity) {
+        if (capacity > uuids.length) {
+            final int grown = Math.max(capacity, uuids.length * 2);
+            types = Arrays.copyOf(types, grown);
+            uuids = Arrays.copyOf(uuids, grown);
+            lengths = Arrays.copyOf(lengths, grown);
+        }
+    }
+
+    /**
+     * Documents containing a term in increasing order, with the positions of the term in each of them
+     */
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private int[] freqs = new int[2];
+        private int[] positionStarts = new int[2];
+        private int[] positions = new int[2];
+        private int size;
+        private int positionCount;
+
+        /** @param termPositions - positions from index 1 to count */
+        private void add(final int doc, final int[] termPositions, final int count) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+                positionStarts = Arrays.copyOf(positionStarts, size * 2);
+            }
+            if (positionCount + count > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positionCount + count, positions.length * 2));
+            }
+            docs[size] = doc;
+            freqs[size] = count;
+            positionStarts[size] = positionCount;
+            System.arraycopy(termPositions, 1, positions, positionCount, count);
+            positionCount += count;
+            size++;
+        }
+
+        private boolean hasPosition(final int index, final int position) {
+            return Arrays.binarySearch(positions, positionStarts[index], positionStarts[index] + freqs[index], position) >= 0;
+        }
+
+        private void retain(final int[] renumbered) {
+            int kept = 0;
+            int keptPositions = 0;
+            for (int i = 0; i < size; i++) {
+                final int doc = renumbered[docs[i]];
+                if (doc < 0) {
+                    continue;
+                }
+                System.arraycopy(positions, positionStarts[i], positions, keptPositions, freqs[i]);
+                docs[kept] = doc;
+                freqs[kept] = freqs[i];
+                positionStarts[kept] = keptPositions;
+                keptPositions += freqs[i];
+                kept++;
+            }
+            size = kept;
+            positionCount = keptPositions;
+            if (size < docs.length / 4) {
+                docs = Arrays.copyOf(docs, Math.max(size, 2));
+                freqs = Arrays.copyOf(freqs, Math.max(size, 2));
+                positionStarts = Arrays.copyOf(positionStarts, Math.max(size, 2));
+                positions = Arrays.copyOf(positions, Math.max(positionCount, 2));
+            }
+        }
+
+        private long capacityBytes() {
+            return 16L * 4 + 4L * (docs.length + freqs.length + positionStarts.length + positions.length);
+        }
+    }
+
+    /**
+     * A document that matches a query with its score
+     */
+    public static final class Hit {
+
+        /** lowest score first, and among equal scores the document added first */
+        private static final Comparator<Hit> WORST_FIRST =
+                Comparator.<Hit>comparingDouble(hit -> hit.score).thenComparingInt(hit -> hit.doc);
+
+        private final Type type;
+        private final String uuid;
+        private final float score;
+        private final int doc;
+
+        private Hit(final Type type, final String uuid, final float score, final int doc) {
+            this.type = type;
+            this.uuid = uuid;
+            this.score = score;
+            this.doc = doc;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getUuid() {
+            return uuid;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+}
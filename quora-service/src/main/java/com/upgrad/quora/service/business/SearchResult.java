@@ -0,0 +1,42 @@
+package com.upgrad.quora.service.business;
+
+/**
+ * A question or answer found by a search, with its current text and its BM25 score.
+ * The question uuid of a question is its own uuid.
+ */
+public final class SearchResult {
+
+    private final SearchIndex.Type type;
+    private final String uuid;
+    private final String questionUuid;
+    private final String content;
+    private final float score;
+
+    public SearchResult(final SearchIndex.Type type, final String uuid, final String questionUuid, final String content, final float score) {
+        this.type = type;
+        this.uuid = uuid;
+        this.questionUuid = questionUuid;
+        this.content = content;
+        this.score = score;
+    }
+
+    public SearchIndex.Type getType() {
+        return type;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getQuestionUuid() {
+        return questionUuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
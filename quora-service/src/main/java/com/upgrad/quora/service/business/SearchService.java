@@ -0,0 +1,228 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
+import com.upgrad.quora.service.exception.InvalidSearchException;
+import com.upgrad.quora.service.projection.AnswerText;
+import com.upgrad.quora.service.projection.QuestionSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.upgrad.quora.service.common.GenericErrorCode.*;
+
+/**
+ * Full-text search over questions and answers with a {@link SearchIndex} held in memory.
+ * The index is built from the tables when the application context is started, before requests are served, and the
+ * create, edit and delete paths of questions and answers, the bulk import and the deletion of a user update it once
+ * their transaction has committed. The answers of a deleted question go with it by a cascade and are not reported to
+ * the index, the hits of a search are read back from the database and the ones that no longer exist are dropped from it.
+ */
+@Service
+public class SearchService {
+
+    /** searches run again at most once after dropping hits that no longer exist */
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final Logger log = LoggerFactory.getLogger(SearchService.class);
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private AnswerDao answerDao;
+
+    @Value("${search.page.default-limit:10}")
+    private int defaultLimit;
+
+    @Value("${search.page.max-limit:50}")
+    private int maxLimit;
+
+    @Value("${export.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    private final SearchIndex index = new SearchIndex();
+
+    private final AtomicBoolean built = new AtomicBoolean();
+
+    private final TransactionTemplate readOnly;
+
+    public SearchService(final PlatformTransactionManager transactionManager) {
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+    }
+
+    /**
+     * index every question and answer by streaming both tables
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void buildIndex() {
+        if (!built.compareAndSet(false, true)) {
+            return;
+        }
+        final long startedAt = System.nanoTime();
+        readOnly.execute(status -> {
+            questionDao.scrollQuestions(streamFetchSize, question -> index.put(SearchIndex.Type.QUESTION, question.getUuid(), question.getContent()));
+            answerDao.scrollAnswerTexts(streamFetchSize, answer -> index.put(SearchIndex.Type.ANSWER, answer.getUuid(), answer.getAnswer()));
+            return null;
+        });
+        log.info("Indexed {} questions and answers with {} terms in {} ms, about {} KB", index.size(), index.terms(),
+                (System.nanoTime() - startedAt) / 1000000L, index.estimatedBytes() / 1024);
+    }
+
+    /** questions and answers that match a query, best match first
+     * @param query - words to search for, words in double quotes have to appear as a phrase
+     * @param limit - maximum number of results, null for the default
+     * @return results with the current text of every question and answer
+     * @throws InvalidSearchException - thrown if the query contains no word
+     * @throws InvalidPageRequestException - thrown if the limit is not positive
+     */
+    @Transactional(readOnly = true)
+    public List<SearchResult> search(final String query, final Integer limit) throws InvalidSearchException, InvalidPageRequestException {
+        log.debug("****** Starting search ******");
+        if (SearchIndex.tokenize(query).isEmpty()) {
+            log.info("Search query without words: {}", query);
+            throw new InvalidSearchException(SRCH_001.getCode(), SRCH_001.getDefaultMessage());
+        }
+        if (limit != null && limit < 1) {
+            log.info("Invalid search limit: {}", limit);
+            throw new InvalidPageRequestException(PAGE_002.getCode(), PAGE_002.getDefaultMessage());
+        }
+        final int size = limit == null ? defaultLimit : Math.min(limit, maxLimit);
+        List<SearchResult> results = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            final List<SearchIndex.Hit> hits = index.search(query, size);
+            results = resolve(hits);
+            if (results.size() == hits.size() || hits.size() < size) {
+                break;
+            }
+        }
+        log.debug("****** Ending search ******");
+        return results;
+    }
+
+    /** index a created or edited question once the transaction commits
+     * @param question
+     */
+    public void questionSaved(final QuestionEntity question) {
+        final String uuid = question.getUuid();
+        final String content = question.getContent();
+        afterCommit(() -> index.put(SearchIndex.Type.QUESTION, uuid, content));
+    }
+
+    /** remove a deleted question from the index once the transaction commits
+     * @param uuid
+     */
+    public void questionDeleted(final String uuid) {
+        afterCommit(() -> index.remove(SearchIndex.Type.QUESTION, uuid));
+    }
+
+    /** index a created or edited answer once the transaction commits
+     * @param answer
+     */
+    public void answerSaved(final AnswerEntity answer) {
+        final String uuid = answer.getUuid();
+        final String text = answer.getAnswer();
+        afterCommit(() -> index.put(SearchIndex.Type.ANSWER, uuid, text));
+    }
+
+    /** remove a deleted answer from the index once the transaction commits
+     * @param uuid
+     */
+    public void answerDeleted(final String uuid) {
+        afterCommit(() -> index.remove(SearchIndex.Type.ANSWER, uuid));
+    }
+
+    /** index imported questions once the transaction commits
+     * @param contentByUuid - content of each question by its uuid
+     */
+    public void questionsImported(final Map<String, String> contentByUuid) {
+        afterCommit(() -> contentByUuid.forEach((uuid, content) -> index.put(SearchIndex.Type.QUESTION, uuid, content)));
+    }
+
+    /** index imported answers once the transaction commits
+     * @param textByUuid - text of each answer by its uuid
+     */
+    public void answersImported(final Map<String, String> textByUuid) {
+        afterCommit(() -> textByUuid.forEach((uuid, text) -> index.put(SearchIndex.Type.ANSWER, uuid, text)));
+    }
+
+    /** remove the questions and answers deleted with a user from the index once the transaction commits, they are
+     * read before the user is deleted
+     * @param userId
+     */
+    public void userDeleted(final Integer userId) {
+        final List<String> questionUuids = questionDao.getQuestionUuidsByUser(userId);
+        final List<String> answerUuids = answerDao.getAnswerUuidsByUser(userId);
+        afterCommit(() -> {
+            questionUuids.forEach(uuid -> index.remove(SearchIndex.Type.QUESTION, uuid));
+            answerUuids.forEach(uuid -> index.remove(SearchIndex.Type.ANSWER, uuid));
+        });
+    }
+
+    /** read the hits back with one query for the questions and one for the answers, and drop the ones that are gone */
+    private List<SearchResult> resolve(final List<SearchIndex.Hit> hits) {
+        final List<String> questionUuids = new ArrayList<>();
+        final List<String> answerUuids = new ArrayList<>();
+        for (SearchIndex.Hit hit : hits) {
+            (hit.getType() == SearchIndex.Type.QUESTION ? questionUuids : answerUuids).add(hit.getUuid());
+        }
+        final Map<String, QuestionSummary> questions = new HashMap<>();
+        if (!questionUuids.isEmpty()) {
+            for (QuestionSummary question : questionDao.getQuestionsByUuids(questionUuids)) {
+                questions.put(question.getUuid(), question);
+            }
+        }
+        final Map<String, AnswerText> answers = new HashMap<>();
+        if (!answerUuids.isEmpty()) {
+            for (AnswerText answer : answerDao.getAnswerTexts(answerUuids)) {
+                answers.put(answer.getUuid(), answer);
+            }
+        }
+        final List<SearchResult> results = new ArrayList<>(hits.size());
+        for (SearchIndex.Hit hit : hits) {
+            if (hit.getType() == SearchIndex.Type.QUESTION && questions.containsKey(hit.getUuid())) {
+                final QuestionSummary question = questions.get(hit.getUuid());
+                results.add(new SearchResult(hit.getType(), question.getUuid(), question.getUuid(), question.getContent(), hit.getScore()));
+            } else if (hit.getType() == SearchIndex.Type.ANSWER && answers.containsKey(hit.getUuid())) {
+                final AnswerText answer = answers.get(hit.getUuid());
+                results.add(new SearchResult(hit.getType(), answer.getUuid(), answer.getQuestionUuid(), answer.getAnswer(), hit.getScore()));
+            } else {
+                log.debug("Dropping deleted {} {} from the search index", hit.getType(), hit.getUuid());
+                index.remove(hit.getType(), hit.getUuid());
+            }
+        }
+        return results;
+    }
+
+    private static void afterCommit(final Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
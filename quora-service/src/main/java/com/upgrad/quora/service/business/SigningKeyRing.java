@@ -0,0 +1,197 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.SignatureGenerationException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.upgrad.quora.service.common.Constants;
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ring of HMAC512 keys used to sign and verify access tokens, selected by the "kid" header of the token.
+ * A new key is taken into use every rotation interval. Keys are derived from the server secret and the number of the
+ * rotation period, so every instance sharing the secret signs and verifies with the same keys without coordination.
+ * Keys stay in the ring as long as tokens signed with them can still be valid, the key of the next period is added
+ * ahead of time to tolerate clock skew between instances.
+ */
+@Component
+public class SigningKeyRing {
+
+    private static final String KEY_DERIVATION_ALGORITHM = "HmacSHA512";
+    private static final String KEY_DERIVATION_LABEL = "quora-access-token-key-";
+
+    private final Logger log = LoggerFactory.getLogger(SigningKeyRing.class);
+
+    private final byte[] secret;
+
+    private final long rotationIntervalMillis;
+
+    private final Clock clock;
+
+    private final Algorithm verificationAlgorithm = new KeyRingAlgorithm();
+
+    private volatile Keys keys;
+
+    @Autowired
+    public SigningKeyRing(@Value("${user.session.jwt.secret:}") final String secret,
+                          @Value("${user.session.jwt.rotation-interval-seconds:86400}") final long rotationIntervalSeconds) {
+        this(secret, TimeUnit.SECONDS.toMillis(rotationIntervalSeconds), Clock.systemUTC());
+    }
+
+    public SigningKeyRing(final String secret, final long rotationIntervalMillis, final Clock clock) {
+        this.secret = secret.isEmpty() ? randomSecret() : secret.getBytes(StandardCharsets.UTF_8);
+        this.rotationIntervalMillis = rotationIntervalMillis;
+        this.clock = clock;
+        rotate();
+    }
+
+    /** sign a token with the current key and name that key in the "kid" header
+     * @param token - token to be signed
+     * @return signed token
+     */
+    public String sign(final JWTCreator.Builder token) {
+        final Keys current = keys;
+        return token.withKeyId(current.currentKeyId).sign(current.byId.get(current.currentKeyId));
+    }
+
+    /**
+     * @return algorithm that verifies a token with the key named by its "kid" header
+     */
+    public Algorithm getVerificationAlgorithm() {
+        return verificationAlgorithm;
+    }
+
+    /**
+     * takes the key of the current rotation period into use and drops keys that can no longer have valid tokens
+     */
+    @Scheduled(fixedDelayString = "${user.session.jwt.rotation-check-ms:60000}")
+    public void rotate() {
+        final long period = clock.millis() / rotationIntervalMillis;
+        final Keys current = keys;
+        if (current != null && current.period == period) {
+            return;
+        }
+        final long retainedPeriods = TimeUnit.HOURS.toMillis(Constants.EXPIRATION_TIME) / rotationIntervalMillis + 1;
+        final Map<String, Algorithm> byId = new HashMap<>();
+        for (long p = period - retainedPeriods; p <= period + 1; p++) {
+            final String keyId = Long.toString(p);
+            final Algorithm algorithm = current != null ? current.byId.get(keyId) : null;
+            byId.put(keyId, algorithm != null ? algorithm : new HmacAlgorithm(deriveKey(p)));
+        }
+        keys = new Keys(period, Long.toString(period), Collections.unmodifiableMap(byId));
+        log.info("access token signing key rotated, current key id: {}, keys in ring: {}", keys.currentKeyId, byId.size());
+    }
+
+    private byte[] deriveKey(final long period) {
+        try {
+            final Mac mac = Mac.getInstance(KEY_DERIVATION_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, KEY_DERIVATION_ALGORITHM));
+            return mac.doFinal((KEY_DERIVATION_LABEL + period).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+    }
+
+    private byte[] randomSecret() {
+        log.warn("user.session.jwt.secret is not configured, using a random secret for this instance");
+        final byte[] random = new byte[64];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+
+    /* immutable snapshot of the ring, replaced as a whole on rotation */
+    private static final class Keys {
+        private final long period;
+        private final String currentKeyId;
+        private final Map<String, Algorithm> byId;
+
+        private Keys(final long period, final String currentKeyId, final Map<String, Algorithm> byId) {
+            this.period = period;
+            this.currentKeyId = currentKeyId;
+            this.byId = byId;
+        }
+    }
+
+    /*
+     * HMAC512 with one Mac per thread, the algorithms of java-jwt look up and initialize a new Mac for every token.
+     */
+    private static final class HmacAlgorithm extends Algorithm {
+
+        private final ThreadLocal<Mac> mac;
+
+        private HmacAlgorithm(final byte[] key) {
+            super("HS512", KEY_DERIVATION_ALGORITHM);
+            mac = ThreadLocal.withInitial(() -> {
+                try {
+                    final Mac instance = Mac.getInstance(KEY_DERIVATION_ALGORITHM);
+                    instance.init(new SecretKeySpec(key, KEY_DERIVATION_ALGORITHM));
+                    return instance;
+                } catch (GeneralSecurityException e) {
+                    throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+                }
+            });
+        }
+
+        @Override
+        public void verify(final DecodedJWT jwt) throws SignatureVerificationException {
+            final byte[] content = (jwt.getHeader() + "." + jwt.getPayload()).getBytes(StandardCharsets.UTF_8);
+            final byte[] signature;
+            try {
+                signature = Base64.getUrlDecoder().decode(jwt.getSignature());
+            } catch (IllegalArgumentException e) {
+                throw new SignatureVerificationException(this, e);
+            }
+            if (!MessageDigest.isEqual(mac.get().doFinal(content), signature)) {
+                throw new SignatureVerificationException(this);
+            }
+        }
+
+        @Override
+        public byte[] sign(final byte[] contentBytes) throws SignatureGenerationException {
+            return mac.get().doFinal(contentBytes);
+        }
+    }
+
+    /* verification-only algorithm that delegates to the key named by the token, so one verifier serves the whole ring */
+    private final class KeyRingAlgorithm extends Algorithm {
+
+        private KeyRingAlgorithm() {
+            super("HS512", "HmacSHA512");
+        }
+
+        @Override
+        public void verify(final DecodedJWT jwt) throws SignatureVerificationException {
+            final Algorithm algorithm = jwt.getKeyId() == null ? null : keys.byId.get(jwt.getKeyId());
+            if (algorithm == null) {
+                throw new SignatureVerificationException(this);
+            }
+            algorithm.verify(jwt);
+        }
+
+        @Override
+        public byte[] sign(final byte[] contentBytes) throws SignatureGenerationException {
+            throw new SignatureGenerationException(this, new UnsupportedOperationException("the key ring only verifies"));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.UserAuthHistoryDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Map;
+
+/**
+ * Keeps the sessions stored in USER_AUTH bounded. The partitions of the coming weeks are created ahead of the sessions
+ * expiring in them, and a week partition is dropped once its last session has been expired for retention-hours.
+ * Signed out sessions, and expired sessions that landed in the default partition, are purged in batches of
+ * purge-batch-size rows, each batch in its own transaction. Sessions past the retention are gone, so their tokens are
+ * rejected as unknown (ATHR-001) rather than as signed out (ATHR-002).
+ * Every run publishes the number of live and dead sessions and of week partitions to {@link UserSessionMetrics}.
+ */
+@Component
+public class UserAuthHistoryJob {
+
+    private final Logger log = LoggerFactory.getLogger(UserAuthHistoryJob.class);
+
+    @Autowired
+    private UserAuthHistoryDao userAuthHistoryDao;
+
+    @Autowired
+    private UserSessionMetrics userSessionMetrics;
+
+    @Value("${user.session.history.weeks-ahead:4}")
+    private int weeksAhead;
+
+    @Value("${user.session.history.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${user.session.history.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public UserAuthHistoryJob(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * creates the missing week partitions up to weeks-ahead weeks from now and drops the expired ones,
+     * unless another instance is doing so
+     * @return number of dropped partitions
+     */
+    @Scheduled(fixedDelayString = "${user.session.history.interval-ms:3600000}")
+    public int maintainPartitions() {
+        log.debug("****** Starting maintainPartitions ******");
+        final LocalDate thisWeek = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        final LocalDate expiredBefore = LocalDateTime.now().minusHours(retentionHours).toLocalDate();
+        final Integer dropped = transactionTemplate.execute(status -> {
+            if (!userAuthHistoryDao.tryLockPartitions()) {
+                log.info("The user auth partitions are maintained by another instance");
+                return 0;
+            }
+            final Map<LocalDate, String> weeks = userAuthHistoryDao.getWeekPartitions();
+            for (int week = 0; week <= weeksAhead; week++) {
+                if (!weeks.containsKey(thisWeek.plusWeeks(week))) {
+                    userAuthHistoryDao.createWeekPartition(thisWeek.plusWeeks(week));
+                }
+            }
+            int count = 0;
+            for (Map.Entry<LocalDate, String> week : weeks.entrySet()) {
+                if (week.getKey().plusWeeks(1).isAfter(expiredBefore)) {
+                    break;
+                }
+                userAuthHistoryDao.dropPartition(week.getValue());
+                count++;
+            }
+            return count;
+        });
+        refreshMetrics();
+        log.info("Maintained the user auth partitions, dropped {} expired weeks", dropped);
+        log.debug("****** Ending maintainPartitions ******");
+        return dropped;
+    }
+
+    /**
+     * deletes the sessions signed out before the retention and the expired ones left in the default partition
+     * @return number of deleted sessions
+     */
+    @Scheduled(initialDelayString = "${user.session.history.interval-ms:3600000}",
+            fixedDelayString = "${user.session.history.interval-ms:3600000}")
+    public int purgeSessions() {
+        log.debug("****** Starting purgeSessions ******");
+        int purged = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> userAuthHistoryDao.purgeSignedOut(retentionHours, purgeBatchSize));
+            purged += batch;
+        } while (batch == purgeBatchSize);
+        do {
+            batch = transactionTemplate.execute(status -> userAuthHistoryDao.purgeExpiredDefault(retentionHours, purgeBatchSize));
+            purged += batch;
+        } while (batch == purgeBatchSize);
+        refreshMetrics();
+        log.info("Purged {} signed out and expired sessions", purged);
+        log.debug("****** Ending purgeSessions ******");
+        return purged;
+    }
+
+    private void refreshMetrics() {
+        userSessionMetrics.update(userAuthHistoryDao.countSessions(), userAuthHistoryDao.getWeekPartitions().size());
+    }
+}
@@ -1,24 +1,40 @@
 package com.upgrad.quora.service.business;
 
 import com.upgrad.quora.service.common.Constants;
+import com.upgrad.quora.service.dao.OutboxDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.UserAuthTokenEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthenticationFailedException;
+import com.upgrad.quora.service.exception.ServiceBusyException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
 import com.upgrad.quora.service.exception.SignUpRestrictedException;
+import com.upgrad.quora.service.projection.OutboxEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.ZonedDateTime;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.upgrad.quora.service.common.GenericErrorCode.*;
 
+/**
+ * Sign-up, sign-in and sign-out. Sign-up and sign-in return futures, their password hashes run on the
+ * {@link PasswordHashingExecutor} and their database work on the {@link AuthRequestExecutor} in short transactions
+ * around them, so the hashing workers never hold a connection or a row lock and no request thread waits on either.
+ */
 @Service
 public class UserBussinessService {
     private final Logger log = LoggerFactory.getLogger(UserBussinessService.class);
@@ -29,35 +45,83 @@ public class UserBussinessService {
     @Autowired
     private PasswordCryptographyProvider cryptographyProvider;
 
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private AuthRequestExecutor authRequestExecutor;
+
+    @Autowired
+    private OutboxDao outboxDao;
+
+    @Autowired
+    private UserSessionService userSessionService;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    /* live sessions an user may hold, the oldest ones are signed out beyond it, 0 for no limit */
+    @Value("${user.session.max-active:10}")
+    private int maxActiveSessions;
+
+    /* sign-in returns the latest live session of the user instead of creating a new one */
+    @Value("${user.session.reuse-on-signin:false}")
+    private boolean reuseOnSignin;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public UserBussinessService(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     /**
-     * Business logic to create an user based on sign-up request details
+     * Business logic to create an user based on sign-up request details, the user name and email address are checked
+     * before the password is hashed and enforced by their unique keys when the user is inserted. An user that signed up
+     * with the same name or address in the meantime fails the insert, it is then reported as by the checks. The checks
+     * and the insert run on the {@link AuthRequestExecutor}, the hash on the {@link PasswordHashingExecutor}
      *
      * @param userEntity
-     * @return
-     * @throws SignUpRestrictedException
+     * @return future completed with the created user, or exceptionally with SignUpRestrictedException, or with
+     * ServiceBusyException if one of the pools is full
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserEntity signup(final UserEntity userEntity) throws SignUpRestrictedException {
+    public CompletableFuture<UserEntity> signup(final UserEntity userEntity) {
         log.debug("****** Starting signup ******");
-        validateUserDetails(userEntity);
-        String[] encryptedText = cryptographyProvider.encrypt(userEntity.getPassword());
-        userEntity.setSalt(encryptedText[0]);
-        userEntity.setPassword(encryptedText[1]);
-        UserEntity user = userDao.createUser(userEntity);
-        log.debug("****** Ending signup ******");
-        return user;
-
+        final String password = userEntity.getPassword();
+        return authRequestExecutor.submitAsync(() -> {
+            validateUserDetails(userEntity);
+            return password;
+        }).thenCompose(typedPassword -> passwordHashingExecutor.submitAsync(() -> cryptographyProvider.encrypt(typedPassword)))
+                .thenCompose(encryptedText -> authRequestExecutor.submitAsync(() -> {
+                    userEntity.setSalt(encryptedText[0]);
+                    userEntity.setPassword(encryptedText[1]);
+                    final UserEntity user;
+                    try {
+                        user = transactionTemplate.execute(status -> {
+                            final UserEntity created = userDao.createUser(userEntity);
+                            outboxDao.usersChanged(OutboxEvent.Type.CREATED, Collections.singletonList(created.getId()));
+                            return created;
+                        });
+                    } catch (DataIntegrityViolationException e) {
+                        log.info("Unique key violated by the signup of username {}, checking it again", userEntity.getUserName());
+                        validateUserDetails(userEntity);
+                        throw e;
+                    }
+                    log.debug("****** Ending signup ******");
+                    return user;
+                }));
     }
 
     /**
-     * Business logic for signing-in an user based on authentication
+     * Business logic for signing-in an user based on authentication. The user is read on the
+     * {@link AuthRequestExecutor}, the password is checked against it on the {@link PasswordHashingExecutor}, the
+     * session is then created back on the {@link AuthRequestExecutor} in a transaction that locks the user
      *
      * @param authorization
-     * @return
-     * @throws AuthenticationFailedException
+     * @return future completed with the session, or exceptionally with AuthenticationFailedException, or with
+     * ServiceBusyException if one of the pools is full
+     * @throws AuthenticationFailedException - thrown if the authorization header is malformed
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserAuthTokenEntity authenticate(final String authorization) throws AuthenticationFailedException {
+    public CompletableFuture<UserAuthTokenEntity> authenticate(final String authorization) throws AuthenticationFailedException {
         log.debug("****** Starting authenticate ******");
         String username = "";
         String password = "";
@@ -72,38 +136,114 @@ public class UserBussinessService {
             throw new AuthenticationFailedException(ATH_001.getCode(), ATH_001.getDefaultMessage());
 
         }
-        UserEntity userEntity = userDao.getUserByUserName(username);
-        if (userEntity == null) {
-            log.info("This username {} does not exist",username);
-            throw new AuthenticationFailedException(ATH_001.getCode(), ATH_001.getDefaultMessage());
+        final String userName = username;
+        final String typedPassword = password;
+        return authRequestExecutor.submitAsync(() -> {
+            UserEntity userEntity = userDao.getUserByUserName(userName);
+            if (userEntity == null) {
+                log.info("This username {} does not exist", userName);
+                throw new AuthenticationFailedException(ATH_001.getCode(), ATH_001.getDefaultMessage());
+            }
+            return userEntity;
+        }).thenCompose(userEntity -> checkPassword(userName, typedPassword, userEntity.getSalt(), userEntity.getPassword())
+                .thenCompose(rehashed -> authRequestExecutor.submitAsync(() -> {
+                    final UserAuthTokenEntity userAuthToken = transactionTemplate.execute(status -> startSession(status, userName, userEntity.getPassword(), rehashed));
+                    if (userAuthToken == null) {
+                        throw new AuthenticationFailedException(ATH_001.getCode(), ATH_001.getDefaultMessage());
+                    }
+                    log.debug("****** Ending authenticate ******");
+                    return userAuthToken;
+                })));
+    }
+
+    /**
+     * to check the typed password against the stored hash on the hashing pool, and to hash it again with the current
+     * hashing settings when the stored hash is an older one
+     *
+     * @param userName
+     * @param password
+     * @param salt
+     * @param storedHash
+     * @return future completed with the upgraded salt and hash, or null to keep the stored ones, or exceptionally with
+     * AuthenticationFailedException if the password does not match
+     */
+    private CompletableFuture<String[]> checkPassword(final String userName, final String password, final String salt, final String storedHash) {
+        return passwordHashingExecutor.submitAsync(() -> {
+            if (!cryptographyProvider.matches(password, salt, storedHash)) {
+                log.info("Invalid password for userName: {}", userName);
+                throw new AuthenticationFailedException(ATH_002.getCode(), ATH_002.getDefaultMessage());
+            }
+            log.info("Password validation successful for userName: {}", userName);
+            return cryptographyProvider.needsRehash(storedHash);
+        }).thenCompose(needsRehash -> needsRehash ? rehash(userName, password) : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * to reuse or create the session of an user whose password has been checked, with the user locked so that the
+     * sessions beyond the limit are counted once. The upgraded hash is stored only if the stored one is still the
+     * one the password was checked against
+     *
+     * @param status - rolled back if the user has been deleted
+     * @param userName
+     * @param checkedHash - stored hash the password was checked against
+     * @param rehashed - salt and hash with the current settings, null to keep the stored ones
+     * @return session, null if the user has been deleted since its password was checked
+     */
+    private UserAuthTokenEntity startSession(final TransactionStatus status, final String userName, final String checkedHash, final String[] rehashed) {
+        final UserEntity userEntity = userDao.getUserByUserName(userName);
+        if (userEntity == null || !userDao.lockUser(userEntity)) {
+            log.info("This username {} has been deleted during signin", userName);
+            status.setRollbackOnly();
+            return null;
         }
-        UserAuthTokenEntity userAuthToken=null;
-        final String encryptedPassword = cryptographyProvider.encrypt(password, userEntity.getSalt());
-        if (encryptedPassword.equals(userEntity.getPassword())) {
-            log.info("Password validation successful for userName: {}",username);
-             userAuthToken = createUserAuthToken(userEntity, encryptedPassword);
+        if (rehashed != null && checkedHash.equals(userEntity.getPassword())) {
+            userEntity.setSalt(rehashed[0]);
+            userEntity.setPassword(rehashed[1]);
+            userDao.updateUser(userEntity);
+            log.info("Password hash upgraded for userName {}", userName);
+        }
+        UserAuthTokenEntity userAuthToken = null;
+        if (reuseOnSignin) {
+            userAuthToken = userDao.getLatestLiveAuthToken(userEntity);
+        }
+        if (userAuthToken == null) {
+            userAuthToken = createUserAuthToken(userEntity);
+            revokeSessionsBeyondLimit(userEntity);
         } else {
-            log.info("Invalid password for userName: {}",username);
-            throw new AuthenticationFailedException(ATH_002.getCode(), ATH_002.getDefaultMessage());
+            log.info("Reusing the live session of userName: {}", userName);
         }
-        log.debug("****** Ending authenticate ******");
         return userAuthToken;
     }
 
+    /**
+     * to hash the password again with the current hashing settings after a successful login, before the user is
+     * locked. The upgrade is skipped while the hashing pool is full, it is done again on a later login
+     *
+     * @param userName
+     * @param password
+     * @return future completed with salt and hash, null if the pool is full
+     */
+    private CompletableFuture<String[]> rehash(final String userName, final String password) {
+        try {
+            return passwordHashingExecutor.submit(() -> cryptographyProvider.encrypt(password));
+        } catch (ServiceBusyException e) {
+            log.info("Hashing pool is full, password hash of userName {} is upgraded later", userName);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
     /**
      * to create an user auth-token
      *
      * @param userEntity
-     * @param secret
      * @return
      */
-    private UserAuthTokenEntity createUserAuthToken(UserEntity userEntity, String secret) {
-        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(secret);
+    private UserAuthTokenEntity createUserAuthToken(UserEntity userEntity) {
         UserAuthTokenEntity userAuthToken = new UserAuthTokenEntity();
         userAuthToken.setUser(userEntity);
         final ZonedDateTime now = ZonedDateTime.now();
         final ZonedDateTime expiresAt = now.plusHours(Constants.EXPIRATION_TIME);
-        userAuthToken.setAccessToken(jwtTokenProvider.generateToken(userEntity.getUuid(), now, expiresAt));
+        userAuthToken.setAccessToken(jwtTokenProvider.generateToken(userEntity.getUuid(), userEntity.getId(), userEntity.getRole(), now, expiresAt));
         userAuthToken.setLoginAt(now);
         userAuthToken.setExpiresAt(expiresAt);
         userAuthToken.setUuid(userEntity.getUuid());
@@ -112,6 +252,24 @@ public class UserBussinessService {
         return userAuthToken;
     }
 
+    /**
+     * to sign out the oldest live sessions of an user once it holds more than allowed, the new session included
+     *
+     * @param userEntity
+     */
+    private void revokeSessionsBeyondLimit(final UserEntity userEntity) {
+        if (maxActiveSessions <= 0) {
+            return;
+        }
+        final List<String> revoked = userDao.revokeOldestAuthTokens(userEntity, maxActiveSessions);
+        for (String accessToken : revoked) {
+            userSessionService.signedOut(accessToken);
+        }
+        if (!revoked.isEmpty()) {
+            log.info("Signed out {} sessions of userName {} beyond the limit of {}", revoked.size(), userEntity.getUserName(), maxActiveSessions);
+        }
+    }
+
     /**
      * Business logic to logout an already signed in user
      *
@@ -129,6 +287,7 @@ public class UserBussinessService {
         }
         userAuthToken.setLogoutAt(ZonedDateTime.now());
         userAuthToken = userDao.updateAuthToken(userAuthToken);
+        userSessionService.signedOut(authorization);
 
         return userAuthToken.getUser();
     }
@@ -0,0 +1,67 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.entity.UserAuthTokenEntity;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Immutable snapshot of the state of a user auth-token that is needed to authenticate a request.
+ * Unlike {@link UserAuthTokenEntity} it is not attached to any persistence context, so it can be shared between requests.
+ */
+public final class UserSession {
+
+    private final Integer userId;
+    private final String userUuid;
+    private final String role;
+    private final ZonedDateTime expiresAt;
+    private final ZonedDateTime logoutAt;
+
+    public UserSession(final Integer userId, final String userUuid, final String role,
+                       final ZonedDateTime expiresAt, final ZonedDateTime logoutAt) {
+        this.userId = userId;
+        this.userUuid = userUuid;
+        this.role = role;
+        this.expiresAt = expiresAt;
+        this.logoutAt = logoutAt;
+    }
+
+    /** build a session snapshot from the user auth-token entity
+     * @param userAuthTokenEntity
+     * @return session snapshot or null if the entity is null
+     */
+    public static UserSession of(final UserAuthTokenEntity userAuthTokenEntity) {
+        if (userAuthTokenEntity == null) {
+            return null;
+        }
+        return new UserSession(userAuthTokenEntity.getUser().getId(), userAuthTokenEntity.getUser().getUuid(),
+                userAuthTokenEntity.getUser().getRole(), userAuthTokenEntity.getExpiresAt(), userAuthTokenEntity.getLogoutAt());
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public String getUserUuid() {
+        return userUuid;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public ZonedDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public ZonedDateTime getLogoutAt() {
+        return logoutAt;
+    }
+
+    /**
+     * @param userId
+     * @return true if this session belongs to the user with the given id
+     */
+    public boolean isOwner(final Integer userId) {
+        return this.userId != null && this.userId.equals(userId);
+    }
+}
@@ -0,0 +1,88 @@
+package com.upgrad.quora.service.business;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.upgrad.quora.service.dao.UserDao;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * In-process cache of user sessions keyed by access token, sitting in front of {@link UserDao#getUserAuthToken(String)}.
+ * Entries are evicted by size and by time since they were loaded, unknown tokens are never cached.
+ */
+@Component
+public class UserSessionCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "userSessions";
+
+    private final Cache<String, UserSession> cache;
+
+    private final Function<String, UserSession> loader;
+
+    @Autowired
+    public UserSessionCache(final UserDao userDao,
+                            @Value("${user.session.cache.maximum-size:10000}") final long maximumSize,
+                            @Value("${user.session.cache.ttl-seconds:300}") final long ttlSeconds) {
+        this(accessToken -> UserSession.of(userDao.getUserAuthToken(accessToken)), maximumSize, Duration.ofSeconds(ttlSeconds));
+    }
+
+    /**
+     * @param loader      - resolves an access token to a session on a cache miss, returns null for unknown tokens
+     * @param maximumSize - maximum number of sessions held in memory
+     * @param ttl         - time after which a loaded session is read again from the database
+     */
+    public UserSessionCache(final Function<String, UserSession> loader, final long maximumSize, final Duration ttl) {
+        this.loader = loader;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /** get the session for an access token, loading it from the database on a miss
+     * @param accessToken
+     * @return session or null if the token does not exist
+     */
+    public UserSession getSession(final String accessToken) {
+        if (accessToken == null) {
+            return null;
+        }
+        return cache.get(accessToken, loader);
+    }
+
+    /** remove the session of an access token
+     * @param accessToken
+     */
+    public void invalidate(final String accessToken) {
+        cache.invalidate(accessToken);
+    }
+
+    /** remove all sessions of an user
+     * @param userId
+     */
+    public void invalidateUser(final Integer userId) {
+        cache.asMap().values().removeIf(session -> session.isOwner(userId));
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+}
@@ -0,0 +1,42 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.projection.SessionCounts;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gauges of the sessions stored in USER_AUTH, as last counted by {@link UserAuthHistoryJob}.
+ * Counting scans the table, so the gauges publish the last count instead of counting on every scrape. The gauges are
+ * kept apart from the job because the meter registry is created while the data source is, and binders that depend on
+ * the data source cannot be bound to it yet.
+ */
+@Component
+public class UserSessionMetrics implements MeterBinder {
+
+    private final AtomicLong liveSessions = new AtomicLong();
+
+    private final AtomicLong deadSessions = new AtomicLong();
+
+    private final AtomicLong partitions = new AtomicLong();
+
+    /** publish a new count
+     * @param counts - live and dead sessions
+     * @param weekPartitions - number of week partitions of USER_AUTH
+     */
+    public void update(final SessionCounts counts, final int weekPartitions) {
+        liveSessions.set(counts.getLive());
+        deadSessions.set(counts.getDead());
+        partitions.set(weekPartitions);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("user.sessions", liveSessions, AtomicLong::get).tag("state", "live").register(registry);
+        Gauge.builder("user.sessions", deadSessions, AtomicLong::get).tag("state", "dead").register(registry);
+        Gauge.builder("user.sessions.partitions", partitions, AtomicLong::get).register(registry);
+    }
+}
@@ -0,0 +1,148 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Resolves access tokens to user sessions.
+ * In "database" verification mode every token is looked up in USER_AUTH through the session cache.
+ * In "jwt" verification mode tokens issued by {@link JwtTokenProvider} are verified locally and checked against the
+ * {@link RevokedTokenRegistry}, only tokens that cannot be verified locally fall back to the database.
+ */
+@Service
+public class UserSessionService {
+
+    public static final String DATABASE_VERIFICATION = "database";
+    public static final String JWT_VERIFICATION = "jwt";
+
+    private final Logger log = LoggerFactory.getLogger(UserSessionService.class);
+
+    @Value("${user.session.verification:" + DATABASE_VERIFICATION + "}")
+    private String verification;
+
+    @Autowired
+    private UserSessionCache userSessionCache;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private RevokedTokenRegistry revokedTokenRegistry;
+
+    /** get the session for an access token
+     * @param accessToken
+     * @return session or null if the token is unknown
+     */
+    public UserSession getSession(final String accessToken) {
+        if (JWT_VERIFICATION.equalsIgnoreCase(verification)) {
+            final UserSession session = verifyLocally(accessToken);
+            if (session != null) {
+                return session;
+            }
+        }
+        return userSessionCache.getSession(accessToken);
+    }
+
+    /** resolve an access token to the session of a signed in user
+     * @param accessToken
+     * @param invalidToken - error to raise when the token is unknown
+     * @param signedOut - error to raise when the user has signed out or the token has expired
+     * @return session of the user
+     * @throws AuthorizationFailedException
+     */
+    public UserSession authenticate(final String accessToken, final GenericErrorCode invalidToken, final GenericErrorCode signedOut) throws AuthorizationFailedException {
+        final UserSession userSession = getSession(accessToken);
+        if (userSession == null) {
+            log.info("Invalid authorization token");
+            throw new AuthorizationFailedException(invalidToken.getCode(), invalidToken.getDefaultMessage());
+        }
+        if (userSession.getLogoutAt() != null || userSession.getExpiresAt().isBefore(ZonedDateTime.now())) {
+            log.info("User is signed out or the token is expired, logout_time: {}, expiry_time: {}",
+                    userSession.getLogoutAt(), userSession.getExpiresAt());
+            throw new AuthorizationFailedException(signedOut.getCode(), signedOut.getDefaultMessage());
+        }
+        return userSession;
+    }
+
+    /** forget the session of an access token once the sign-out is committed
+     * @param accessToken
+     */
+    public void signedOut(final String accessToken) {
+        afterCommit(() -> {
+            userSessionCache.invalidate(accessToken);
+            final DecodedJWT jwt = decode(accessToken);
+            if (jwt != null && jwt.getId() != null && jwt.getExpiresAt() != null) {
+                revokedTokenRegistry.revokeToken(jwt.getId(), jwt.getExpiresAt().toInstant());
+            }
+        });
+    }
+
+    /** forget all sessions of an user once the deletion is committed
+     * @param userEntity
+     */
+    public void userDeleted(final UserEntity userEntity) {
+        final Instant deletedAt = Instant.now();
+        afterCommit(() -> {
+            userSessionCache.invalidateUser(userEntity.getId());
+            revokedTokenRegistry.revokeUser(userEntity.getUuid(), deletedAt);
+        });
+    }
+
+    private UserSession verifyLocally(final String accessToken) {
+        final DecodedJWT jwt;
+        try {
+            jwt = jwtTokenProvider.verify(accessToken);
+        } catch (JWTVerificationException e) {
+            log.debug("access token could not be verified locally: {}", e.getMessage());
+            return null;
+        }
+        final Integer userId = jwt.getClaim(JwtTokenProvider.USER_ID_CLAIM).asInt();
+        if (userId == null) {
+            return null;
+        }
+        final ZonedDateTime expiresAt = ZonedDateTime.ofInstant(jwt.getExpiresAt().toInstant(), ZoneId.systemDefault());
+        final ZonedDateTime logoutAt = revokedTokenRegistry.isRevoked(jwt) ? ZonedDateTime.now() : null;
+        return new UserSession(userId, jwt.getSubject(), jwt.getClaim(JwtTokenProvider.ROLE_CLAIM).asString(), expiresAt, logoutAt);
+    }
+
+    private DecodedJWT decode(final String accessToken) {
+        try {
+            return JWT.decode(accessToken);
+        } catch (JWTDecodeException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Forgetting a session before the commit would let a concurrent request load and cache the old row again,
+     * so it is deferred until the change is visible to other transactions.
+     */
+    private void afterCommit(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -11,6 +11,7 @@ public enum GenericErrorCode implements ErrorCode {
      * <b>Action: None</b><br>
      */
     GEN_001("GEN-001", "An unexpected error occurred. Please contact System Administrator"),
+    GEN_002("GEN-002", "The server is busy, try again later"),
     SGUR_001("SGR-001", "Try any other Username, this Username has already been taken"),
     SGUR_002("SGR-002", "This user has already been registered, try with any other emailId"),
     ATH_001("ATH-001", "This username does not exist"),
@@ -28,6 +29,7 @@ public enum GenericErrorCode implements ErrorCode {
     ATHR_QSN_USR_003_COMMON("ATHR-002", "User is signed out.Sign in first to get all questions posted by a specific user"),
     ATHR_QSN_USR_004_COMMON("ATHR-002", "User is signed out.Sign in first to delete a question"),
     ATHR_QSN_USR_005_COMMON("ATHR-002", "User is signed out.Sign in first to edit the question"),
+    ATHR_QSN_USR_006_COMMON("ATHR-002", "User is signed out.Sign in first to get the question"),
     ATHR_QSN_001_COMMON("ATHR-003", "Only the question owner or admin can delete the question"),
     ATHR_QSN_002_COMMON("ATHR-003", "Only the question owner can edit the question"),
     QSN_001("QUES-001", "Entered question uuid does not exist"),
@@ -37,10 +39,19 @@ public enum GenericErrorCode implements ErrorCode {
     QUES_001("QUES-001", "The question entered is invalid"),
     INVALID_QUES_001_GET_ANS("QUES-001", "The question with entered uuid whose details are to be seen does not exist"),
     ANS_USER_001("ANS-001", "Entered answer uuid does not exist"),
+    ANS_BATCH_001("ANS-002", "Between 1 and {0} question uuids can be requested at once"),
     ATHR_002_CREATE_ANS("ATHR-002", "User is signed out.Sign in first to post an answer"),
     ATHR_002_EDIT_ANS("ATHR-002", "User is signed out.Sign in first to edit an answer"),
     ATHR_002_DEL_ANS("ATHR-002", "User is signed out.Sign in first to delete an answer"),
-    ATHR_002_GET_ANS("ATHR-002", "User is signed out.Sign in first to get the answers");
+    ATHR_002_GET_ANS("ATHR-002", "User is signed out.Sign in first to get the answers"),
+    PAGE_001("PAGE-001", "Invalid cursor, use the next-cursor of the previous page"),
+    PAGE_002("PAGE-002", "Limit must be a positive number"),
+    IMP_001("IMP-001", "Line {0} is not a valid import record"),
+    IMP_002("IMP-002", "Line {0} refers to a user or question that does not exist"),
+    IMP_003("IMP-003", "Records from line {0} to line {1} were rejected by the database"),
+    ATHR_002_SEARCH("ATHR-002", "User is signed out.Sign in first to search"),
+    SRCH_001("SRCH-001", "Enter at least one word to search for"),
+    RATE_001("RATE-001", "Too many requests, try again later");
 
     private static final Map<String, GenericErrorCode> LOOKUP = new HashMap<String, GenericErrorCode>();
 
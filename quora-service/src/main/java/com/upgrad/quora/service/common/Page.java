@@ -0,0 +1,44 @@
+package com.upgrad.quora.service.common;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a listing and the cursor of the page after it.
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+
+    private final String nextCursor;
+
+    private Page(final List<T> items, final String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /** build a page from rows fetched with a limit one above the page size
+     * @param rows - rows of the page, plus the first row of the next page if there is one
+     * @param pageSize - number of rows in a full page
+     * @param cursorOf - cursor positioned after a row
+     * @return page with a next cursor only if more rows follow
+     */
+    public static <T> Page<T> of(final List<T> rows, final int pageSize, final Function<T, PageCursor> cursorOf) {
+        if (rows.size() <= pageSize) {
+            return new Page<T>(rows, null);
+        }
+        final List<T> items = rows.subList(0, pageSize);
+        return new Page<T>(items, cursorOf.apply(items.get(pageSize - 1)).encode());
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return cursor of the next page or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
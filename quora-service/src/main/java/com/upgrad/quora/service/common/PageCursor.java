@@ -0,0 +1,67 @@
+package com.upgrad.quora.service.common;
+
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+
+import static com.upgrad.quora.service.common.GenericErrorCode.PAGE_001;
+
+/**
+ * Position after the last row of a page in a listing ordered by (date, id) descending.
+ * Clients only see the encoded form and pass it back unchanged to fetch the next page, so the next page is read
+ * from the index where the previous one ended instead of skipping over all earlier rows.
+ */
+public final class PageCursor {
+
+    private static final String SEPARATOR = ",";
+
+    private final ZonedDateTime date;
+
+    private final Integer id;
+
+    public PageCursor(final ZonedDateTime date, final Integer id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * @return opaque form of the cursor handed out to clients
+     */
+    public String encode() {
+        final String position = date.toInstant().toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** read a cursor handed out by {@link #encode()}
+     * @param cursor - encoded cursor, may be null for the first page
+     * @return cursor or null for the first page
+     * @throws InvalidPageRequestException - if the cursor was not handed out by this service
+     */
+    public static PageCursor decode(final String cursor) throws InvalidPageRequestException {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            final String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final int separator = position.lastIndexOf(SEPARATOR);
+            final Instant date = Instant.parse(position.substring(0, separator));
+            final Integer id = Integer.valueOf(position.substring(separator + 1));
+            return new PageCursor(ZonedDateTime.ofInstant(date, ZoneId.systemDefault()), id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            throw new InvalidPageRequestException(PAGE_001.getCode(), PAGE_001.getDefaultMessage());
+        }
+    }
+}
@@ -3,6 +3,11 @@ package com.upgrad.quora.service.dao;
 import com.upgrad.quora.service.business.AnswerBusinessService;
 import com.upgrad.quora.service.entity.AnswerEntity;
 import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.projection.AnswerExport;
+import com.upgrad.quora.service.projection.AnswerSummary;
+import com.upgrad.quora.service.projection.AnswerText;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
@@ -10,7 +15,10 @@ import org.springframework.stereotype.Repository;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public class AnswerDao {
@@ -83,8 +91,95 @@ public class AnswerDao {
      * @param question
      * @return All answers present in db
      */
-    public List<AnswerEntity> getAllAnswersToQuestion(final QuestionEntity question) {
+    public List<AnswerSummary> getAllAnswersToQuestion(final QuestionEntity question) {
         log.info("get all answers to the question from the database");
-        return entityManager.createNamedQuery("getAllAnswersToQuestion", AnswerEntity.class).setParameter("question",question).getResultList();
+        return entityManager.createNamedQuery("getAllAnswersToQuestion", AnswerSummary.class).setParameter("question",question).getResultList();
+    }
+
+    /**
+     * Method to retrieve all answers for several questions from db in one query
+     *
+     * @param questionIds - database ids of the questions
+     * @return answers with the ids of their questions, ordered by question and answer id
+     */
+    public List<AnswerSummary> getAllAnswersToQuestions(final Collection<Integer> questionIds) {
+        log.info("get all answers to a list of questions from the database");
+        return entityManager.createNamedQuery("getAllAnswersToQuestions", AnswerSummary.class).setParameter("questionIds", questionIds).getResultList();
+    }
+
+    /**
+     * Method to retrieve the first answers to a question from db, with their authors, matched by ANSWER_QUESTION_ID_ID_IDX
+     *
+     * @param questionId - database id of the question
+     * @param limit - maximum number of answers
+     * @return answers in the order they were posted
+     */
+    public List<AnswerExport> getAnswersPage(final Integer questionId, final int limit) {
+        log.info("get a page of answers to the question from the database");
+        return entityManager.createNamedQuery("answersPageToQuestion", AnswerExport.class).setParameter("questionId", questionId).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Method to retrieve the answers of several questions from db in one query, ordered by question and answer id
+     *
+     * @param questionIds
+     * @return answers with the ids of their questions, read through ANSWER_QUESTION_ID_ID_IDX
+     */
+    public List<AnswerExport> getAnswersForExport(final List<Integer> questionIds) {
+        log.info("get the answers of a chunk of questions to export from the database");
+        return entityManager.createNamedQuery("answersExportByQuestionIds", AnswerExport.class).setParameter("questionIds", questionIds).getResultList();
+    }
+
+    /**
+     * Method to stream all answers for a question from db through a forward-only cursor
+     *
+     * @param question
+     * @param fetchSize - rows fetched per round trip
+     * @param action - receives each answer
+     */
+    public void scrollAnswersToQuestion(final QuestionEntity question, final int fetchSize, final Consumer<AnswerSummary> action) {
+        log.info("streaming all answers to the question from the database");
+        final Session session = entityManager.unwrap(Session.class);
+        final Query<AnswerSummary> query = session.createNamedQuery("getAllAnswersToQuestion", AnswerSummary.class).setParameter("question", question);
+        QueryStreams.scroll(session, query, fetchSize, action);
+    }
+
+    /**
+     * Method to stream the text of all answers from db in id order through a forward-only cursor
+     *
+     * @param fetchSize - rows fetched per round trip
+     * @param action - receives each answer
+     */
+    public void scrollAnswerTexts(final int fetchSize, final Consumer<AnswerText> action) {
+        log.info("streaming the text of all answers from the database");
+        final Session session = entityManager.unwrap(Session.class);
+        final Query<AnswerText> query = session.createNamedQuery("answerTexts", AnswerText.class);
+        QueryStreams.scroll(session, query, fetchSize, action);
+    }
+
+    /**
+     * Method to retrieve the text of several answers from db in one query, matched by ANSWER_UUID_UK
+     *
+     * @param uuids
+     * @return the answers that exist, in no particular order
+     */
+    public List<AnswerText> getAnswerTexts(final Collection<String> uuids) {
+        log.info("get the text of answers from the database based on a list of Answer Ids");
+        return entityManager.createNamedQuery("answerTextsByUuids", AnswerText.class).setParameter("uuids", uuids).getResultList();
+    }
+
+    /**
+     * Method to retrieve the uuids of the answers a user wrote and of the answers to the questions of the user,
+     * which are the answers deleted with the user. Its own answers are found by ANSWER_USER_ID_DATE_IDX, the others
+     * through its questions
+     *
+     * @param userId
+     * @return uuids in no particular order
+     */
+    public List<String> getAnswerUuidsByUser(final Integer userId) {
+        log.info("get the uuids of the answers deleted with a user from the database");
+        final List<String> uuids = new ArrayList<>(entityManager.createNamedQuery("answerUuidsByUser", String.class).setParameter("userId", userId).getResultList());
+        uuids.addAll(entityManager.createNamedQuery("answerUuidsToQuestionsOfUser", String.class).setParameter("userId", userId).getResultList());
+        return uuids;
     }
 }
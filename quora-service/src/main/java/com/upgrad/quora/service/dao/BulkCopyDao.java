@@ -0,0 +1,112 @@
+package com.upgrad.quora.service.dao;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads rows with the Postgres COPY protocol instead of one INSERT per entity, for imports of many rows.
+ * Rows written here bypass Hibernate, so they must take their ids from the same pooled sequences as the entities.
+ */
+@Repository
+public class BulkCopyDao {
+
+    /** matches the allocationSize of the entities and the increment of the id sequences */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    private final Logger log = LoggerFactory.getLogger(BulkCopyDao.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /** reserve ids from a pooled sequence, every value of the sequence reserves the ID_ALLOCATION_SIZE ids up to and including it
+     * @param sequence - name of the sequence
+     * @param count - number of ids needed
+     * @return count unused ids in ascending order
+     */
+    public List<Integer> allocateIds(final String sequence, final int count) {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        final int blocks = (count + ID_ALLOCATION_SIZE - 1) / ID_ALLOCATION_SIZE;
+        final List<Integer> highs = jdbcTemplate.queryForList("select nextval('" + sequence + "') from generate_series(1, ?)", Integer.class, blocks);
+        final List<Integer> ids = new ArrayList<>(count);
+        for (Integer high : highs) {
+            for (int id = high - ID_ALLOCATION_SIZE + 1; id <= high && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /** get the database ids of the rows of a table with the given uuids
+     * @param table - USERS or QUESTION
+     * @param uuids
+     * @return id by uuid, uuids without a row are missing
+     */
+    public Map<String, Integer> findIds(final String table, final Collection<String> uuids) {
+        final Map<String, Integer> ids = new HashMap<>();
+        if (uuids.isEmpty()) {
+            return ids;
+        }
+        namedParameterJdbcTemplate.query("select uuid, id from " + table + " where uuid in (:uuids)",
+                Collections.singletonMap("uuids", uuids), resultSet -> {
+                    ids.put(resultSet.getString(1), resultSet.getInt(2));
+                });
+        return ids;
+    }
+
+    /** copy rows in CSV format into a table, on the connection of the current transaction
+     * @param table
+     * @param columns - columns in the order of the values of every row
+     * @param csv - one line per row as produced by {@link #csvRow(Object...)}
+     * @return number of rows copied
+     */
+    public long copyIn(final String table, final String[] columns, final String csv) {
+        final String sql = "COPY " + table + "(" + String.join(",", columns) + ") FROM STDIN WITH (FORMAT csv)";
+        final Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(csv));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.debug("copied {} rows into {}", rows, table);
+        return rows;
+    }
+
+    /** format one row for {@link #copyIn(String, String[], String)}, null values are written as NULL and all others quoted
+     * @param values
+     * @return row terminated by a newline
+     */
+    public static String csvRow(final Object... values) {
+        final StringBuilder row = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            if (values[i] != null) {
+                row.append('"').append(values[i].toString().replace("\"", "\"\"")).append('"');
+            }
+        }
+        return row.append('\n').toString();
+    }
+}
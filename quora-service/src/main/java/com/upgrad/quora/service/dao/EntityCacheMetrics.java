@@ -0,0 +1,81 @@
+package com.upgrad.quora.service.dao;
+
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.NaturalIdCacheStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hit, miss and put counters and the size of the second-level cache regions of the entities, tagged by region.
+ * The counters are only incremented while hibernate.generate_statistics is enabled.
+ */
+@Component
+public class EntityCacheMetrics implements MeterBinder {
+
+    private static final String[] ENTITY_REGIONS = {UserEntity.CACHE_REGION, QuestionEntity.CACHE_REGION};
+
+    private static final String[] NATURAL_ID_REGIONS = {UserEntity.NATURAL_ID_CACHE_REGION, QuestionEntity.NATURAL_ID_CACHE_REGION};
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * @return statistics of the session factory, including the statistics of each cache region
+     */
+    public Statistics getStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * @param region - name of an entity region
+     * @return hits, misses and puts of the region
+     */
+    public SecondLevelCacheStatistics getRegionStatistics(final String region) {
+        return getStatistics().getSecondLevelCacheStatistics(region);
+    }
+
+    /**
+     * @param region - name of a natural id region
+     * @return hits, misses and puts of the region
+     */
+    public NaturalIdCacheStatistics getNaturalIdRegionStatistics(final String region) {
+        return getStatistics().getNaturalIdCacheStatistics(region);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        for (String region : ENTITY_REGIONS) {
+            final SecondLevelCacheStatistics statistics = getRegionStatistics(region);
+            if (statistics != null) {
+                bind(registry, region, statistics, SecondLevelCacheStatistics::getHitCount, SecondLevelCacheStatistics::getMissCount,
+                        SecondLevelCacheStatistics::getPutCount, SecondLevelCacheStatistics::getElementCountInMemory);
+            }
+        }
+        for (String region : NATURAL_ID_REGIONS) {
+            final NaturalIdCacheStatistics statistics = getNaturalIdRegionStatistics(region);
+            if (statistics != null) {
+                bind(registry, region, statistics, NaturalIdCacheStatistics::getHitCount, NaturalIdCacheStatistics::getMissCount,
+                        NaturalIdCacheStatistics::getPutCount, NaturalIdCacheStatistics::getElementCountInMemory);
+            }
+        }
+    }
+
+    private <S> void bind(final MeterRegistry registry, final String region, final S statistics, final ToLongFunction<S> hits,
+                          final ToLongFunction<S> misses, final ToLongFunction<S> puts, final ToLongFunction<S> size) {
+        FunctionCounter.builder("hibernate.cache.region.hits", statistics, s -> hits.applyAsLong(s)).tag("region", region).register(registry);
+        FunctionCounter.builder("hibernate.cache.region.misses", statistics, s -> misses.applyAsLong(s)).tag("region", region).register(registry);
+        FunctionCounter.builder("hibernate.cache.region.puts", statistics, s -> puts.applyAsLong(s)).tag("region", region).register(registry);
+        Gauge.builder("hibernate.cache.region.size", statistics, s -> size.applyAsLong(s)).tag("region", region).register(registry);
+    }
+}
@@ -0,0 +1,212 @@
+package com.upgrad.quora.service.dao;
+
+import com.upgrad.quora.service.projection.OutboxEvent;
+import com.upgrad.quora.service.projection.OutboxOffset;
+import org.hibernate.query.NativeQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Appends change events to CHANGE_OUTBOX in the transaction of the change, and reads them back for the relay.
+ * The events are built from the rows by INSERT ... SELECT, so they carry the state the rows have in the transaction.
+ * Appends take no lock, so a transaction can commit an event with a higher id before one with a lower id commits. The
+ * relay only reads up to a horizon: the last id of the sequence read before a snapshot, once every transaction that
+ * was in flight in that snapshot has ended. An appending transaction has its transaction id before it draws an event
+ * id, so every event up to the horizon is then visible or rolled back for good, and the relay can move its offsets
+ * past any id it has read without losing an event that commits later. Changes to the same row wait on its row lock,
+ * so their events still get ids in commit order.
+ */
+@Repository
+public class OutboxDao {
+
+    private static final String APPEND = "INSERT INTO change_outbox(aggregate_type, aggregate_uuid, event_type, payload) ";
+
+    private static final String QUESTION_EVENTS = APPEND + "SELECT 'QUESTION', q.uuid, :type, "
+            + "CAST(json_build_object('uuid', q.uuid, 'content', q.content, 'date', q.date, 'user_uuid', u.uuid) AS text) "
+            + "FROM question q JOIN users u ON u.id = q.user_id ";
+
+    private static final String ANSWER_EVENTS = APPEND + "SELECT 'ANSWER', a.uuid, :type, "
+            + "CAST(json_build_object('uuid', a.uuid, 'answer', a.ans, 'date', a.date, 'user_uuid', u.uuid, 'question_uuid', q.uuid) AS text) "
+            + "FROM answer a JOIN users u ON u.id = a.user_id JOIN question q ON q.id = a.question_id ";
+
+    private static final String USER_EVENTS = APPEND + "SELECT 'USER', u.uuid, :type, "
+            + "CAST(json_build_object('uuid', u.uuid, 'user_name', u.username) AS text) FROM users u ";
+
+    private final Logger log = LoggerFactory.getLogger(OutboxDao.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /*
+     * Appends an event for each question, with the question as it is in the transaction
+     * @params type
+     * @params questionIds
+     */
+    public void questionsChanged(final OutboxEvent.Type type, final Collection<Integer> questionIds){
+        log.info("appending question {} events to the outbox", type);
+        append(QUESTION_EVENTS + "WHERE q.id IN (:ids) ORDER BY q.id").setParameter("type", type.name())
+                .setParameter("ids", questionIds).executeUpdate();
+    }
+    /*
+     * Appends an event for each answer, with the answer as it is in the transaction
+     * @params type
+     * @params answerIds
+     */
+    public void answersChanged(final OutboxEvent.Type type, final Collection<Integer> answerIds){
+        log.info("appending answer {} events to the outbox", type);
+        append(ANSWER_EVENTS + "WHERE a.id IN (:ids) ORDER BY a.id").setParameter("type", type.name())
+                .setParameter("ids", answerIds).executeUpdate();
+    }
+    /*
+     * Appends an event for each user, with the user as it is in the transaction
+     * @params type
+     * @params userIds
+     */
+    public void usersChanged(final OutboxEvent.Type type, final Collection<Integer> userIds){
+        log.info("appending user {} events to the outbox", type);
+        append(USER_EVENTS + "WHERE u.id IN (:ids) ORDER BY u.id").setParameter("type", type.name())
+                .setParameter("ids", userIds).executeUpdate();
+    }
+    /*
+     * Appends the deletion of a question and of the answers deleted with it by the ON DELETE CASCADE, before the
+     * question is deleted in the same transaction. The answers are found by ANSWER_QUESTION_ID_ID_IDX.
+     * @params questionId
+     */
+    public void questionDeleted(final Integer questionId){
+        log.info("appending the deletion of a question to the outbox");
+        append(ANSWER_EVENTS + "WHERE a.question_id = :id ORDER BY a.id").setParameter("type", OutboxEvent.Type.DELETED.name())
+                .setParameter("id", questionId).executeUpdate();
+        append(QUESTION_EVENTS + "WHERE q.id = :id").setParameter("type", OutboxEvent.Type.DELETED.name())
+                .setParameter("id", questionId).executeUpdate();
+    }
+    /*
+     * Appends the deletion of a user and of the questions and answers deleted with it by the ON DELETE CASCADE,
+     * before the user is deleted in the same transaction. Its own answers are found by ANSWER_USER_ID_DATE_IDX.
+     * @params userId
+     */
+    public void userDeleted(final Integer userId){
+        log.info("appending the deletion of an user to the outbox");
+        append(ANSWER_EVENTS + "WHERE a.user_id = :id ORDER BY a.id").setParameter("type", OutboxEvent.Type.DELETED.name())
+                .setParameter("id", userId).executeUpdate();
+        append(ANSWER_EVENTS + "WHERE q.user_id = :id AND a.user_id <> :id ORDER BY a.id").setParameter("type", OutboxEvent.Type.DELETED.name())
+                .setParameter("id", userId).executeUpdate();
+        append(QUESTION_EVENTS + "WHERE q.user_id = :id ORDER BY q.id").setParameter("type", OutboxEvent.Type.DELETED.name())
+                .setParameter("id", userId).executeUpdate();
+        append(USER_EVENTS + "WHERE u.id = :id").setParameter("type", OutboxEvent.Type.DELETED.name())
+                .setParameter("id", userId).executeUpdate();
+    }
+
+    /*
+     * Last id drawn from the sequence of the events, committed or not. Read before the snapshot it is checked against.
+     * @returns long - 0 before the first event
+     */
+    public long getLastDrawnId(){
+        return jdbcTemplate.queryForObject("SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM change_outbox_id_seq", Long.class);
+    }
+    /*
+     * Snapshot of the transactions in flight, as text
+     * @returns String
+     */
+    public String getSnapshot(){
+        return jdbcTemplate.queryForObject("SELECT CAST(txid_current_snapshot() AS text)", String.class);
+    }
+    /*
+     * @params snapshot - taken by getSnapshot
+     * @returns true once every transaction that was in flight in the snapshot has committed or rolled back
+     */
+    public boolean hasEnded(final String snapshot){
+        return jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM txid_snapshot_xip(CAST(? AS txid_snapshot)) x "
+                + "WHERE txid_status(x) = 'in progress')", Boolean.class, snapshot);
+    }
+    /*
+     * Events after an offset up to the horizon of the relay in id order, read by the primary key
+     * @params afterId - offset of the subscriber
+     * @params horizonId - last id that can no longer be taken by a transaction in flight
+     * @params limit - maximum number of events
+     * @returns List<OutboxEvent>
+     */
+    public List<OutboxEvent> getEvents(final long afterId, final long horizonId, final int limit){
+        return jdbcTemplate.query("SELECT id, aggregate_type, aggregate_uuid, event_type, payload, created_at FROM change_outbox "
+                + "WHERE id > ? AND id <= ? ORDER BY id LIMIT ?", (resultSet, row) -> new OutboxEvent(resultSet.getLong(1),
+                OutboxEvent.Aggregate.valueOf(resultSet.getString(2)), resultSet.getString(3),
+                OutboxEvent.Type.valueOf(resultSet.getString(4)), resultSet.getString(5), zonedDateTime(resultSet, 6)), afterId, horizonId, limit);
+    }
+    /*
+     * Creates the offset of a subscriber at 0 unless it has one
+     * @params subscriber
+     */
+    public void createOffset(final String subscriber){
+        jdbcTemplate.update("INSERT INTO change_outbox_offset(subscriber, last_id) VALUES (?, 0) ON CONFLICT (subscriber) DO NOTHING", subscriber);
+    }
+    /*
+     * @params subscriber
+     * @returns id of the last event the subscriber has handled, 0 if it has no offset
+     */
+    public long getOffset(final String subscriber){
+        final List<Long> offsets = jdbcTemplate.queryForList("SELECT last_id FROM change_outbox_offset WHERE subscriber = ?", Long.class, subscriber);
+        return offsets.isEmpty() ? 0 : offsets.get(0);
+    }
+    /*
+     * @params subscriber
+     * @params lastId - id of the last event the subscriber has handled
+     */
+    public void updateOffset(final String subscriber, final long lastId){
+        jdbcTemplate.update("INSERT INTO change_outbox_offset(subscriber, last_id) VALUES (?, ?) "
+                + "ON CONFLICT (subscriber) DO UPDATE SET last_id = EXCLUDED.last_id, updated_at = now()", subscriber, lastId);
+    }
+    /*
+     * Offsets of all subscribers with the number of events each one has still to handle
+     * @returns List<OutboxOffset> - by subscriber name
+     */
+    public List<OutboxOffset> getOffsets(){
+        return jdbcTemplate.query("SELECT o.subscriber, o.last_id, (SELECT COUNT(*) FROM change_outbox c WHERE c.id > o.last_id), o.updated_at "
+                + "FROM change_outbox_offset o ORDER BY o.subscriber", (resultSet, row) -> new OutboxOffset(resultSet.getString(1),
+                resultSet.getLong(2), resultSet.getLong(3), zonedDateTime(resultSet, 4)));
+    }
+    /*
+     * Deletes the events every subscriber with an offset has handled
+     * @returns number of deleted events
+     */
+    public int deleteHandledEvents(){
+        return jdbcTemplate.update("DELETE FROM change_outbox WHERE id <= (SELECT MIN(last_id) FROM change_outbox_offset)");
+    }
+    /*
+     * Deletes the events appended before a time, handled or not, found by CHANGE_OUTBOX_CREATED_AT_IDX
+     * @params before
+     * @returns number of deleted events
+     */
+    public int deleteEventsBefore(final ZonedDateTime before){
+        return jdbcTemplate.update("DELETE FROM change_outbox WHERE created_at < ?", Timestamp.valueOf(before.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime()));
+    }
+
+    /*
+     * Native append. Pending entity changes are flushed first so the events are built from them, the transaction id is
+     * assigned before the insert draws the event ids, and the insert is synchronized with an empty query space so it
+     * leaves the second-level cache in place.
+     */
+    private NativeQuery<?> append(final String sql){
+        entityManager.flush();
+        entityManager.createNativeQuery("SELECT txid_current()").getSingleResult();
+        return entityManager.createNativeQuery(sql).unwrap(NativeQuery.class).addSynchronizedQuerySpace("");
+    }
+
+    private static ZonedDateTime zonedDateTime(final ResultSet resultSet, final int column) throws SQLException {
+        return resultSet.getTimestamp(column).toLocalDateTime().atZone(ZoneId.systemDefault());
+    }
+}
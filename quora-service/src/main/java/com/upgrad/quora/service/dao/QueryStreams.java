@@ -0,0 +1,38 @@
+package com.upgrad.quora.service.dao;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import java.util.function.Consumer;
+
+/**
+ * Streams query results through a forward-only JDBC cursor instead of materializing the result list.
+ * The caller must be inside a transaction, otherwise the Postgres driver ignores the fetch size and reads all rows at once.
+ */
+final class QueryStreams {
+
+    private QueryStreams() {
+    }
+
+    /**
+     * @param session - session the query belongs to, cleared after every fetchSize rows
+     * @param query - query selecting one entity or read model per row
+     * @param fetchSize - rows fetched per round trip and rows kept in the persistence context
+     * @param action - receives each row
+     */
+    static <T> void scroll(final Session session, final Query<T> query, final int fetchSize, final Consumer<T> action) {
+        try (ScrollableResults results = query.setFetchSize(fetchSize).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY)) {
+            int rows = 0;
+            while (results.next()) {
+                @SuppressWarnings("unchecked")
+                final T row = (T) results.get(0);
+                action.accept(row);
+                if (++rows % fetchSize == 0) {
+                    session.clear();
+                }
+            }
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.common.PageCursor;
 import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.projection.QuestionDetail;
+import com.upgrad.quora.service.projection.QuestionExport;
+import com.upgrad.quora.service.projection.QuestionSummary;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public class QuestionDao {
@@ -29,35 +39,101 @@ public class QuestionDao {
     }
 
     /*
-    * @returns List<QuestionEntity>
+    * Questions newest first, one page at a time. The (date, id) position of the cursor is matched by
+    * QUESTION_DATE_ID_IDX, so every page is an index range scan however deep it is.
+    * @params after - cursor of the previous page, null for the first page
+    * @params limit - maximum number of questions
+    * @returns List<QuestionSummary>
     */
-    public List<QuestionEntity> getQuestions(){
-        log.info("getting all questions from the database");
-        TypedQuery<QuestionEntity> query = entityManager.createQuery("Select q from QuestionEntity q",QuestionEntity.class);
-        List<QuestionEntity> questionList = query.getResultList();
-        log.info("succesfully got all questions from the database");
-        return questionList;
+    public List<QuestionSummary> getQuestions(final PageCursor after, final int limit){
+        log.info("getting a page of questions from the database");
+        final TypedQuery<QuestionSummary> query = after == null
+                ? entityManager.createNamedQuery("questionsPage", QuestionSummary.class)
+                : entityManager.createNamedQuery("questionsPageAfter", QuestionSummary.class)
+                        .setParameter("date", after.getDate()).setParameter("id", after.getId());
+        return query.setMaxResults(limit).getResultList();
     }
     /*
+    * Streams all questions newest first through a forward-only cursor, reading fetchSize rows per round trip,
+    * so memory use does not grow with the table.
+    * @params fetchSize - rows fetched per round trip
+    * @params action - receives each question
+    */
+    public void scrollQuestions(final int fetchSize, final Consumer<QuestionSummary> action){
+        log.info("streaming all questions from the database");
+        final Session session = entityManager.unwrap(Session.class);
+        final Query<QuestionSummary> query = session.createNamedQuery("questionsPage", QuestionSummary.class);
+        QueryStreams.scroll(session, query, fetchSize, action);
+        log.info("succesfully streamed all questions from the database");
+    }
+    /*
+    * Questions with the uuids of their authors in id order, one chunk at a time for the corpus export.
+    * The position after the previous chunk is matched by the primary key, so no chunk sorts the table.
+    * @params afterId - id of the last question of the previous chunk, 0 for the first chunk
+    * @params limit - maximum number of questions
+    * @returns List<QuestionExport> - questions without their answers
+    */
+    public List<QuestionExport> getQuestionsForExport(final int afterId, final int limit){
+        log.info("getting a chunk of questions to export from the database");
+        return entityManager.createNamedQuery("questionsExportAfter", QuestionExport.class)
+                .setParameter("id", afterId).setMaxResults(limit).getResultList();
+    }
+    /*
+     * Questions of an user newest first, one page at a time, matched by QUESTION_USER_ID_DATE_ID_IDX.
+     * @params user
+     * @params after - cursor of the previous page, null for the first page
+     * @params limit - maximum number of questions
+     * @returns List<QuestionSummary>
+     */
+    public List<QuestionSummary> getQuestionsByUser(final UserEntity user, final PageCursor after, final int limit){
+        log.info("getting a page of questions from the database based on the User");
+        final TypedQuery<QuestionSummary> query = after == null
+                ? entityManager.createNamedQuery("questionsByUserPage", QuestionSummary.class)
+                : entityManager.createNamedQuery("questionsByUserPageAfter", QuestionSummary.class)
+                        .setParameter("date", after.getDate()).setParameter("id", after.getId());
+        return query.setParameter("user", user).setMaxResults(limit).getResultList();
+    }
+    /*
+     * Question with a summary of its author in one query, matched by QUESTION_UUID_UK
+     * @params uuid
+     * @returns QuestionDetail - without answers, or null if there is no question with the uuid
+     */
+    public QuestionDetail getQuestionDetail(final String uuid){
+        log.info("getting question with its author from the database based on the Question Id");
+        final List<QuestionDetail> questions = entityManager.createNamedQuery("questionDetailByUuid", QuestionDetail.class)
+                .setParameter("uuid", uuid).getResultList();
+        return questions.isEmpty() ? null : questions.get(0);
+    }
+    /*
+     * Questions with the given uuids in one query, matched by QUESTION_UUID_UK
+     * @params uuids
+     * @returns List<QuestionSummary> - the questions that exist, in no particular order
+     */
+    public List<QuestionSummary> getQuestionsByUuids(final Collection<String> uuids){
+        log.info("getting questions from the database based on a list of Question Ids");
+        return entityManager.createNamedQuery("questionsByUuids", QuestionSummary.class).setParameter("uuids", uuids).getResultList();
+    }
+    /*
+     * Uuids of the questions of a user, found by QUESTION_USER_ID_DATE_ID_IDX
      * @params userId
-     * @returns List<QuestionEntity>
+     * @returns List<String>
      */
-    public List<QuestionEntity> getQuestionsByUser(String userId){
-        log.info("getting all questions from the database based on the User Id");
-        return  entityManager.createNamedQuery("questionByUserId",QuestionEntity.class).setParameter("uuid",userId).getResultList();
+    public List<String> getQuestionUuidsByUser(final Integer userId){
+        log.info("getting the uuids of the questions of a user from the database");
+        return entityManager.createNamedQuery("questionUuidsByUser", String.class).setParameter("userId", userId).getResultList();
     }
     /*
+     * Question by uuid, served from the second-level cache when the uuid has been seen before
      * @params questionId
      * @returns QuestionEntity
      */
     public QuestionEntity getQuestionById(String questionId){
         log.info("getting question from the database based on the Question Id");
-        try {
-            return entityManager.createNamedQuery("questionById", QuestionEntity.class).setParameter("uuid", questionId).getSingleResult();
-        }catch (NoResultException nre){
+        final QuestionEntity questionEntity = entityManager.unwrap(Session.class).bySimpleNaturalId(QuestionEntity.class).load(questionId);
+        if (questionEntity == null){
             log.info("no question in the database with the following Question Id");
-            return null;
         }
+        return questionEntity;
     }
     /*
      * @params questionEntity
@@ -79,4 +155,95 @@ public class QuestionDao {
         log.info("succesfully updated a question in the database");
         return questionEntity;
     }
+    /*
+     * Counts a new answer of a question and moves its last answer date forward, in one update of the row so
+     * concurrent answers are all counted
+     * @params questionId
+     * @params date - date of the new answer
+     */
+    public void answerAdded(final Integer questionId, final ZonedDateTime date){
+        log.info("counting a new answer of a question in the database");
+        activityUpdate("UPDATE question SET answer_count = answer_count + 1, last_answer_at = GREATEST(last_answer_at, :date) WHERE id = :id")
+                .setParameter("date", date).setParameter("id", questionId).executeUpdate();
+    }
+    /*
+     * Moves the last answer date of a question forward after an answer was edited
+     * @params questionId
+     * @params date - new date of the answer
+     */
+    public void answerEdited(final Integer questionId, final ZonedDateTime date){
+        log.info("updating the last answer date of a question in the database");
+        activityUpdate("UPDATE question SET last_answer_at = GREATEST(last_answer_at, :date) WHERE id = :id")
+                .setParameter("date", date).setParameter("id", questionId).executeUpdate();
+    }
+    /*
+     * Uncounts an answer that is deleted in the same transaction. The last answer date is taken from the other
+     * answers of the question, found by ANSWER_QUESTION_ID_ID_IDX.
+     * @params questionId
+     * @params answerId - id of the deleted answer
+     */
+    public void answerRemoved(final Integer questionId, final Integer answerId){
+        log.info("uncounting a deleted answer of a question in the database");
+        activityUpdate("UPDATE question SET answer_count = answer_count - 1, last_answer_at = "
+                + "(SELECT MAX(date) FROM answer WHERE question_id = :id AND id <> :answerId) WHERE id = :id")
+                .setParameter("id", questionId).setParameter("answerId", answerId).executeUpdate();
+    }
+    /*
+     * Uncounts the answers of an user on the questions of other users, before the user is deleted and its answers
+     * with it by the ON DELETE CASCADE. The answers are found by ANSWER_USER_ID_DATE_IDX.
+     * @params userId
+     */
+    public void userAnswersRemoved(final Integer userId){
+        log.info("uncounting the answers of an user in the database");
+        activityUpdate("UPDATE question q SET answer_count = q.answer_count - a.answer_count, last_answer_at = "
+                + "(SELECT MAX(date) FROM answer WHERE question_id = q.id AND user_id <> :userId) "
+                + "FROM (SELECT question_id, COUNT(*) AS answer_count FROM answer WHERE user_id = :userId GROUP BY question_id) a "
+                + "WHERE q.id = a.question_id AND q.user_id <> :userId")
+                .setParameter("userId", userId).executeUpdate();
+    }
+    /*
+     * Counts answers that were written to the answer table in the same transaction without Hibernate
+     * @params answerIds - ids of the new answers
+     */
+    public void answersAdded(final Collection<Integer> answerIds){
+        log.info("counting new answers of questions in the database");
+        activityUpdate("UPDATE question q SET answer_count = q.answer_count + a.answer_count, last_answer_at = GREATEST(q.last_answer_at, a.last_answer_at) "
+                + "FROM (SELECT question_id, COUNT(*) AS answer_count, MAX(date) AS last_answer_at FROM answer WHERE id IN (:ids) GROUP BY question_id) a "
+                + "WHERE q.id = a.question_id")
+                .setParameter("ids", answerIds).executeUpdate();
+    }
+    /*
+     * Locks the next questions in id order for the repair of their answer activity. Answers change the activity
+     * of a question while holding the lock of its row, so once the rows are locked no answer of them is in flight.
+     * @params afterId - id of the last question of the previous batch, 0 for the first batch
+     * @params limit - maximum number of questions
+     * @returns List<Integer> - ids of the locked questions
+     */
+    @SuppressWarnings("unchecked")
+    public List<Integer> lockQuestionsForRepair(final int afterId, final int limit){
+        log.info("locking a batch of questions for repair in the database");
+        return entityManager.createNativeQuery("SELECT id FROM question WHERE id > :after ORDER BY id LIMIT :limit FOR UPDATE")
+                .setParameter("after", afterId).setParameter("limit", limit).getResultList();
+    }
+    /*
+     * Recomputes the answer count and last answer date of questions from their answers
+     * @params questionIds - questions locked by lockQuestionsForRepair
+     * @returns number of questions whose activity had drifted
+     */
+    public int repairAnswerActivity(final Collection<Integer> questionIds){
+        log.info("repairing the answer activity of questions in the database");
+        return activityUpdate("UPDATE question q SET answer_count = a.answer_count, last_answer_at = a.last_answer_at "
+                + "FROM (SELECT q2.id, COUNT(ans.id) AS answer_count, MAX(ans.date) AS last_answer_at FROM question q2 "
+                + "LEFT JOIN answer ans ON ans.question_id = q2.id WHERE q2.id IN (:ids) GROUP BY q2.id) a "
+                + "WHERE q.id = a.id AND (q.answer_count <> a.answer_count OR q.last_answer_at IS DISTINCT FROM a.last_answer_at)")
+                .setParameter("ids", questionIds).executeUpdate();
+    }
+
+    /*
+     * Native update of the answer activity columns. They are not read from entities, so the update is synchronized
+     * with an empty query space and leaves the second-level cache of every entity in place.
+     */
+    private NativeQuery<?> activityUpdate(final String sql){
+        return entityManager.createNativeQuery(sql).unwrap(NativeQuery.class).addSynchronizedQuerySpace("");
+    }
 }
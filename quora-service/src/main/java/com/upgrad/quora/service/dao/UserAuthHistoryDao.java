@@ -0,0 +1,115 @@
+package com.upgrad.quora.service.dao;
+
+import com.upgrad.quora.service.projection.SessionCounts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the weekly partitions of USER_AUTH and purges the sessions that can no longer be used.
+ * A week partition USER_AUTH_P<yyyymmdd> holds the sessions expiring from that monday to the next one, rows outside
+ * of every week are kept in USER_AUTH_DEFAULT. Once every session of a week has expired its partition is detached and
+ * dropped as a whole, so sign-ins never leave a growing table and index behind the lookup of a token.
+ */
+@Repository
+public class UserAuthHistoryDao {
+
+    /** key of the advisory lock that serializes the changes of the partitions, "userauth" in ASCII */
+    private static final long PARTITION_LOCK = 0x7573657261757468L;
+
+    private static final String PARTITION_PREFIX = "user_auth_p";
+
+    private static final DateTimeFormatter PARTITION_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Logger log = LoggerFactory.getLogger(UserAuthHistoryDao.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /*
+     * Week partitions attached to USER_AUTH
+     * @returns Map<LocalDate, String> - partition name by the monday its week starts on, in week order
+     */
+    public Map<LocalDate, String> getWeekPartitions(){
+        final List<String> names = jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = CAST('user_auth' AS regclass) AND c.relname LIKE 'user\\_auth\\_p%'", String.class);
+        final Map<LocalDate, String> partitions = new TreeMap<>();
+        for (String name : names) {
+            partitions.put(LocalDate.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_DATE), name);
+        }
+        return partitions;
+    }
+    /*
+     * Creates the partition of a week. Sessions of the week that were stored in the default partition while it was
+     * missing are moved into it before it is attached, as the default partition may not hold rows of an attached range.
+     * @params weekStart - monday the week starts on
+     * @returns name of the partition
+     */
+    public String createWeekPartition(final LocalDate weekStart){
+        final String name = PARTITION_PREFIX + weekStart.format(PARTITION_DATE);
+        final String from = weekStart.toString();
+        final String to = weekStart.plusWeeks(1).toString();
+        log.info("creating the user auth partition {}", name);
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE user_auth INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        final int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM user_auth_default WHERE expires_at >= CAST(? AS timestamp) "
+                + "AND expires_at < CAST(? AS timestamp) RETURNING *) INSERT INTO " + name + " SELECT * FROM moved", from, to);
+        jdbcTemplate.execute("ALTER TABLE user_auth ATTACH PARTITION " + name + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        if (moved > 0) {
+            log.info("moved {} sessions from the default user auth partition to {}", moved, name);
+        }
+        return name;
+    }
+    /*
+     * Detaches and drops a week partition with all of its sessions
+     * @params name - partition returned by getWeekPartitions
+     */
+    public void dropPartition(final String name){
+        log.info("dropping the user auth partition {}", name);
+        jdbcTemplate.execute("ALTER TABLE user_auth DETACH PARTITION " + name);
+        jdbcTemplate.execute("DROP TABLE " + name);
+    }
+    /*
+     * Deletes a batch of sessions signed out before the retention, found by USER_AUTH_LOGOUT_AT_IDX
+     * @params retentionHours
+     * @params limit - maximum number of sessions
+     * @returns number of deleted sessions
+     */
+    public int purgeSignedOut(final long retentionHours, final int limit){
+        return jdbcTemplate.update("DELETE FROM user_auth WHERE (id, expires_at) IN (SELECT id, expires_at FROM user_auth "
+                + "WHERE logout_at < now() - ? * interval '1 hour' LIMIT ?)", retentionHours, limit);
+    }
+    /*
+     * Deletes a batch of sessions of the default partition that expired before the retention. Expired sessions of
+     * the week partitions go with their partition.
+     * @params retentionHours
+     * @params limit - maximum number of sessions
+     * @returns number of deleted sessions
+     */
+    public int purgeExpiredDefault(final long retentionHours, final int limit){
+        return jdbcTemplate.update("DELETE FROM user_auth_default WHERE (id, expires_at) IN (SELECT id, expires_at FROM user_auth_default "
+                + "WHERE expires_at < now() - ? * interval '1 hour' LIMIT ?)", retentionHours, limit);
+    }
+    /*
+     * Takes the lock that keeps two instances from changing the partitions at the same time, until the transaction ends
+     * @returns true if the lock was taken, false if another instance holds it
+     */
+    public boolean tryLockPartitions(){
+        return jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, PARTITION_LOCK);
+    }
+    /*
+     * @returns SessionCounts - live and dead sessions stored in USER_AUTH
+     */
+    public SessionCounts countSessions(){
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FILTER (WHERE logout_at IS NULL AND expires_at > now()), "
+                + "COUNT(*) FILTER (WHERE logout_at IS NOT NULL OR expires_at <= now()) FROM user_auth",
+                (resultSet, row) -> new SessionCounts(resultSet.getLong(1), resultSet.getLong(2)));
+    }
+}
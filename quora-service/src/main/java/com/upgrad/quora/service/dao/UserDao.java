@@ -1,14 +1,24 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthTokenEntity;
 import com.upgrad.quora.service.entity.UserEntity;
+import org.hibernate.Cache;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
+import javax.persistence.NonUniqueResultException;
 import javax.persistence.PersistenceContext;
+import java.time.ZonedDateTime;
+import java.util.List;
 
 @Repository
 public class UserDao {
@@ -28,19 +38,36 @@ public class UserDao {
         return userEntity;
     }
 
-    /** get an user from db based on user uuid
+    /** To update an already existing user entity in db
+     * @param userEntity
+     * @return
+     */
+    public UserEntity updateUser(final UserEntity userEntity) {
+        log.info("updating user entity in database");
+        entityManager.merge(userEntity);
+        log.info("succesfully updated user entity in database");
+        return userEntity;
+    }
+
+    /** get an user based on user uuid, served from the second-level cache when the uuid has been seen before
      * @param userUuid
      * @return
      */
     public UserEntity getUser(final String userUuid) {
         log.info("get an user from the database based on User id");
-        try {
-            return entityManager.createNamedQuery("userByUuid", UserEntity.class).setParameter("uuid", userUuid)
-                    .getSingleResult();
-        } catch (NoResultException nre) {
+        final UserEntity userEntity = entityManager.unwrap(Session.class).bySimpleNaturalId(UserEntity.class).load(userUuid);
+        if (userEntity == null) {
             log.info("no user present in the database with the User id");
-            return null;
         }
+        return userEntity;
+    }
+
+    /** get a reference to an user based on the database id, without querying the user table
+     * @param userId
+     * @return
+     */
+    public UserEntity getUserReference(final Integer userId) {
+        return entityManager.getReference(UserEntity.class, userId);
     }
 
     /** get an user from db based on user email
@@ -93,7 +120,8 @@ public class UserDao {
         return userAuthTokenEntity;
     }
 
-    /** get user auth-token entity from db based on token string
+    /** get user auth-token entity from db based on token string. The token is only unique together with its expiry,
+     * a token stored more than once is treated as unknown
      * @param accessToken
      * @return
      */
@@ -104,15 +132,82 @@ public class UserDao {
         } catch (NoResultException nre) {
             log.info("no user auth token present in the database with the following access token");
             return null;
+        } catch (NonUniqueResultException nure) {
+            log.warn("more than one user auth token present in the database with the following access token");
+            return null;
         }
     }
 
+    /** lock the row of an user until the transaction ends, so sign-ins of the user run one at a time. The user is
+     * read again with the lock, so it reflects changes committed before the lock was granted
+     * @param userEntity
+     * @return false if the user has been deleted before the lock was granted
+     */
+    public boolean lockUser(final UserEntity userEntity) {
+        try {
+            entityManager.refresh(userEntity, LockModeType.PESSIMISTIC_WRITE);
+            return true;
+        } catch (EntityNotFoundException e) {
+            return false;
+        }
+    }
+
+    /** get the most recent session of an user that is neither signed out nor expired
+     * @param userEntity
+     * @return session or null if the user has no live session
+     */
+    public UserAuthTokenEntity getLatestLiveAuthToken(final UserEntity userEntity) {
+        final List<UserAuthTokenEntity> tokens = entityManager.createNamedQuery("liveUserAuthTokensByUser", UserAuthTokenEntity.class)
+                .setParameter("user", userEntity).setParameter("now", ZonedDateTime.now()).setMaxResults(1).getResultList();
+        return tokens.isEmpty() ? null : tokens.get(0);
+    }
+
+    /** sign out the oldest live sessions of an user in one update, keeping the most recent ones
+     * @param userEntity
+     * @param keep - number of live sessions to keep
+     * @return access tokens of the signed out sessions
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> revokeOldestAuthTokens(final UserEntity userEntity, final int keep) {
+        log.info("signing out the oldest sessions of an user in the database");
+        entityManager.flush();
+        return entityManager.createNativeQuery("UPDATE user_auth SET logout_at = now() "
+                + "WHERE user_id = :userId AND logout_at IS NULL AND expires_at > now() AND id NOT IN ("
+                + "SELECT id FROM user_auth WHERE user_id = :userId AND logout_at IS NULL AND expires_at > now() "
+                + "ORDER BY login_at DESC, id DESC LIMIT :keep) RETURNING access_token")
+                .setParameter("userId", userEntity.getId()).setParameter("keep", keep).getResultList();
+    }
+
     /** to remove an user from the user table
      * @param userEntity
      */
     public void deleteUser(final UserEntity userEntity) {
         log.info("remove an user from the database");
         entityManager.remove(userEntity);
+        evictQuestionsAfterCommit();
         log.info("succesfully removed an user from the database");
     }
+
+    /*
+     * The questions of an user are deleted by the ON DELETE CASCADE of the database, which Hibernate does not see,
+     * so the cached questions are evicted once the deletion is visible. Evicting earlier would let a concurrent
+     * request cache the rows again before the commit.
+     */
+    private void evictQuestionsAfterCommit() {
+        final Cache cache = entityManager.unwrap(Session.class).getSessionFactory().getCache();
+        final Runnable evict = () -> {
+            cache.evictEntityRegion(QuestionEntity.class);
+            cache.evictNaturalIdRegion(QuestionEntity.class);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                evict.run();
+            }
+        });
+    }
 }
\ No newline at end of file
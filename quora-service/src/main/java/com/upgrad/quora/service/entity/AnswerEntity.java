@@ -17,13 +17,21 @@ import java.time.ZonedDateTime;
 @Table(name = "answer")
 @NamedQueries({
         @NamedQuery(name = "getAnswerById", query = "SELECT ans FROM AnswerEntity ans WHERE ans.uuid=:uuid"),
-        @NamedQuery(name = "getAllAnswersToQuestion", query = "select ans from AnswerEntity ans WHERE ans.question = :question")
+        @NamedQuery(name = "getAllAnswersToQuestion", query = "select new com.upgrad.quora.service.projection.AnswerSummary(ans.uuid, ans.answer, q.content) from AnswerEntity ans join ans.question q WHERE q = :question order by ans.id"),
+        @NamedQuery(name = "getAllAnswersToQuestions", query = "select new com.upgrad.quora.service.projection.AnswerSummary(q.id, ans.uuid, ans.answer, q.content) from AnswerEntity ans join ans.question q WHERE ans.question.id in (:questionIds) order by ans.question.id, ans.id"),
+        @NamedQuery(name = "answersPageToQuestion", query = "select new com.upgrad.quora.service.projection.AnswerExport(ans.question.id, ans.uuid, ans.answer, ans.date, u.uuid) from AnswerEntity ans join ans.user u WHERE ans.question.id = :questionId order by ans.id"),
+        @NamedQuery(name = "answerTexts", query = "select new com.upgrad.quora.service.projection.AnswerText(q.uuid, ans.uuid, ans.answer) from AnswerEntity ans join ans.question q order by ans.id"),
+        @NamedQuery(name = "answerTextsByUuids", query = "select new com.upgrad.quora.service.projection.AnswerText(q.uuid, ans.uuid, ans.answer) from AnswerEntity ans join ans.question q WHERE ans.uuid in (:uuids)"),
+        @NamedQuery(name = "answerUuidsByUser", query = "select ans.uuid from AnswerEntity ans WHERE ans.user.id = :userId"),
+        @NamedQuery(name = "answerUuidsToQuestionsOfUser", query = "select ans.uuid from AnswerEntity ans join ans.question q WHERE q.user.id = :userId and ans.user.id <> :userId"),
+        @NamedQuery(name = "answersExportByQuestionIds", query = "select new com.upgrad.quora.service.projection.AnswerExport(ans.question.id, ans.uuid, ans.answer, ans.date, u.uuid) from AnswerEntity ans join ans.user u WHERE ans.question.id in (:questionIds) order by ans.question.id, ans.id")
 })
 public class AnswerEntity implements Serializable {
 
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "answer_id_seq")
+    @SequenceGenerator(name = "answer_id_seq", sequenceName = "answer_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "UUID")
@@ -40,13 +48,13 @@ public class AnswerEntity implements Serializable {
     @NotNull
     private ZonedDateTime date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USER_ID")
     @NotNull
     @OnDelete(action = OnDeleteAction.CASCADE)
     private UserEntity user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "QUESTION_ID")
     @NotNull
     @OnDelete(action = OnDeleteAction.CASCADE)
@@ -102,12 +110,18 @@ public class AnswerEntity implements Serializable {
 
     @Override
     public boolean equals(Object obj) {
-        return new EqualsBuilder().append(this, obj).isEquals();
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof AnswerEntity)) {
+            return false;
+        }
+        return new EqualsBuilder().append(getUuid(), ((AnswerEntity) obj).getUuid()).isEquals();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(this).hashCode();
+        return new HashCodeBuilder().append(getUuid()).toHashCode();
     }
 
     @Override
@@ -4,6 +4,10 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
@@ -18,16 +22,31 @@ import java.time.ZonedDateTime;
 @Table(name="question")
 @NamedQueries(
         {
-                @NamedQuery(name = "questionByUserId", query = "select q from QuestionEntity q where q.user.uuid = :uuid"),
-                @NamedQuery(name = "questionById", query = "select q from QuestionEntity q where q.uuid = :uuid")
+                @NamedQuery(name = "questionsPage", query = "select new com.upgrad.quora.service.projection.QuestionSummary(q.id, q.uuid, q.content, q.date, q.answerCount, q.lastAnswerAt) from QuestionEntity q order by q.date desc, q.id desc"),
+                @NamedQuery(name = "questionsPageAfter", query = "select new com.upgrad.quora.service.projection.QuestionSummary(q.id, q.uuid, q.content, q.date, q.answerCount, q.lastAnswerAt) from QuestionEntity q where q.date <= :date and (q.date < :date or q.id < :id) order by q.date desc, q.id desc"),
+                @NamedQuery(name = "questionsByUserPage", query = "select new com.upgrad.quora.service.projection.QuestionSummary(q.id, q.uuid, q.content, q.date, q.answerCount, q.lastAnswerAt) from QuestionEntity q where q.user = :user order by q.date desc, q.id desc"),
+                @NamedQuery(name = "questionsByUserPageAfter", query = "select new com.upgrad.quora.service.projection.QuestionSummary(q.id, q.uuid, q.content, q.date, q.answerCount, q.lastAnswerAt) from QuestionEntity q where q.user = :user and q.date <= :date and (q.date < :date or q.id < :id) order by q.date desc, q.id desc"),
+                @NamedQuery(name = "questionDetailByUuid", query = "select new com.upgrad.quora.service.projection.QuestionDetail(q.id, q.uuid, q.content, q.date, u.uuid, u.userName, u.firstName, u.lastName) from QuestionEntity q join q.user u where q.uuid = :uuid"),
+                @NamedQuery(name = "questionsByUuids", query = "select new com.upgrad.quora.service.projection.QuestionSummary(q.id, q.uuid, q.content, q.date) from QuestionEntity q where q.uuid in (:uuids)"),
+                @NamedQuery(name = "questionUuidsByUser", query = "select q.uuid from QuestionEntity q where q.user.id = :userId"),
+                @NamedQuery(name = "questionsExportAfter", query = "select new com.upgrad.quora.service.projection.QuestionExport(q.id, q.uuid, q.content, q.date, u.uuid) from QuestionEntity q join q.user u where q.id > :id order by q.id")
         }
 )
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = QuestionEntity.CACHE_REGION)
+@NaturalIdCache(region = QuestionEntity.NATURAL_ID_CACHE_REGION)
 public class QuestionEntity implements Serializable {
+
+    public static final String CACHE_REGION = "questions";
+    public static final String NATURAL_ID_CACHE_REGION = "questions-by-uuid";
+
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_id_seq")
+    @SequenceGenerator(name = "question_id_seq", sequenceName = "question_id_seq", allocationSize = 50)
     private Integer id;
 
+    @NaturalId
     @Column(name = "UUID")
     @Size(max = 200)
     @NotNull
@@ -43,7 +62,18 @@ public class QuestionEntity implements Serializable {
     private ZonedDateTime date;
 
 
-    @ManyToOne
+    /*
+     * The answer activity columns are mapped for the listing queries only. They are maintained with SQL by QuestionDao
+     * whenever answers change, so the values of a loaded or cached entity may be stale and have no getters, and the
+     * entity never writes them back.
+     */
+    @Column(name = "ANSWER_COUNT", insertable = false, updatable = false)
+    private int answerCount;
+
+    @Column(name = "LAST_ANSWER_AT", insertable = false, updatable = false)
+    private ZonedDateTime lastAnswerAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @NotNull
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "USER_ID")
@@ -91,12 +121,18 @@ public class QuestionEntity implements Serializable {
 
     @Override
     public boolean equals(Object obj) {
-        return new EqualsBuilder().append(this, obj).isEquals();
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof QuestionEntity)) {
+            return false;
+        }
+        return new EqualsBuilder().append(getUuid(), ((QuestionEntity) obj).getUuid()).isEquals();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(this).hashCode();
+        return new HashCodeBuilder().append(getUuid()).toHashCode();
     }
 
     @Override
@@ -16,14 +16,16 @@ import java.time.ZonedDateTime;
 @Entity
 @Table(name = "user_auth")
 @NamedQueries({
-        @NamedQuery(name = "userAuthTokenByAccessToken", query = "select ut from UserAuthTokenEntity ut where ut.accessToken = :accessToken ")
+        @NamedQuery(name = "userAuthTokenByAccessToken", query = "select ut from UserAuthTokenEntity ut join fetch ut.user where ut.accessToken = :accessToken "),
+        @NamedQuery(name = "liveUserAuthTokensByUser", query = "select ut from UserAuthTokenEntity ut where ut.user = :user and ut.logoutAt is null and ut.expiresAt > :now order by ut.loginAt desc, ut.id desc")
 })
 public class UserAuthTokenEntity implements Serializable {
 
 
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_auth_id_seq")
+    @SequenceGenerator(name = "user_auth_id_seq", sequenceName = "user_auth_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "UUID")
@@ -31,7 +33,7 @@ public class UserAuthTokenEntity implements Serializable {
     @NotNull
     private String uuid;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @NotNull
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "USER_ID")
@@ -112,12 +114,18 @@ public class UserAuthTokenEntity implements Serializable {
 
     @Override
     public boolean equals(Object obj) {
-        return new EqualsBuilder().append(this, obj).isEquals();
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof UserAuthTokenEntity)) {
+            return false;
+        }
+        return new EqualsBuilder().append(getAccessToken(), ((UserAuthTokenEntity) obj).getAccessToken()).isEquals();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(this).hashCode();
+        return new HashCodeBuilder().append(getAccessToken()).toHashCode();
     }
 
     @Override
@@ -0,0 +1,49 @@
+package com.upgrad.quora.service.projection;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Read model of an answer with its date and the uuid of its author, for the corpus export and the question detail view.
+ * It carries the id of its question so it can be grouped under it, and is built by a constructor expression so no
+ * answer, question or author entity is loaded for it.
+ */
+public final class AnswerExport {
+
+    private final Integer questionId;
+
+    private final String uuid;
+
+    private final String answer;
+
+    private final ZonedDateTime date;
+
+    private final String userUuid;
+
+    public AnswerExport(final Integer questionId, final String uuid, final String answer, final ZonedDateTime date, final String userUuid) {
+        this.questionId = questionId;
+        this.uuid = uuid;
+        this.answer = answer;
+        this.date = date;
+        this.userUuid = userUuid;
+    }
+
+    public Integer getQuestionId() {
+        return questionId;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+
+    public String getUserUuid() {
+        return userUuid;
+    }
+}
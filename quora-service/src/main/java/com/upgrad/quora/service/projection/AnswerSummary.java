@@ -0,0 +1,44 @@
+package com.upgrad.quora.service.projection;
+
+/**
+ * Read model of an answer in the answer listing of a question.
+ * Holds only the columns the listing returns, it is built by a constructor expression so no answer, question or
+ * author entity is loaded for it. The id of the question is only set when answers of several questions are listed together.
+ */
+public final class AnswerSummary {
+
+    private final Integer questionId;
+
+    private final String uuid;
+
+    private final String answer;
+
+    private final String questionContent;
+
+    public AnswerSummary(final String uuid, final String answer, final String questionContent) {
+        this(null, uuid, answer, questionContent);
+    }
+
+    public AnswerSummary(final Integer questionId, final String uuid, final String answer, final String questionContent) {
+        this.questionId = questionId;
+        this.uuid = uuid;
+        this.answer = answer;
+        this.questionContent = questionContent;
+    }
+
+    public Integer getQuestionId() {
+        return questionId;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    public String getQuestionContent() {
+        return questionContent;
+    }
+}
@@ -0,0 +1,32 @@
+package com.upgrad.quora.service.projection;
+
+/**
+ * Read model of an answer in search: its text and the uuid of the question it answers.
+ * It is built by a constructor expression so no answer, question or author entity is loaded for it.
+ */
+public final class AnswerText {
+
+    private final String questionUuid;
+
+    private final String uuid;
+
+    private final String answer;
+
+    public AnswerText(final String questionUuid, final String uuid, final String answer) {
+        this.questionUuid = questionUuid;
+        this.uuid = uuid;
+        this.answer = answer;
+    }
+
+    public String getQuestionUuid() {
+        return questionUuid;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+}
@@ -0,0 +1,63 @@
+package com.upgrad.quora.service.projection;
+
+import java.time.ZonedDateTime;
+
+/**
+ * One change of the change feed as it is read from CHANGE_OUTBOX: what kind of row changed, its uuid, how it changed
+ * and a JSON object with the state of the row at the time of the change. The state of a deleted row is its last state.
+ */
+public final class OutboxEvent {
+
+    public enum Aggregate {
+        USER, QUESTION, ANSWER
+    }
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final long id;
+
+    private final Aggregate aggregate;
+
+    private final String uuid;
+
+    private final Type type;
+
+    private final String payload;
+
+    private final ZonedDateTime createdAt;
+
+    public OutboxEvent(final long id, final Aggregate aggregate, final String uuid, final Type type, final String payload, final ZonedDateTime createdAt) {
+        this.id = id;
+        this.aggregate = aggregate;
+        this.uuid = uuid;
+        this.type = type;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,41 @@
+package com.upgrad.quora.service.projection;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Position of a subscriber in the change feed: the id of the last event it has handled and the number of events
+ * after it that are still to be delivered.
+ */
+public final class OutboxOffset {
+
+    private final String subscriber;
+
+    private final long lastId;
+
+    private final long pending;
+
+    private final ZonedDateTime updatedAt;
+
+    public OutboxOffset(final String subscriber, final long lastId, final long pending, final ZonedDateTime updatedAt) {
+        this.subscriber = subscriber;
+        this.lastId = lastId;
+        this.pending = pending;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getSubscriber() {
+        return subscriber;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+
+    public ZonedDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
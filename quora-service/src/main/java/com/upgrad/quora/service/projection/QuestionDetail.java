@@ -0,0 +1,92 @@
+package com.upgrad.quora.service.projection;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read model of the detail view of a question: the question, a summary of its author and the first page of its answers.
+ * The question and author are built by one constructor expression, the answers are set once their page is read.
+ */
+public final class QuestionDetail {
+
+    private final Integer id;
+
+    private final String uuid;
+
+    private final String content;
+
+    private final ZonedDateTime date;
+
+    private final String userUuid;
+
+    private final String userName;
+
+    private final String firstName;
+
+    private final String lastName;
+
+    private List<AnswerExport> answers = Collections.emptyList();
+
+    private boolean moreAnswers;
+
+    public QuestionDetail(final Integer id, final String uuid, final String content, final ZonedDateTime date,
+                          final String userUuid, final String userName, final String firstName, final String lastName) {
+        this.id = id;
+        this.uuid = uuid;
+        this.content = content;
+        this.date = date;
+        this.userUuid = userUuid;
+        this.userName = userName;
+        this.firstName = firstName;
+        this.lastName = lastName;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+
+    public String getUserUuid() {
+        return userUuid;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public List<AnswerExport> getAnswers() {
+        return answers;
+    }
+
+    /**
+     * @return true if the question has more answers than the first page holds
+     */
+    public boolean hasMoreAnswers() {
+        return moreAnswers;
+    }
+
+    public void setAnswers(final List<AnswerExport> answers, final boolean moreAnswers) {
+        this.answers = answers;
+        this.moreAnswers = moreAnswers;
+    }
+}
@@ -0,0 +1,60 @@
+package com.upgrad.quora.service.projection;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read model of a question in the corpus export, with the uuid of its author and its answers in id order.
+ * It is built by a constructor expression without its answers, which are added once the answers of its chunk are read.
+ */
+public final class QuestionExport {
+
+    private final Integer id;
+
+    private final String uuid;
+
+    private final String content;
+
+    private final ZonedDateTime date;
+
+    private final String userUuid;
+
+    private final List<AnswerExport> answers = new ArrayList<>();
+
+    public QuestionExport(final Integer id, final String uuid, final String content, final ZonedDateTime date, final String userUuid) {
+        this.id = id;
+        this.uuid = uuid;
+        this.content = content;
+        this.date = date;
+        this.userUuid = userUuid;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+
+    public String getUserUuid() {
+        return userUuid;
+    }
+
+    public List<AnswerExport> getAnswers() {
+        return answers;
+    }
+
+    public void addAnswer(final AnswerExport answer) {
+        answers.add(answer);
+    }
+}
@@ -0,0 +1,65 @@
+package com.upgrad.quora.service.projection;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Read model of a question in the question listings.
+ * Holds only the columns the listings return plus the (date, id) position used for paging, it is built by a
+ * constructor expression so no entity, author or dirty-checking snapshot is loaded for it.
+ * The answer activity is only selected by the listings, it is null where a question is looked up for another purpose.
+ */
+public final class QuestionSummary {
+
+    private final Integer id;
+
+    private final String uuid;
+
+    private final String content;
+
+    private final ZonedDateTime date;
+
+    private final Integer answerCount;
+
+    private final ZonedDateTime lastAnswerAt;
+
+    public QuestionSummary(final Integer id, final String uuid, final String content, final ZonedDateTime date) {
+        this(id, uuid, content, date, null, null);
+    }
+
+    public QuestionSummary(final Integer id, final String uuid, final String content, final ZonedDateTime date,
+                           final Integer answerCount, final ZonedDateTime lastAnswerAt) {
+        this.id = id;
+        this.uuid = uuid;
+        this.content = content;
+        this.date = date;
+        this.answerCount = answerCount;
+        this.lastAnswerAt = lastAnswerAt;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+
+    public Integer getAnswerCount() {
+        return answerCount;
+    }
+
+    /**
+     * @return date of the latest answer, null if the question has no answers
+     */
+    public ZonedDateTime getLastAnswerAt() {
+        return lastAnswerAt;
+    }
+}
@@ -0,0 +1,25 @@
+package com.upgrad.quora.service.projection;
+
+/**
+ * Number of sessions stored in USER_AUTH: live sessions are neither signed out nor expired, dead sessions are kept
+ * until their partition is dropped or they are purged.
+ */
+public final class SessionCounts {
+
+    private final long live;
+
+    private final long dead;
+
+    public SessionCounts(final long live, final long dead) {
+        this.live = live;
+        this.dead = dead;
+    }
+
+    public long getLive() {
+        return live;
+    }
+
+    public long getDead() {
+        return dead;
+    }
+}